@@ -1,6 +1,7 @@
 package com.example.queryapi.controller;
 
 import com.example.queryapi.dto.DataSourceDto;
+import com.example.queryapi.dto.DataSourcePageDto;
 import com.example.queryapi.service.DataSourceManagementService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -14,8 +15,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/v1/datasources")
 @Tag(name = "Data Source Management", description = "APIs for managing data source configurations")
@@ -54,14 +53,16 @@ public class DataSourceController {
     }
 
     @GetMapping
-    @Operation(summary = "Get all data source configurations",
+    @Operation(summary = "List data source configurations page by page",
+               description = "Summaries ordered by datasourceId; fetch a data source by ID for its full configuration.",
                responses = {
-                   @ApiResponse(responseCode = "200", description = "List of data sources",
-                                content = @Content(mediaType = "application/json", schema = @Schema(implementation = List.class)))
+                   @ApiResponse(responseCode = "200", description = "Page of data sources",
+                                content = @Content(mediaType = "application/json", schema = @Schema(implementation = DataSourcePageDto.class))),
+                   @ApiResponse(responseCode = "400", description = "Invalid page or size")
                })
-    public ResponseEntity<List<DataSourceDto>> getAllDataSources() {
-        List<DataSourceDto> dataSources = dataSourceManagementService.getAllDataSources();
-        return ResponseEntity.ok(dataSources);
+    public ResponseEntity<DataSourcePageDto> listDataSources(@Parameter(description = "Zero-based page number") @RequestParam(defaultValue = "0") int page,
+                                                             @Parameter(description = "Page size, capped by the server") @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(dataSourceManagementService.listDataSources(page, size));
     }
 
     @PutMapping("/{datasourceId}")
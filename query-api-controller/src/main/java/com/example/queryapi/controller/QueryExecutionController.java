@@ -1,57 +1,243 @@
 package com.example.queryapi.controller;
 
 import com.example.queryapi.dto.BatchQueryRequestDto;
+import com.example.queryapi.common.enums.ExecutionStatus;
+import com.example.queryapi.common.enums.ResultFormat;
+import com.example.queryapi.controller.support.ArrowStreamResultWriter;
+import com.example.queryapi.controller.support.NdjsonResultWriter;
 import com.example.queryapi.dto.BatchQueryResponseDto;
+import com.example.queryapi.dto.BatchQueryResultEventDto;
+import com.example.queryapi.dto.QueryStreamTrailerDto;
 import com.example.queryapi.dto.SingleQueryRequestDto;
 import com.example.queryapi.dto.SingleQueryResponseDto;
 import com.example.queryapi.service.QueryExecutionService;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.execution.QueryDeadline;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @RestController
+@Slf4j
 @RequestMapping("/api/v1/query")
 @Tag(name = "Query Execution", description = "APIs for executing SQL queries")
 public class QueryExecutionController {
 
+    /**
+     * Media type selecting the COLUMNAR result format (column metadata once, rows as arrays).
+     * Equivalent to setting {@code resultFormat: COLUMNAR} in the request body.
+     */
+    public static final String COLUMNAR_JSON_VALUE = "application/vnd.query-api.columnar+json";
+
+    /**
+     * Media type selecting an Apache Arrow IPC stream of the result.
+     */
+    public static final String ARROW_STREAM_VALUE = "application/vnd.apache.arrow.stream";
+
     private final QueryExecutionService queryExecutionService;
+    private final ObjectMapper objectMapper; // Used to write streamed rows directly to the response
+    private final BufferAllocator arrowAllocator;
+    private final QueryExecutionProperties queryExecutionProperties;
 
     @Autowired
-    public QueryExecutionController(QueryExecutionService queryExecutionService) {
+    public QueryExecutionController(QueryExecutionService queryExecutionService, ObjectMapper objectMapper,
+                                    BufferAllocator arrowAllocator, QueryExecutionProperties queryExecutionProperties) {
         this.queryExecutionService = queryExecutionService;
+        this.objectMapper = objectMapper;
+        this.arrowAllocator = arrowAllocator;
+        this.queryExecutionProperties = queryExecutionProperties;
     }
 
     @PostMapping("/execute-single")
     @Operation(summary = "Execute a single SQL query",
                responses = {
                    @ApiResponse(responseCode = "200", description = "Query executed, result returned",
-                                content = @Content(mediaType = "application/json", schema = @Schema(implementation = SingleQueryResponseDto.class))),
+                                content = {
+                                    @Content(mediaType = "application/json", schema = @Schema(implementation = SingleQueryResponseDto.class)),
+                                    @Content(mediaType = COLUMNAR_JSON_VALUE, schema = @Schema(implementation = SingleQueryResponseDto.class))
+                                }),
                    @ApiResponse(responseCode = "400", description = "Invalid query request")
                })
-    public ResponseEntity<SingleQueryResponseDto> executeSingleQuery(@Valid @RequestBody SingleQueryRequestDto requestDto) {
-        SingleQueryResponseDto responseDto = queryExecutionService.executeSingleQuery(requestDto);
-        return ResponseEntity.ok(responseDto);
+    public DeferredResult<ResponseEntity<SingleQueryResponseDto>> executeSingleQuery(@Valid @RequestBody SingleQueryRequestDto requestDto,
+                                                                                     @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (acceptsColumnar(accept)) {
+            requestDto.setResultFormat(ResultFormat.COLUMNAR);
+        }
+        // In VIRTUAL executor mode this runs on the query executor, so the request timeout cancels the running statement
+        QueryDeadline requestScope = QueryDeadline.unbounded();
+        return deferred(queryExecutionService.executeSingleQuery(requestDto, requestScope), requestScope,
+                SingleQueryResponseDto::releaseResult);
+    }
+
+    @PostMapping(value = "/execute-single", produces = ARROW_STREAM_VALUE)
+    @Operation(summary = "Execute a single SQL query and return the result as an Apache Arrow IPC stream",
+               description = "Selected with 'Accept: " + ARROW_STREAM_VALUE + "'. Rows are read from the database cursor "
+                       + "into typed column vectors and written in record batches. On failure the stream ends without "
+                       + "the end-of-stream marker, so clients see a truncated stream.",
+               responses = {
+                   @ApiResponse(responseCode = "200", description = "Query executed, result streamed as Arrow record batches",
+                                content = @Content(mediaType = ARROW_STREAM_VALUE)),
+                   @ApiResponse(responseCode = "400", description = "Invalid query request")
+               })
+    public ResponseEntity<StreamingResponseBody> executeSingleQueryArrow(@Valid @RequestBody SingleQueryRequestDto requestDto) {
+        QueryExecutionProperties.Arrow arrow = queryExecutionProperties.getArrow();
+        StreamingResponseBody body = outputStream -> {
+            try (ArrowStreamResultWriter writer = new ArrowStreamResultWriter(arrowAllocator, arrow.getMaxAllocationBytes(),
+                    arrow.getBatchRows(), outputStream)) {
+                QueryStreamTrailerDto trailer = queryExecutionService.streamSingleQuery(requestDto, writer);
+                if (trailer.getStatus() != ExecutionStatus.SUCCESS) {
+                    // Arrow has no trailer, abort the response instead of ending the stream cleanly
+                    throw new IOException("Arrow stream aborted for sqlCode " + trailer.getSqlCode() + ": " + trailer.getErrorMessage());
+                }
+                writer.finish();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(ARROW_STREAM_VALUE)).body(body);
     }
 
     @PostMapping("/execute-batch")
     @Operation(summary = "Execute a batch of SQL queries",
                responses = {
                    @ApiResponse(responseCode = "200", description = "Batch query executed, results returned",
-                                content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchQueryResponseDto.class))),
+                                content = {
+                                    @Content(mediaType = "application/json", schema = @Schema(implementation = BatchQueryResponseDto.class)),
+                                    @Content(mediaType = COLUMNAR_JSON_VALUE, schema = @Schema(implementation = BatchQueryResponseDto.class))
+                                }),
                    @ApiResponse(responseCode = "400", description = "Invalid batch query request")
                })
-    public ResponseEntity<BatchQueryResponseDto> executeBatchQuery(@Valid @RequestBody BatchQueryRequestDto batchRequestDto) {
-        BatchQueryResponseDto responseDto = queryExecutionService.executeBatchQuery(batchRequestDto);
-        return ResponseEntity.ok(responseDto);
+    public DeferredResult<ResponseEntity<BatchQueryResponseDto>> executeBatchQuery(@Valid @RequestBody BatchQueryRequestDto batchRequestDto,
+                                                                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (acceptsColumnar(accept)) {
+            batchRequestDto.setResultFormat(ResultFormat.COLUMNAR);
+        }
+        // Runs as an async request, so the request timeout cancels the batch's running statements
+        QueryDeadline requestScope = QueryDeadline.unbounded();
+        // Results keep their memory reservations until the whole response has been written
+        return deferred(queryExecutionService.executeBatchQuery(batchRequestDto, requestScope), requestScope,
+                BatchQueryResponseDto::releaseResults);
     }
-}
 
+    @PostMapping(value = "/execute-batch-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Execute a batch of SQL queries and stream each result as a Server-Sent Event",
+               description = "Each query result is sent as a 'result' event ({index, result}) as soon as it completes, "
+                       + "so events arrive in completion order, not request order. A final 'summary' event carries "
+                       + "the counts and total time, then the stream ends.",
+               responses = {
+                   @ApiResponse(responseCode = "200", description = "Results streamed, followed by a summary",
+                                content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = BatchQueryResultEventDto.class))),
+                   @ApiResponse(responseCode = "400", description = "Invalid batch query request")
+               })
+    public SseEmitter executeBatchQueryStream(@Valid @RequestBody BatchQueryRequestDto batchRequestDto,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (acceptsColumnar(accept)) {
+            batchRequestDto.setResultFormat(ResultFormat.COLUMNAR);
+        }
+        SseEmitter emitter = new SseEmitter(); // Uses spring.mvc.async.request-timeout
+        QueryDeadline requestScope = QueryDeadline.unbounded();
+        emitter.onTimeout(() -> requestScope.cancel("Request timed out"));
+        emitter.onError(error -> requestScope.cancel("Client disconnected"));
+        queryExecutionService.streamBatchQuery(batchRequestDto, (index, result) -> {
+            try {
+                emitter.send(SseEmitter.event().name("result").data(new BatchQueryResultEventDto(index, result), MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                // Client gone or emitter already completed: stop the queries still running, remaining results are dropped
+                log.debug("Dropping batch result {} ({}): {}", index, result.getSqlCode(), e.getMessage());
+                requestScope.cancel("Client disconnected");
+            } finally {
+                result.releaseResult(); // Written (or buffered, before the emitter is initialized) or dropped
+            }
+        }, requestScope).whenComplete((summary, error) -> {
+            if (error != null) {
+                emitter.completeWithError(error);
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name("summary").data(summary, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping batch summary: {}", e.getMessage());
+            }
+        });
+        return emitter;
+    }
+
+    @PostMapping(value = "/execute-stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Execute a single SQL query and stream the rows as newline-delimited JSON",
+               description = "Rows are written as they are fetched from the database cursor. The last line is a "
+                       + "{\"@trailer\": {...}} object with status, row count and timing.",
+               responses = {
+                   @ApiResponse(responseCode = "200", description = "Rows streamed, followed by a trailer",
+                                content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = QueryStreamTrailerDto.class))),
+                   @ApiResponse(responseCode = "400", description = "Invalid query request")
+               })
+    public ResponseEntity<StreamingResponseBody> executeStreamQuery(@Valid @RequestBody SingleQueryRequestDto requestDto) {
+        StreamingResponseBody body = outputStream -> {
+            NdjsonResultWriter writer = new NdjsonResultWriter(objectMapper, outputStream);
+            QueryStreamTrailerDto trailer = queryExecutionService.streamSingleQuery(requestDto, writer);
+            writer.writeTrailer(trailer);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Completes the async request with the result, cancelling the scope on request timeout or a container error.
+     * The connection is not polled while the query runs, so a client that disconnects in the meantime is only
+     * noticed when the response is written; the request timeout bounds the work left running until then.
+     *
+     * @param release Returns the result's memory reservation, once the response has been written or dropped.
+     */
+    private static <T> DeferredResult<ResponseEntity<T>> deferred(CompletableFuture<T> result, QueryDeadline requestScope,
+                                                                  Consumer<T> release) {
+        DeferredResult<ResponseEntity<T>> deferred = new DeferredResult<>(); // Uses spring.mvc.async.request-timeout
+        AtomicReference<T> unreleased = new AtomicReference<>();
+        deferred.onTimeout(() -> requestScope.cancel("Request timed out"));
+        deferred.onError(error -> requestScope.cancel("Client disconnected"));
+        deferred.onCompletion(() -> releaseOnce(unreleased, release)); // After the async dispatch has written the body
+        result.whenComplete((responseDto, error) -> {
+            if (error != null) {
+                deferred.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            unreleased.set(responseDto);
+            if (!deferred.setResult(ResponseEntity.ok(responseDto))) {
+                releaseOnce(unreleased, release); // Request already timed out, the result is never written
+            }
+        });
+        return deferred;
+    }
+
+    private static <T> void releaseOnce(AtomicReference<T> unreleased, Consumer<T> release) {
+        T responseDto = unreleased.getAndSet(null);
+        if (responseDto != null) {
+            release.accept(responseDto);
+        }
+    }
+
+    private static boolean acceptsColumnar(String accept) {
+        return accept != null && accept.contains(COLUMNAR_JSON_VALUE);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.queryapi.controller.advice;
 
 import com.example.queryapi.common.exception.CustomException;
 import com.example.queryapi.common.exception.InvalidInputException;
+import com.example.queryapi.common.exception.ResourceExhaustedException;
 import com.example.queryapi.common.exception.ResourceNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -70,6 +71,14 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(ResourceExhaustedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ResponseEntity<ErrorResponse> handleResourceExhaustedException(ResourceExhaustedException ex) {
+        log.warn("Request rejected, capacity exhausted: {}", ex.getMessage());
+        ErrorResponse errorResponse = new ErrorResponse("RESOURCE_EXHAUSTED", ex.getMessage());
+        return new ResponseEntity<>(errorResponse, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class) // Catching common Java argument exceptions
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<ErrorResponse> handleIllegalArgumentException(IllegalArgumentException ex) {
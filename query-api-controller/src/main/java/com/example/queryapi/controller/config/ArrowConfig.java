@@ -0,0 +1,19 @@
+package com.example.queryapi.controller.config;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ArrowConfig {
+
+    /**
+     * Process-wide Arrow allocator. Each response takes a bounded child allocator from it,
+     * so leaked buffers are reported when the context shuts down.
+     */
+    @Bean(destroyMethod = "close")
+    public BufferAllocator arrowRootAllocator() {
+        return new RootAllocator();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.queryapi.controller.config;
+
+import com.example.queryapi.controller.support.TimedJacksonHttpMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class QueryMetricsConfig {
+
+    /**
+     * Takes the place of Spring Boot's MappingJackson2HttpMessageConverter, which backs off when one is defined.
+     */
+    @Bean
+    public TimedJacksonHttpMessageConverter timedJacksonHttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJacksonHttpMessageConverter(objectMapper);
+    }
+}
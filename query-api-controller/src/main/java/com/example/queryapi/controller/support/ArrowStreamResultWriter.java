@@ -0,0 +1,262 @@
+package com.example.queryapi.controller.support;
+
+import com.example.queryapi.service.execution.ResultColumns;
+import com.example.queryapi.service.execution.ResultRowHandler;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Decimal256Vector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.UInt8Vector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes streamed rows as an Apache Arrow IPC stream. Column vectors are filled straight from the
+ * {@link ResultSet} with typed getters and flushed as a record batch every {@code batchRows} rows,
+ * so off-heap memory is bounded by one batch regardless of the result size.
+ * <p>
+ * Arrow streams have no trailer: {@link #finish()} writes the end-of-stream marker and must only be
+ * called when the query completed successfully, so consumers can detect truncated results.
+ */
+public class ArrowStreamResultWriter implements ResultRowHandler, AutoCloseable {
+
+    private static final int MAX_DECIMAL128_PRECISION = 38;
+    private static final int MAX_DECIMAL256_PRECISION = 76;
+
+    private final BufferAllocator allocator;
+    private final OutputStream outputStream;
+    private final int batchRows;
+    private VectorSchemaRoot root;
+    private ArrowStreamWriter writer;
+    private ColumnWriter[] columnWriters;
+    private int rowsInBatch;
+
+    public ArrowStreamResultWriter(BufferAllocator parentAllocator, long maxAllocationBytes, int batchRows, OutputStream outputStream) {
+        this.allocator = parentAllocator.newChildAllocator("arrow-query-response", 0, maxAllocationBytes);
+        this.outputStream = outputStream;
+        this.batchRows = batchRows;
+    }
+
+    @Override
+    public void start(ResultColumns columns) throws IOException {
+        List<Field> fields = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            fields.add(new Field(columns.getLabels()[i], FieldType.nullable(toArrowType(columns, i)), null));
+        }
+        root = VectorSchemaRoot.create(new Schema(fields), allocator);
+        columnWriters = new ColumnWriter[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            columnWriters[i] = columnWriter(root.getVector(i));
+        }
+        writer = new ArrowStreamWriter(root, null, outputStream);
+        writer.start();
+    }
+
+    @Override
+    public void row(ResultSet rs) throws SQLException, IOException {
+        for (int i = 0; i < columnWriters.length; i++) {
+            columnWriters[i].write(rs, i + 1, rowsInBatch);
+        }
+        if (++rowsInBatch == batchRows) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Writes the last partial batch and the end-of-stream marker.
+     */
+    public void finish() throws IOException {
+        if (writer == null) {
+            return;
+        }
+        if (rowsInBatch > 0) {
+            writeBatch();
+        }
+        writer.end();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() {
+        if (root != null) {
+            root.close();
+        }
+        allocator.close();
+    }
+
+    private void writeBatch() throws IOException {
+        root.setRowCount(rowsInBatch);
+        writer.writeBatch();
+        for (FieldVector vector : root.getFieldVectors()) {
+            vector.reset(); // Keeps the buffers for the next batch
+        }
+        rowsInBatch = 0;
+    }
+
+    private static ArrowType toArrowType(ResultColumns columns, int index) {
+        switch (columns.getJdbcTypes()[index]) {
+            case Types.BIT:
+                // MySQL reports BIT(n) as BIT with precision n, only BIT(1) is a boolean
+                return columns.getPrecisions()[index] > 1 ? ArrowType.Binary.INSTANCE : ArrowType.Bool.INSTANCE;
+            case Types.BOOLEAN:
+                return ArrowType.Bool.INSTANCE;
+            case Types.TINYINT:
+                return new ArrowType.Int(8, true);
+            case Types.SMALLINT:
+                return new ArrowType.Int(16, true);
+            case Types.INTEGER:
+                return new ArrowType.Int(32, true);
+            case Types.BIGINT:
+                String typeName = columns.getTypeNames()[index];
+                boolean unsigned = typeName != null && typeName.toUpperCase().contains("UNSIGNED"); // e.g. MySQL BIGINT UNSIGNED
+                return new ArrowType.Int(64, !unsigned);
+            case Types.REAL:
+                return new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                int precision = columns.getPrecisions()[index];
+                int scale = Math.min(Math.max(columns.getScales()[index], 0), Math.max(precision, 0));
+                if (precision <= 0 || precision > MAX_DECIMAL256_PRECISION) {
+                    return ArrowType.Utf8.INSTANCE; // Unknown or unbounded precision, sent as text
+                }
+                return new ArrowType.Decimal(precision, scale, precision > MAX_DECIMAL128_PRECISION ? 256 : 128);
+            case Types.DATE:
+                return new ArrowType.Date(DateUnit.DAY);
+            case Types.TIMESTAMP:
+                return new ArrowType.Timestamp(TimeUnit.MILLISECOND, null); // Wall-clock time, no zone
+            default:
+                return ArrowType.Utf8.INSTANCE; // Everything else is sent as text
+        }
+    }
+
+    private static ColumnWriter columnWriter(FieldVector vector) {
+        if (vector instanceof BitVector) {
+            BitVector v = (BitVector) vector;
+            return (rs, col, row) -> {
+                boolean value = rs.getBoolean(col);
+                if (rs.wasNull()) v.setNull(row); else v.setSafe(row, value ? 1 : 0);
+            };
+        } else if (vector instanceof TinyIntVector) {
+            TinyIntVector v = (TinyIntVector) vector;
+            return (rs, col, row) -> {
+                byte value = rs.getByte(col);
+                if (rs.wasNull()) v.setNull(row); else v.setSafe(row, value);
+            };
+        } else if (vector instanceof SmallIntVector) {
+            SmallIntVector v = (SmallIntVector) vector;
+            return (rs, col, row) -> {
+                short value = rs.getShort(col);
+                if (rs.wasNull()) v.setNull(row); else v.setSafe(row, value);
+            };
+        } else if (vector instanceof IntVector) {
+            IntVector v = (IntVector) vector;
+            return (rs, col, row) -> {
+                int value = rs.getInt(col);
+                if (rs.wasNull()) v.setNull(row); else v.setSafe(row, value);
+            };
+        } else if (vector instanceof BigIntVector) {
+            BigIntVector v = (BigIntVector) vector;
+            return (rs, col, row) -> {
+                long value = rs.getLong(col);
+                if (rs.wasNull()) v.setNull(row); else v.setSafe(row, value);
+            };
+        } else if (vector instanceof UInt8Vector) {
+            UInt8Vector v = (UInt8Vector) vector;
+            return (rs, col, row) -> {
+                BigDecimal value = rs.getBigDecimal(col); // Values above Long.MAX_VALUE overflow getLong
+                if (value == null) v.setNull(row); else v.setSafe(row, value.toBigInteger().longValue()); // Same 64 bits, read as unsigned
+            };
+        } else if (vector instanceof Float4Vector) {
+            Float4Vector v = (Float4Vector) vector;
+            return (rs, col, row) -> {
+                float value = rs.getFloat(col);
+                if (rs.wasNull()) v.setNull(row); else v.setSafe(row, value);
+            };
+        } else if (vector instanceof Float8Vector) {
+            Float8Vector v = (Float8Vector) vector;
+            return (rs, col, row) -> {
+                double value = rs.getDouble(col);
+                if (rs.wasNull()) v.setNull(row); else v.setSafe(row, value);
+            };
+        } else if (vector instanceof DecimalVector) {
+            DecimalVector v = (DecimalVector) vector;
+            int scale = v.getScale();
+            return (rs, col, row) -> {
+                BigDecimal value = rs.getBigDecimal(col);
+                if (value == null) v.setNull(row); else v.setSafe(row, value.setScale(scale, RoundingMode.HALF_UP));
+            };
+        } else if (vector instanceof Decimal256Vector) {
+            Decimal256Vector v = (Decimal256Vector) vector;
+            int scale = v.getScale();
+            return (rs, col, row) -> {
+                BigDecimal value = rs.getBigDecimal(col);
+                if (value == null) v.setNull(row); else v.setSafe(row, value.setScale(scale, RoundingMode.HALF_UP));
+            };
+        } else if (vector instanceof VarBinaryVector) {
+            VarBinaryVector v = (VarBinaryVector) vector;
+            return (rs, col, row) -> {
+                byte[] value = rs.getBytes(col);
+                if (value == null) v.setNull(row); else v.setSafe(row, value);
+            };
+        } else if (vector instanceof DateDayVector) {
+            DateDayVector v = (DateDayVector) vector;
+            return (rs, col, row) -> {
+                Date value = rs.getDate(col);
+                if (value == null) v.setNull(row); else v.setSafe(row, (int) value.toLocalDate().toEpochDay());
+            };
+        } else if (vector instanceof TimeStampMilliVector) {
+            TimeStampMilliVector v = (TimeStampMilliVector) vector;
+            return (rs, col, row) -> {
+                Timestamp value = rs.getTimestamp(col);
+                // getTime() is the instant in the JVM zone, the vector holds the wall-clock time as if in UTC
+                if (value == null) v.setNull(row); else v.setSafe(row, value.toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+            };
+        } else {
+            VarCharVector v = (VarCharVector) vector;
+            return (rs, col, row) -> {
+                String value = rs.getString(col);
+                if (value == null) v.setNull(row); else v.setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+            };
+        }
+    }
+
+    @FunctionalInterface
+    private interface ColumnWriter {
+        void write(ResultSet rs, int columnIndex, int rowIndex) throws SQLException;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.queryapi.controller.support;
+
+import com.example.queryapi.dto.QueryStreamTrailerDto;
+import com.example.queryapi.service.execution.ResultColumns;
+import com.example.queryapi.service.execution.ResultRowHandler;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes streamed rows as newline-delimited JSON: one object per row, followed by a final
+ * {@code {"@trailer": {...}}} line carrying status, row count and timing.
+ */
+public class NdjsonResultWriter implements ResultRowHandler {
+
+    private static final String TRAILER_FIELD = "@trailer";
+    private static final int FLUSH_EVERY_ROWS = 500;
+
+    private final JsonGenerator generator;
+    private ResultColumns columns;
+    private long rowsWritten;
+
+    public NdjsonResultWriter(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(outputStream);
+        this.generator.setRootValueSeparator(null); // Lines are separated explicitly with '\n'
+    }
+
+    @Override
+    public void start(ResultColumns columns) {
+        this.columns = columns;
+    }
+
+    @Override
+    public void row(ResultSet rs) throws SQLException, IOException {
+        String[] labels = columns.getLabels();
+        generator.writeStartObject();
+        for (int i = 0; i < labels.length; i++) {
+            generator.writeFieldName(labels[i]);
+            generator.writeObject(columns.getValue(rs, i));
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        // Flush the first row right away so the client sees data early, then in chunks
+        if (++rowsWritten == 1 || rowsWritten % FLUSH_EVERY_ROWS == 0) {
+            generator.flush();
+        }
+    }
+
+    public void writeTrailer(QueryStreamTrailerDto trailer) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectField(TRAILER_FIELD, trailer);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.queryapi.controller.support;
+
+import com.example.queryapi.dto.SingleQueryResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * The JSON converter, also recording the time to write a single query response as the serialization
+ * phase of that query. Replaces Spring Boot's default Jackson converter.
+ */
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        if (!(object instanceof SingleQueryResponseDto response) || response.getSerializationRecorder() == null) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+        long started = System.nanoTime();
+        super.writeInternal(object, type, outputMessage);
+        response.getSerializationRecorder().accept(System.nanoTime() - started); // Written after the query, on a request thread
+    }
+}
@@ -1,14 +1,25 @@
 package com.example.queryapi;
 
+import com.example.queryapi.common.enums.ExecutorMode;
 import com.example.queryapi.service.SqlTemplateService;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootApplication(scanBasePackages = "com.example.queryapi")
 @MapperScan("com.example.queryapi.dao.mybatis.mapper") // Scan for MyBatis mappers
@@ -26,15 +37,34 @@ public class QueryApiServiceApplication {
         };
     }
 
-    @Bean("batchQueryExecutorService") // Qualifier for the batch query executor
-    public ExecutorService batchQueryExecutorService() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(10); // Configure as needed
-        executor.setMaxPoolSize(20);  // Configure as needed
-        executor.setQueueCapacity(50); // Configure as needed
-        executor.setThreadNamePrefix("BatchQueryExec-");
-        executor.initialize();
+    @Bean(name = "batchQueryExecutorService", destroyMethod = "shutdown") // Qualifier for the batch query executor
+    public ExecutorService batchQueryExecutorService(QueryExecutionProperties queryExecutionProperties, MeterRegistry meterRegistry) {
+        QueryExecutionProperties.Executor settings = queryExecutionProperties.getExecutor();
+        if (settings.getMode() == ExecutorMode.VIRTUAL) {
+            return newVirtualThreadPerTaskExecutor("BatchQueryExec-"); // Unbounded, saturation shows in query.batch.workers.active
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getCorePoolSize(), settings.getMaxPoolSize(),
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(settings.getQueueCapacity()),
+                new CustomizableThreadFactory("BatchQueryExec-"));
+        // executor.active, executor.queued, executor.queue.remaining, executor.pool.size/max, executor.completed
+        new ExecutorServiceMetrics(executor, "batchQueryExecutor", Tags.empty()).bindTo(meterRegistry);
         return executor;
     }
-}
 
+    /**
+     * Virtual threads need Java 21 while the build targets 17, so the executor is created reflectively.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String threadNamePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("app.query.executor.mode=VIRTUAL requires Java 21 or later (running on "
+                    + Runtime.version() + ")", e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.queryapi;
+
+import com.example.queryapi.common.enums.ExecutorMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput and latency of the batch executor modes under blocking, I/O-bound queries: each task
+ * takes one of {@link #CONNECTIONS} connections and waits {@link #QUERY_MILLIS} for the database.
+ * Closed loop: {@link #CLIENTS} clients each submit a query and wait for it, {@link #QUERIES_PER_CLIENT} times.
+ * <p>
+ * Not part of the regular build: {@code mvn test -Dbenchmark=true -Dtest=BatchQueryExecutorBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BatchQueryExecutorBenchmark {
+
+    private static final int CLIENTS = 200;
+    private static final int QUERIES_PER_CLIENT = 25;
+    private static final int CONNECTIONS = 100; // Summed pool size of the datasources
+    private static final long QUERY_MILLIS = 10;
+
+    @Test
+    void platform() throws Exception {
+        run(ExecutorMode.PLATFORM);
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtual() throws Exception {
+        run(ExecutorMode.VIRTUAL);
+    }
+
+    private static void run(ExecutorMode mode) throws Exception {
+        run(mode, 1); // Warm-up
+        Result result = run(mode, QUERIES_PER_CLIENT);
+        System.out.printf("%-8s %6.0f queries/s  p50 %5.1f ms  p99 %6.1f ms  rejected %d%n", mode,
+                result.completed * 1000.0 / result.elapsedMillis, result.percentile(0.50), result.percentile(0.99), result.rejected);
+    }
+
+    private static Result run(ExecutorMode mode, int queriesPerClient) throws Exception {
+        ExecutorService executor = new QueryApiServiceApplication()
+                .batchQueryExecutorService(BatchQueryExecutorModeTest.properties(mode), new SimpleMeterRegistry());
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        Semaphore connections = new Semaphore(CONNECTIONS);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(CLIENTS);
+        long started = System.nanoTime();
+        for (int c = 0; c < CLIENTS; c++) {
+            clients.execute(() -> {
+                try {
+                    for (int q = 0; q < queriesPerClient; q++) {
+                        long submitted = System.nanoTime();
+                        try {
+                            Future<?> query = executor.submit(() -> {
+                                connections.acquireUninterruptibly();
+                                try {
+                                    Thread.sleep(QUERY_MILLIS);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                } finally {
+                                    connections.release();
+                                }
+                            });
+                            query.get();
+                            latencies.add(System.nanoTime() - submitted);
+                        } catch (RejectedExecutionException e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        clients.shutdown();
+        executor.shutdown();
+        return new Result(latencies, rejected.get(), elapsedMillis);
+    }
+
+    private static final class Result {
+        private final List<Long> latencies;
+        private final int completed;
+        private final int rejected;
+        private final long elapsedMillis;
+
+        private Result(List<Long> latencies, int rejected, long elapsedMillis) {
+            this.latencies = new ArrayList<>(latencies);
+            Collections.sort(this.latencies);
+            this.completed = latencies.size();
+            this.rejected = rejected;
+            this.elapsedMillis = Math.max(elapsedMillis, 1);
+        }
+
+        private double percentile(double p) {
+            if (latencies.isEmpty()) {
+                return Double.NaN;
+            }
+            return latencies.get((int) Math.min(latencies.size() - 1, Math.ceil(p * latencies.size()) - 1)) / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.queryapi;
+
+import com.example.queryapi.common.enums.ExecutorMode;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * app.query.executor.mode selects the kind of threads batch queries run on (and single queries in VIRTUAL mode).
+ */
+class BatchQueryExecutorModeTest {
+
+    private final QueryApiServiceApplication application = new QueryApiServiceApplication();
+
+    @Test
+    void platformModeUsesTheBoundedPool() throws Exception {
+        QueryExecutionProperties properties = properties(ExecutorMode.PLATFORM);
+        properties.getExecutor().setCorePoolSize(3);
+        properties.getExecutor().setMaxPoolSize(5);
+        ExecutorService executor = application.batchQueryExecutorService(properties, new SimpleMeterRegistry());
+        try {
+            assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+            assertThat(((ThreadPoolExecutor) executor).getCorePoolSize()).isEqualTo(3);
+            assertThat(((ThreadPoolExecutor) executor).getMaximumPoolSize()).isEqualTo(5);
+            assertThat(isVirtual(executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS))).isFalse();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualModeRunsTasksOnVirtualThreads() throws Exception {
+        ExecutorService executor = application.batchQueryExecutorService(properties(ExecutorMode.VIRTUAL), new SimpleMeterRegistry());
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            assertThat(isVirtual(thread)).isTrue();
+            assertThat(thread.getName()).startsWith("BatchQueryExec-");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void virtualModeFailsClearlyBeforeJava21() {
+        assertThatThrownBy(() -> application.batchQueryExecutorService(properties(ExecutorMode.VIRTUAL), new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("requires Java 21");
+    }
+
+    static QueryExecutionProperties properties(ExecutorMode mode) {
+        QueryExecutionProperties properties = new QueryExecutionProperties();
+        properties.getExecutor().setMode(mode);
+        return properties;
+    }
+
+    static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false; // Before Java 21 every thread is a platform thread
+        }
+    }
+}
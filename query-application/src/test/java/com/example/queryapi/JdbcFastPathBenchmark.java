@@ -0,0 +1,146 @@
+package com.example.queryapi;
+
+import com.example.queryapi.dao.jpa.entity.SqlTemplateEntity;
+import com.example.queryapi.service.execution.DataSourceBulkhead;
+import com.example.queryapi.service.execution.DataSourceExecutionContext;
+import com.example.queryapi.service.execution.JdbcQueryEngine;
+import com.example.queryapi.service.execution.QueryDeadline;
+import com.example.queryapi.service.execution.ReplicaSet;
+import com.example.queryapi.service.execution.ResultGuard;
+import com.example.queryapi.service.execution.RowMapListExtractor;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency and allocation per query of the plain JDBC fast path ({@link JdbcQueryEngine} on the template's
+ * positional SQL) against the MyBatis path ({@link DataSourceExecutionContext}), for the same templates on
+ * an in-memory H2 database. Both run as the query service calls them, on one thread, so allocations are
+ * those of the calling thread.
+ * <p>
+ * Not part of the regular build: {@code mvn test -Dbenchmark=true -Dtest=JdbcFastPathBenchmark}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JdbcFastPathBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final int WARMUP_QUERIES = 20_000;
+    private static final int MEASURED_QUERIES = 50_000;
+
+    private static HikariDataSource dataSource;
+    private static DataSourceExecutionContext context;
+    private static final JdbcQueryEngine jdbcQueryEngine = new JdbcQueryEngine();
+
+    @BeforeAll
+    static void createTable() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:fast-path;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(2);
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, name VARCHAR(64), email VARCHAR(128), created_at TIMESTAMP)");
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO users VALUES (?, ?, ?, ?)")) {
+                for (int id = 1; id <= ROWS; id++) {
+                    insert.setLong(1, id);
+                    insert.setString(2, "user" + id);
+                    insert.setString(3, "user" + id + "@example.com");
+                    insert.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        context = new DataSourceExecutionContext("benchmark", "H2", dataSource, new DataSourceBulkhead("benchmark", 2, 0), null,
+                new ReplicaSet(List.of()));
+    }
+
+    @AfterAll
+    static void closePool() {
+        context.close();
+    }
+
+    @Test
+    void pointLookup() throws Exception {
+        compare(template("userById", "SELECT id, name, email, created_at FROM users WHERE id = #{id}"), Map.of("id", 42));
+    }
+
+    @Test
+    void hundredRows() throws Exception {
+        compare(template("usersInRange", "SELECT id, name, email, created_at FROM users WHERE id BETWEEN #{from} AND #{to}"),
+                Map.of("from", 101, "to", 200));
+    }
+
+    private static void compare(CompiledSqlTemplate template, Map<String, Object> params) throws Exception {
+        assertThat(template.isJdbcCompatible()).isTrue();
+        assertThat(jdbc(template, params)).isEqualTo(myBatis(template, params));
+        run(template.getSqlCode(), params, "MYBATIS", () -> myBatis(template, params));
+        run(template.getSqlCode(), params, "JDBC", () -> jdbc(template, params));
+    }
+
+    /**
+     * The JDBC engine path of the query service.
+     */
+    private static List<Map<String, Object>> jdbc(CompiledSqlTemplate template, Map<String, Object> params) throws Exception {
+        ResultGuard guard = ResultGuard.unlimited();
+        return jdbcQueryEngine.query(dataSource, template.getPositionalSql().prepare(params), new RowMapListExtractor(guard),
+                guard.getDriverMaxRows(), QueryDeadline.unbounded());
+    }
+
+    /**
+     * The MyBatis engine path of the query service, including the statement lookup per call.
+     */
+    private static List<Map<String, Object>> myBatis(CompiledSqlTemplate template, Map<String, Object> params) throws Exception {
+        return context.selectList(context.resolveTemplateStatement(template), params, dataSource, QueryDeadline.unbounded(),
+                ResultGuard.unlimited());
+    }
+
+    private static void run(String sqlCode, Map<String, Object> params, String engine, Query query) throws Exception {
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            query.run();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] latencies = new long[MEASURED_QUERIES];
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+            long started = System.nanoTime();
+            query.run();
+            latencies[i] = System.nanoTime() - started;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        Arrays.sort(latencies);
+        System.out.printf("%-12s %-7s p50 %6.1f us  p99 %7.1f us  %8d bytes/query%n", sqlCode, engine,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), allocated / MEASURED_QUERIES);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1_000.0;
+    }
+
+    private static CompiledSqlTemplate template(String sqlCode, String sql) {
+        SqlTemplateEntity entity = new SqlTemplateEntity();
+        entity.setSqlCode(sqlCode);
+        entity.setVersion(1);
+        entity.setSqlContent(sql);
+        return CompiledSqlTemplate.from(entity);
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        List<Map<String, Object>> run() throws Exception;
+    }
+}
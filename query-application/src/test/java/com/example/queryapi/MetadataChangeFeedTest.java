@@ -0,0 +1,160 @@
+package com.example.queryapi;
+
+import com.example.queryapi.common.enums.MetadataChangeType;
+import com.example.queryapi.common.enums.MetadataKind;
+import com.example.queryapi.dao.jpa.entity.MetadataChangeLogEntity;
+import com.example.queryapi.dao.jpa.entity.SqlTemplateEntity;
+import com.example.queryapi.dao.jpa.repository.MetadataChangeLogRepository;
+import com.example.queryapi.dao.jpa.repository.SqlTemplateRepository;
+import com.example.queryapi.dto.SqlTemplateDto;
+import com.example.queryapi.service.SqlTemplateService;
+import com.example.queryapi.service.event.MetadataResyncEvent;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import com.example.queryapi.service.template.SqlTemplateRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two instances sharing one metadata DB: template changes made on one reach the other through the change log.
+ */
+class MetadataChangeFeedTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+
+    @BeforeAll
+    static void startInstances() {
+        first = startInstance("first");
+        second = startInstance("second");
+    }
+
+    @AfterAll
+    static void stopInstances() {
+        if (second != null) {
+            second.close();
+        }
+        if (first != null) {
+            first.close();
+        }
+    }
+
+    @Test
+    void templateChangesReachTheOtherInstance() {
+        SqlTemplateService templates = first.getBean(SqlTemplateService.class);
+        SqlTemplateRegistry registry = second.getBean(SqlTemplateRegistry.class);
+
+        templates.createSqlTemplate(template("feedCreated", "SELECT 1"));
+        awaitTrue(() -> registry.find("feedCreated").isPresent());
+
+        templates.updateSqlTemplate("feedCreated", template("feedCreated", "SELECT 2"));
+        awaitTrue(() -> registry.find("feedCreated").map(CompiledSqlTemplate::getSqlContent).filter("SELECT 2"::equals).isPresent());
+
+        templates.deleteSqlTemplate("feedCreated");
+        awaitTrue(() -> registry.find("feedCreated").isEmpty());
+    }
+
+    @Test
+    void changeCommittedAfterTheGapGraceIsAppliedAfterAResync() throws Exception {
+        AtomicInteger resyncs = new AtomicInteger();
+        second.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> {
+            if (event instanceof PayloadApplicationEvent<?> payload && payload.getPayload() instanceof MetadataResyncEvent) {
+                resyncs.incrementAndGet();
+            }
+        });
+        SqlTemplateRegistry registry = second.getBean(SqlTemplateRegistry.class);
+        TransactionTemplate transaction = new TransactionTemplate(first.getBean(PlatformTransactionManager.class));
+        CountDownLatch logged = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            // Takes a change log id, then stays open while a later change commits
+            Future<?> slowWrite = writer.submit(() -> transaction.executeWithoutResult(status -> {
+                SqlTemplateEntity entity = new SqlTemplateEntity();
+                entity.setSqlCode("feedLate");
+                entity.setSqlContent("SELECT 3");
+                first.getBean(SqlTemplateRepository.class).saveAndFlush(entity);
+                MetadataChangeLogEntity change = new MetadataChangeLogEntity();
+                change.setKind(MetadataKind.SQL_TEMPLATE);
+                change.setEntityKey("feedLate");
+                change.setChangeType(MetadataChangeType.UPSERT);
+                change.setOriginInstanceId("first");
+                first.getBean(MetadataChangeLogRepository.class).saveAndFlush(change);
+                logged.countDown();
+                try {
+                    assertThat(commit.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertThat(logged.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+            first.getBean(SqlTemplateService.class).createSqlTemplate(template("feedAfterGap", "SELECT 4"));
+
+            awaitTrue(() -> registry.find("feedAfterGap").isPresent());
+            awaitTrue(() -> resyncs.get() > 0); // The open transaction's id outlived the gap grace
+            assertThat(registry.find("feedLate")).isEmpty();
+
+            commit.countDown();
+            slowWrite.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            awaitTrue(() -> registry.find("feedLate").isPresent());
+        } finally {
+            commit.countDown();
+            writer.shutdownNow();
+        }
+    }
+
+    private static ConfigurableApplicationContext startInstance(String instanceId) {
+        return new SpringApplicationBuilder(QueryApiServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:change-feed;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.cloud.config.enabled=false",
+                        "--app.query.warmup.enabled=false",
+                        "--app.query.change-feed.instance-id=" + instanceId,
+                        "--app.query.change-feed.poll-interval-millis=100",
+                        "--app.query.change-feed.gap-grace-millis=500");
+    }
+
+    private static SqlTemplateDto template(String sqlCode, String sqlContent) {
+        SqlTemplateDto dto = new SqlTemplateDto();
+        dto.setSqlCode(sqlCode);
+        dto.setSqlContent(sqlContent);
+        return dto;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within %d ms", TIMEOUT_MILLIS).isLessThan(deadline);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.queryapi.common.enums;
+
+/**
+ * Enum representing the engine used to run SQL templates against target data sources.
+ */
+public enum ExecutionEngine {
+    /**
+     * Templates are rendered and executed through MyBatis mapped statements.
+     */
+    MYBATIS,
+
+    /**
+     * Static templates are executed as precompiled plain JDBC prepared statements.
+     * Dynamic templates (MyBatis XML tags, ${} substitution) still go through MyBatis.
+     */
+    JDBC
+}
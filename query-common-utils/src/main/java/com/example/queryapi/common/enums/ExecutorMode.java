@@ -0,0 +1,17 @@
+package com.example.queryapi.common.enums;
+
+/**
+ * Enum representing the kind of threads used to run queries off the request thread.
+ */
+public enum ExecutorMode {
+    /**
+     * Bounded pool of platform threads.
+     */
+    PLATFORM,
+
+    /**
+     * One virtual thread per task (requires Java 21). Concurrency is bounded by the target
+     * data source connection pools instead of the thread count.
+     */
+    VIRTUAL
+}
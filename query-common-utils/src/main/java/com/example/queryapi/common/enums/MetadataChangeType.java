@@ -0,0 +1,16 @@
+package com.example.queryapi.common.enums;
+
+/**
+ * Enum representing the kind of change applied to a piece of metadata (SQL template, data source configuration).
+ */
+public enum MetadataChangeType {
+    /**
+     * The metadata entry was created or updated.
+     */
+    UPSERT,
+
+    /**
+     * The metadata entry was deleted.
+     */
+    DELETE
+}
@@ -0,0 +1,16 @@
+package com.example.queryapi.common.enums;
+
+/**
+ * Enum representing the kind of metadata a change applies to.
+ */
+public enum MetadataKind {
+    /**
+     * An SQL template, identified by its sqlCode.
+     */
+    SQL_TEMPLATE,
+
+    /**
+     * A data source configuration, identified by its datasourceId.
+     */
+    DATA_SOURCE
+}
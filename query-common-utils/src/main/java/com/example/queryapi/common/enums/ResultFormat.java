@@ -0,0 +1,16 @@
+package com.example.queryapi.common.enums;
+
+/**
+ * Enum representing the shape of query result data in responses.
+ */
+public enum ResultFormat {
+    /**
+     * One JSON object per row, keyed by column name.
+     */
+    ROWS,
+
+    /**
+     * Column metadata once, then each row as a positional array.
+     */
+    COLUMNAR
+}
@@ -0,0 +1,20 @@
+package com.example.queryapi.common.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when a request is rejected because a capacity limit (e.g. a data source's
+ * concurrency partition) is saturated. Clients may retry later.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ResourceExhaustedException extends CustomException {
+
+    public ResourceExhaustedException(String message) {
+        super(message);
+    }
+
+    public ResourceExhaustedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -56,6 +56,10 @@ public class DataSourceConfigEntity {
     @Column(columnDefinition = "TEXT") // For storing JSON string for HikariCP params
     private String connectionPoolConfig;
 
+    @Lob
+    @Column(columnDefinition = "TEXT") // JSON list of read replica endpoints (jdbcUrl, username, password, lagQuery)
+    private String replicaConfig;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,46 @@
+package com.example.queryapi.dao.jpa.entity;
+
+import com.example.queryapi.common.enums.MetadataChangeType;
+import com.example.queryapi.common.enums.MetadataKind;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SourceType;
+
+import java.time.LocalDateTime;
+
+/**
+ * One committed change of a template or datasource configuration, written in the same transaction as
+ * the change. Other service instances poll this table to refresh their in-memory state.
+ */
+@Entity
+@Table(name = "metadata_change_log", indexes = {
+        @Index(name = "idx_metadata_change_created_at", columnList = "createdAt")
+})
+@Data
+@EqualsAndHashCode(of = "id")
+public class MetadataChangeLogEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // Increasing, the pollers' cursor
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private MetadataKind kind;
+
+    @Column(nullable = false)
+    private String entityKey; // sqlCode or datasourceId
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private MetadataChangeType changeType;
+
+    @Column(nullable = false, length = 64)
+    private String originInstanceId; // The instance that made the change applies it locally already
+
+    @CreationTimestamp(source = SourceType.DB) // Instances compare it with the DB clock, never their own
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
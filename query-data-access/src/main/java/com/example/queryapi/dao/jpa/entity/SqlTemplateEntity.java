@@ -36,6 +36,33 @@ public class SqlTemplateEntity {
     @Column(nullable = true) // Optional hint for dialect-specific SQL
     private String dataSourceTypeHint;
 
+    @Column(nullable = true) // Result cache TTL, null or 0 disables result caching for this template
+    private Integer resultCacheTtlSeconds;
+
+    @Column(nullable = true) // Upper bound of the estimated size of all cached results of this template
+    private Long resultCacheMaxBytes;
+
+    @Column(nullable = true) // Parameter of a single "= #{param}" key predicate, enables micro-batched lookups
+    private String batchKeyParam;
+
+    @Column(nullable = true) // Result column holding the lookup key, used to split batched results
+    private String batchKeyColumn;
+
+    @Column(nullable = true) // Query deadline in milliseconds, null uses app.query.deadline.default-query-timeout-millis
+    private Integer queryTimeoutMillis;
+
+    @Column(nullable = true) // Unique, ordered result column; enables keyset pagination of the template's results
+    private String pageKeyColumn;
+
+    @Column(nullable = true) // Row limit of buffered results, null uses app.query.result-limits.default-max-rows
+    private Integer maxResultRows;
+
+    @Column(nullable = true) // Estimated size limit of buffered results, null uses app.query.result-limits.default-max-bytes
+    private Long maxResultBytes;
+
+    @Column(nullable = true) // Only reads data: may run on a read replica of the datasource
+    private Boolean readOnly;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,23 @@
+package com.example.queryapi.dao.jpa.projection;
+
+import com.example.queryapi.common.enums.DataSourceType;
+
+import java.time.LocalDateTime;
+
+/**
+ * The non-@Lob columns of a datasource configuration, for listings. Spring Data selects only these.
+ */
+public interface DataSourceSummary {
+
+    String getDatasourceId();
+
+    DataSourceType getSourceType();
+
+    String getName();
+
+    String getDbType();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+}
@@ -1,6 +1,9 @@
 package com.example.queryapi.dao.jpa.repository;
 
 import com.example.queryapi.dao.jpa.entity.DataSourceConfigEntity;
+import com.example.queryapi.dao.jpa.projection.DataSourceSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -14,5 +17,7 @@ public interface DataSourceConfigRepository extends JpaRepository<DataSourceConf
     boolean existsByDatasourceId(String datasourceId);
 
     void deleteByDatasourceId(String datasourceId);
+
+    Page<DataSourceSummary> findAllProjectedBy(Pageable pageable); // Listing without the @Lob columns
 }
 
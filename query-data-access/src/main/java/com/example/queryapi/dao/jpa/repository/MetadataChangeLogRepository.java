@@ -0,0 +1,33 @@
+package com.example.queryapi.dao.jpa.repository;
+
+import com.example.queryapi.dao.jpa.entity.MetadataChangeLogEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MetadataChangeLogRepository extends JpaRepository<MetadataChangeLogEntity, Long> {
+
+    List<MetadataChangeLogEntity> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Query(value = "SELECT LOCALTIMESTAMP", nativeQuery = true)
+    LocalDateTime findDatabaseTime(); // The clock createdAt is taken from
+
+    @Query("select max(c.id) from MetadataChangeLogEntity c where c.createdAt < :before")
+    Long findMaxIdCreatedBefore(@Param("before") LocalDateTime before); // null if there is none
+
+    @Query("select min(c.id) from MetadataChangeLogEntity c")
+    Long findMinId(); // null if the log is empty
+
+    @Modifying
+    @Transactional
+    @Query("delete from MetadataChangeLogEntity c where c.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
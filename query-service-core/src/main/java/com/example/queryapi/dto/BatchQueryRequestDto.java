@@ -1,7 +1,9 @@
 package com.example.queryapi.dto;
 
+import com.example.queryapi.common.enums.ResultFormat;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,7 +20,11 @@ public class BatchQueryRequestDto {
     @Size(max = 50, message = "Batch size cannot exceed 50 queries") // Example limit
     private List<@Valid SingleQueryRequestDto> queries;
 
-    // Optional: Add a flag for sequential or parallel execution if needed
-    // private boolean sequentialExecution = false;
+    private ResultFormat resultFormat; // Optional: default format for queries that do not set their own
+
+    private boolean sequentialExecution = false; // Optional: run the queries one at a time, in request order
+
+    @Positive(message = "Timeout must be positive")
+    private Long timeoutMillis; // Optional: shortens the batch deadline; queries still running when it passes are cancelled
 }
 
@@ -15,5 +15,18 @@ public class BatchQueryResponseDto {
     private long totalExecutionTimeMillis; // Total time for the entire batch
 
     // Could add overall status if needed, e.g., ALL_SUCCESS, PARTIAL_SUCCESS, ALL_FAILURE
+
+    /**
+     * Releases the memory reserved for all results; call once the response has been written or dropped.
+     */
+    public void releaseResults() {
+        if (results != null) {
+            results.forEach(result -> {
+                if (result != null) {
+                    result.releaseResult();
+                }
+            });
+        }
+    }
 }
 
@@ -0,0 +1,14 @@
+package com.example.queryapi.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchQueryResultEventDto {
+
+    private int index; // Position of the query in the batch request
+    private SingleQueryResponseDto result;
+}
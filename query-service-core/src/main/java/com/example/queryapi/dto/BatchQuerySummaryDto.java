@@ -0,0 +1,16 @@
+package com.example.queryapi.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchQuerySummaryDto {
+
+    private int totalQueries;
+    private int succeeded; // Queries with status SUCCESS
+    private int failed; // Queries with status FAILURE or ERROR
+    private long totalExecutionTimeMillis; // Total time for the entire batch
+}
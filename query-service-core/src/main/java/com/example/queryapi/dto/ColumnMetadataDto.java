@@ -0,0 +1,15 @@
+package com.example.queryapi.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnMetadataDto {
+
+    private String name; // Column label as returned by the database
+    private String jdbcType; // Standard JDBC type name, e.g. "BIGINT", "VARCHAR"
+    private String dbTypeName; // Database-specific type name, e.g. "INT UNSIGNED"
+}
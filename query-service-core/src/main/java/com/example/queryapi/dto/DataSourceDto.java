@@ -1,6 +1,7 @@
 package com.example.queryapi.dto;
 
 import com.example.queryapi.common.enums.DataSourceType;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -9,6 +10,7 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -52,7 +54,9 @@ public class DataSourceDto {
     private String credentialsKey; // For API_PROVIDED type
 
     // Using Map for flexibility, can be a specific class if structure is fixed
-    private Map<String, String> connectionPoolConfig; // e.g., {"maxPoolSize": "10", "minIdle": "2"}
+    private Map<String, String> connectionPoolConfig; // e.g., {"maximumPoolSize": "10", "minimumIdle": "2", "driver.cachePrepStmts": "true"}
+
+    private List<@Valid ReplicaEndpointDto> replicas; // Read replicas for read-only templates, each pooled with the settings above
 
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -0,0 +1,19 @@
+package com.example.queryapi.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataSourcePageDto {
+
+    private List<DataSourceSummaryDto> content; // Ordered by datasourceId
+    private int page; // Zero-based
+    private int size;
+    private long totalElements;
+    private int totalPages;
+}
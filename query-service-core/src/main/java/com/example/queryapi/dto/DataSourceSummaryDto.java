@@ -0,0 +1,21 @@
+package com.example.queryapi.dto;
+
+import com.example.queryapi.common.enums.DataSourceType;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataSourceSummaryDto {
+
+    private String datasourceId;
+    private DataSourceType sourceType;
+    private String name;
+    private String dbType;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
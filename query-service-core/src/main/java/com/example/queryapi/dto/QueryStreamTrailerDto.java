@@ -0,0 +1,18 @@
+package com.example.queryapi.dto;
+
+import com.example.queryapi.common.enums.ExecutionStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryStreamTrailerDto {
+
+    private String sqlCode; // Echo back the sqlCode if provided in request
+    private ExecutionStatus status; // SUCCESS only if every row was streamed
+    private long rowCount; // Number of rows written before the trailer
+    private long executionTimeMillis;
+    private String errorMessage; // Error message if the stream was cut short
+}
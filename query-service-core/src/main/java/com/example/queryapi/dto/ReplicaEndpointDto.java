@@ -0,0 +1,24 @@
+package com.example.queryapi.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicaEndpointDto {
+
+    @NotBlank(message = "Replica JDBC URL cannot be blank")
+    @Size(max = 1024, message = "Replica JDBC URL cannot exceed 1024 characters")
+    private String jdbcUrl;
+
+    @Size(max = 255, message = "Replica username cannot exceed 255 characters")
+    private String username; // null to use the primary's credentials
+
+    private String password; // Mask or omit in responses
+
+    private String lagQuery; // Returns the replication lag in seconds; null for the database type's default
+}
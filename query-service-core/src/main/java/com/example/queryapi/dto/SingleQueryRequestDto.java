@@ -0,0 +1,46 @@
+package com.example.queryapi.dto;
+
+import com.example.queryapi.common.enums.ResultFormat;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SingleQueryRequestDto {
+
+    @NotBlank(message = "Datasource ID cannot be blank")
+    private String datasourceId;
+
+    // Either sqlCode or rawSql must be provided
+    private String sqlCode; // Identifier for a pre-defined SQL template
+
+    private String rawSql; // Raw SQL string for ad-hoc queries (use with caution)
+
+    private Map<String, Object> params; // Parameters for the SQL query
+
+    private ResultFormat resultFormat; // Optional: ROWS (default) or COLUMNAR
+
+    @Positive(message = "Timeout must be positive")
+    private Long timeoutMillis; // Optional: shortens the template's query deadline, never extends it
+
+    // Optional: lower the template's result limits; larger results are truncated
+    @Positive(message = "Max rows must be positive")
+    private Integer maxRows;
+    @Positive(message = "Max bytes must be positive")
+    private Long maxBytes;
+
+    // Templates with a page key column only: rows per page, and the previous response's nextPageToken to continue
+    @Positive(message = "Page size must be positive")
+    private Integer pageSize;
+    private String pageToken;
+
+    // Optional: Add a flag to indicate if this is part of a batch or a standalone single query
+    // boolean isBatchPart = false;
+}
+
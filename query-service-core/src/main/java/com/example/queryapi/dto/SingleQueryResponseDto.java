@@ -0,0 +1,75 @@
+package com.example.queryapi.dto;
+
+import com.example.queryapi.common.enums.ExecutionStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SingleQueryResponseDto {
+
+    private String sqlCode; // Echo back the sqlCode if provided in request
+    private ExecutionStatus status;
+    private List<Map<String, Object>> data; // Query result data
+    private String errorMessage; // Error message if status is FAILURE or ERROR
+    private Long executionTimeMillis; // Optional: execution time
+
+    // COLUMNAR format only: column metadata once, then each row as a positional array
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<ColumnMetadataDto> columns;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Object[]> rows;
+
+    // True if the result was cut off at its row or size limit
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean truncated;
+
+    // Paged templates only: pass back as pageToken for the next page; absent on the last page
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextPageToken;
+
+    // Single queries only: takes the nanoseconds spent writing this response, not serialized
+    @JsonIgnore
+    private transient LongConsumer serializationRecorder;
+
+    // Returns the result's share of the result memory budget, not serialized
+    @JsonIgnore
+    private transient Runnable resultRelease;
+
+    /**
+     * Releases the memory reserved for this result; call once the response has been written or dropped.
+     */
+    public void releaseResult() {
+        Runnable release = resultRelease;
+        resultRelease = null;
+        if (release != null) {
+            release.run();
+        }
+    }
+
+    // Static factory methods for convenience
+    public static SingleQueryResponseDto success(String sqlCode, List<Map<String, Object>> data, long executionTimeMillis) {
+        return new SingleQueryResponseDto(sqlCode, ExecutionStatus.SUCCESS, data, null, executionTimeMillis, null, null, false, null, null, null);
+    }
+
+    public static SingleQueryResponseDto successColumnar(String sqlCode, List<ColumnMetadataDto> columns, List<Object[]> rows, long executionTimeMillis) {
+        return new SingleQueryResponseDto(sqlCode, ExecutionStatus.SUCCESS, null, null, executionTimeMillis, columns, rows, false, null, null, null);
+    }
+
+    public static SingleQueryResponseDto failure(String sqlCode, String errorMessage, long executionTimeMillis) {
+        return new SingleQueryResponseDto(sqlCode, ExecutionStatus.FAILURE, null, errorMessage, executionTimeMillis, null, null, false, null, null, null);
+    }
+
+    public static SingleQueryResponseDto error(String sqlCode, String errorMessage, long executionTimeMillis) {
+        return new SingleQueryResponseDto(sqlCode, ExecutionStatus.ERROR, null, errorMessage, executionTimeMillis, null, null, false, null, null, null);
+    }
+}
+
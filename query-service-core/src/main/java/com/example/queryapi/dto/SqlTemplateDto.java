@@ -0,0 +1,67 @@
+package com.example.queryapi.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SqlTemplateDto {
+
+    private Long id;
+
+    @NotBlank(message = "SQL Code cannot be blank")
+    @Size(max = 255, message = "SQL Code cannot exceed 255 characters")
+    private String sqlCode;
+
+    @NotBlank(message = "SQL Content cannot be blank")
+    private String sqlContent;
+
+    private String description;
+
+    private Integer version;
+
+    @Size(max = 50, message = "Data source type hint cannot exceed 50 characters")
+    private String dataSourceTypeHint;
+
+    @PositiveOrZero(message = "Result cache TTL cannot be negative")
+    private Integer resultCacheTtlSeconds; // null or 0 disables result caching
+
+    @PositiveOrZero(message = "Result cache size cannot be negative")
+    private Long resultCacheMaxBytes; // null falls back to app.query.result-cache.default-max-bytes
+
+    // Point-lookup templates: concurrent calls are coalesced into one "IN (...)" query when both are set
+    @Size(max = 255, message = "Batch key parameter cannot exceed 255 characters")
+    private String batchKeyParam;
+    @Size(max = 255, message = "Batch key column cannot exceed 255 characters")
+    private String batchKeyColumn;
+
+    @Positive(message = "Query timeout must be positive")
+    private Integer queryTimeoutMillis; // null falls back to app.query.deadline.default-query-timeout-millis
+
+    // Keyset pagination: a unique result column (e.g. "id"), pages are ordered by it and resumed after the last key
+    @Pattern(regexp = "[A-Za-z_][A-Za-z0-9_]*", message = "Page key column must be a plain column name")
+    private String pageKeyColumn;
+
+    // Buffered results over these limits are truncated; null falls back to app.query.result-limits
+    @Positive(message = "Max result rows must be positive")
+    private Integer maxResultRows;
+    @Positive(message = "Max result bytes must be positive")
+    private Long maxResultBytes;
+
+    private Boolean readOnly; // Runs on a read replica of the datasource if it has any
+
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private String createdBy;
+    private String lastModifiedBy;
+}
+
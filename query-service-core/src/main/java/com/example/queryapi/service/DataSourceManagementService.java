@@ -1,6 +1,8 @@
 package com.example.queryapi.service;
 
 import com.example.queryapi.dto.DataSourceDto; // Assuming DTOs will be created later
+import com.example.queryapi.dto.DataSourcePageDto;
+import com.example.queryapi.service.execution.DataSourceExecutionContext;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,12 +25,21 @@ public interface DataSourceManagementService {
     Optional<DataSourceDto> getDataSourceByDatasourceId(String datasourceId);
 
     /**
-     * Retrieves all configured data sources.
+     * Retrieves all configured data sources with all their columns. Prefer {@link #listDataSources} for listings.
      *
      * @return A list of all data source configuration DTOs.
      */
     List<DataSourceDto> getAllDataSources();
 
+    /**
+     * Lists data sources one page at a time, ordered by datasourceId, without their large columns.
+     *
+     * @param page Zero-based page number.
+     * @param size Page size, capped at app.query.metadata-cache.max-page-size.
+     * @return The page of data source summaries.
+     */
+    DataSourcePageDto listDataSources(int page, int size);
+
     /**
      * Updates an existing data source configuration.
      *
@@ -54,5 +65,25 @@ public interface DataSourceManagementService {
      * @throws com.example.queryapi.common.exception.ResourceNotFoundException if the datasourceId is not found or cannot be configured.
      */
     javax.sql.DataSource getActiveDataSource(String datasourceId);
+
+    /**
+     * Gets the execution context (connection pool plus dedicated MyBatis statement registry) for a given datasourceId.
+     * The context is created together with the pool and replaced together with it when the configuration changes.
+     *
+     * @param datasourceId The unique identifier of the data source.
+     * @return The execution context bound to the data source.
+     * @throws com.example.queryapi.common.exception.ResourceNotFoundException if the datasourceId is not found.
+     */
+    DataSourceExecutionContext getExecutionContext(String datasourceId);
+
+    /**
+     * Leases the execution context of a datasource for the duration of a query. If the datasource
+     * configuration changes meanwhile, the replaced pool stays open until the lease is closed.
+     *
+     * @param datasourceId The unique identifier of the data source.
+     * @return A lease to close once the query is done.
+     * @throws com.example.queryapi.common.exception.ResourceNotFoundException if the datasourceId is not found.
+     */
+    DataSourceExecutionContext.Lease leaseExecutionContext(String datasourceId);
 }
 
@@ -2,27 +2,62 @@ package com.example.queryapi.service;
 
 import com.example.queryapi.dto.BatchQueryRequestDto;
 import com.example.queryapi.dto.BatchQueryResponseDto;
+import com.example.queryapi.dto.BatchQuerySummaryDto;
 import com.example.queryapi.dto.SingleQueryRequestDto;
+import com.example.queryapi.dto.QueryStreamTrailerDto;
 import com.example.queryapi.dto.SingleQueryResponseDto;
+import com.example.queryapi.service.execution.BatchResultListener;
+import com.example.queryapi.service.execution.QueryDeadline;
+import com.example.queryapi.service.execution.ResultRowHandler;
+
+import java.util.concurrent.CompletableFuture;
 
 public interface QueryExecutionService {
 
     /**
-     * Executes a single SQL query based on the provided request.
+     * Executes a single SQL query based on the provided request: on the calling thread in PLATFORM executor mode,
+     * on a virtual thread of the query executor in VIRTUAL mode.
      *
      * @param requestDto DTO containing details for the single query execution,
      *                   including datasourceId, sqlCode or raw SQL, and parameters.
-     * @return DTO containing the result of the single query execution.
+     * @param scope      Deadline of the calling request; cancelling it (e.g. on request timeout) stops the query.
+     * @return Future completed with the result of the single query execution, or with a ResourceExhaustedException
+     * if the datasource is saturated. Already completed in PLATFORM mode. The result holds its share of the result memory
+     * budget until {@link SingleQueryResponseDto#releaseResult()} is called once it has been written.
      */
-    SingleQueryResponseDto executeSingleQuery(SingleQueryRequestDto requestDto);
+    CompletableFuture<SingleQueryResponseDto> executeSingleQuery(SingleQueryRequestDto requestDto, QueryDeadline scope);
 
     /**
      * Executes a batch of SQL queries based on the provided request.
      *
      * @param batchRequestDto DTO containing a list of individual query requests.
-     * @return DTO containing results for each query in the batch.
+     * @param scope           Deadline of the calling request; cancelling it (e.g. on client disconnect) stops the batch.
+     * @return Future completed with the results for each query in the batch. They hold their share of the result
+     * memory budget until {@link BatchQueryResponseDto#releaseResults()} is called once they have been written.
+     */
+    CompletableFuture<BatchQueryResponseDto> executeBatchQuery(BatchQueryRequestDto batchRequestDto, QueryDeadline scope);
+
+    /**
+     * Executes a batch of SQL queries without waiting for it: each result is handed to the listener
+     * as soon as its query completes, and is not retained afterwards.
+     *
+     * @param batchRequestDto DTO containing a list of individual query requests.
+     * @param listener        Receives each result with its position in the request, and releases it once written.
+     * @param scope           Deadline of the calling request; cancelling it (e.g. on client disconnect) stops the batch.
+     * @return Future completed with the batch summary after the last result has been delivered.
+     */
+    CompletableFuture<BatchQuerySummaryDto> streamBatchQuery(BatchQueryRequestDto batchRequestDto, BatchResultListener listener,
+                                                             QueryDeadline scope);
+
+    /**
+     * Executes a single SQL query and streams its rows to the given handler as they are fetched
+     * from the database cursor, without materializing the result.
+     *
+     * @param requestDto DTO containing details for the query execution.
+     * @param rowHandler Receives the column metadata and then each row.
+     * @return Trailer describing the outcome (status, row count, timing) once the stream has ended.
      */
-    BatchQueryResponseDto executeBatchQuery(BatchQueryRequestDto batchRequestDto);
+    QueryStreamTrailerDto streamSingleQuery(SingleQueryRequestDto requestDto, ResultRowHandler rowHandler);
 
 }
 
@@ -0,0 +1,91 @@
+package com.example.queryapi.service.cache;
+
+import com.example.queryapi.dto.DataSourceDto;
+import com.example.queryapi.dto.DataSourcePageDto;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.event.DataSourceChangedEvent;
+import com.example.queryapi.service.event.MetadataResyncEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of datasource configurations (as DTOs, JSON columns already parsed) and of
+ * datasource list pages, for the management API that UIs and health checks poll.
+ * <p>
+ * Concurrent misses for the same key share one load. Unknown datasources are not cached. Writes drop
+ * the datasource's entry and all pages once they commit; the TTL bounds how long writes made by other
+ * instances stay unseen. Cached DTOs are shared between responses and must not be modified.
+ */
+@Component
+public class DataSourceMetadataCache {
+
+    private final boolean enabled;
+    private final Cache<String, DataSourceDto> dataSources;
+    private final Cache<List<Integer>, DataSourcePageDto> pages;
+
+    @Autowired
+    public DataSourceMetadataCache(QueryExecutionProperties queryExecutionProperties, MeterRegistry meterRegistry) {
+        QueryExecutionProperties.MetadataCache properties = queryExecutionProperties.getMetadataCache();
+        this.enabled = properties.isEnabled();
+        this.dataSources = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(properties.getTtlMillis()))
+                .maximumSize(properties.getMaxEntries())
+                .recordStats()
+                .build();
+        this.pages = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(properties.getTtlMillis()))
+                .maximumSize(properties.getMaxPages())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, dataSources, "datasource-metadata", Tags.empty());
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "datasource-metadata-pages", Tags.empty());
+    }
+
+    public Optional<DataSourceDto> get(String datasourceId, Supplier<Optional<DataSourceDto>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return Optional.ofNullable(dataSources.get(datasourceId, id -> loader.get().orElse(null)));
+    }
+
+    public DataSourcePageDto getPage(int page, int size, Supplier<DataSourcePageDto> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return pages.get(List.of(page, size), key -> loader.get());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDataSourceChanged(DataSourceChangedEvent event) {
+        invalidate(event.getDatasourceId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMetadataResync(MetadataResyncEvent event) {
+        invalidateAll();
+    }
+
+    /**
+     * Drops a datasource and every list page, which may show it.
+     */
+    public void invalidate(String datasourceId) {
+        dataSources.invalidate(datasourceId);
+        pages.invalidateAll();
+    }
+
+    public void invalidateAll() {
+        dataSources.invalidateAll();
+        pages.invalidateAll();
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.queryapi.service.cache;
+
+import com.example.queryapi.common.enums.ResultFormat;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.event.DataSourceChangedEvent;
+import com.example.queryapi.service.event.MetadataResyncEvent;
+import com.example.queryapi.service.event.SqlTemplateChangedEvent;
+import com.example.queryapi.service.execution.QueryDeadline;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caches query results per SQL template, keyed by datasource, normalized parameters and result format.
+ * <p>
+ * Every template with a result cache TTL gets its own Caffeine cache, so TTL and maximum size (by
+ * estimated bytes) are configured per template. Concurrent misses for the same key share one load:
+ * the first caller runs the query, the others wait for its result until their own deadline. Failed loads
+ * are not cached. Cached results are shared between responses and must not be modified.
+ */
+@Component
+@Slf4j
+public class QueryResultCache {
+
+    private static final String CACHE_NAME_PREFIX = "query-result:";
+
+    private final QueryExecutionProperties queryExecutionProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, TemplateResultCache> caches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QueryResultCache(QueryExecutionProperties queryExecutionProperties, MeterRegistry meterRegistry) {
+        this.queryExecutionProperties = queryExecutionProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns the cached result for the given query, loading it on a miss.
+     *
+     * @param deadline Bounds the wait for a load run by another caller.
+     * @param weigher  Estimated size in bytes of a loaded result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(CompiledSqlTemplate template, String datasourceId, Map<String, Object> params, ResultFormat format,
+                     QueryDeadline deadline, Loader<T> loader, ToLongFunction<T> weigher) throws Exception {
+        if (!queryExecutionProperties.getResultCache().isEnabled() || !template.isResultCacheEnabled()) {
+            return loader.load();
+        }
+        AsyncCache<List<Object>, CachedResult> cache = cacheFor(template);
+        List<Object> key = List.of(datasourceId, format != null ? format : ResultFormat.ROWS, normalize(params != null ? params : Map.of()));
+
+        CompletableFuture<CachedResult> promise = new CompletableFuture<>();
+        CompletableFuture<CachedResult> future = cache.get(key, (k, executor) -> promise);
+        if (future != promise) {
+            return (T) await(future, deadline).value; // Hit, or another caller is loading the same key
+        }
+        try {
+            T value = loader.load();
+            promise.complete(new CachedResult(value, weigher.applyAsLong(value)));
+            return value;
+        } catch (Exception | Error e) {
+            promise.completeExceptionally(e); // Removed from the cache, waiting callers see the failure
+            throw e;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSqlTemplateChanged(SqlTemplateChangedEvent event) {
+        TemplateResultCache removed = caches.remove(event.getSqlCode());
+        if (removed != null) {
+            removed.cache.synchronous().invalidateAll();
+            removeMeters(event.getSqlCode());
+            log.debug("Result cache cleared for sqlCode '{}' ({}).", event.getSqlCode(), event.getChangeType());
+        }
+    }
+
+    /**
+     * Drops the results of a datasource that was repointed or removed, in every template's cache.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDataSourceChanged(DataSourceChangedEvent event) {
+        for (TemplateResultCache templateCache : caches.values()) {
+            templateCache.cache.synchronous().asMap().keySet().removeIf(key -> event.getDatasourceId().equals(key.get(0)));
+        }
+        log.debug("Result cache cleared for datasource '{}' ({}).", event.getDatasourceId(), event.getChangeType());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMetadataResync(MetadataResyncEvent event) {
+        caches.values().forEach(templateCache -> templateCache.cache.synchronous().invalidateAll());
+        log.debug("Result caches cleared for a metadata resync.");
+    }
+
+    /**
+     * Waits for a load run by another caller. The wait ends with this caller's deadline, or when it is cancelled;
+     * the load itself goes on for the other waiters.
+     */
+    private static CachedResult await(CompletableFuture<CachedResult> future, QueryDeadline deadline) throws Exception {
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            return future.join();
+        }
+        CompletableFuture<CachedResult> waiter = future.copy(); // Completing the copy leaves the shared load alone
+        deadline.onCancel(() -> waiter.completeExceptionally(new SQLTimeoutException(deadline.getCancelReason())));
+        try {
+            return deadline.hasLimit() ? waiter.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS) : waiter.get();
+        } catch (TimeoutException e) {
+            deadline.cancel("Query deadline exceeded while waiting for a cached result");
+            throw new SQLTimeoutException(deadline.getCancelReason());
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private AsyncCache<List<Object>, CachedResult> cacheFor(CompiledSqlTemplate template) {
+        TemplateResultCache current = caches.compute(template.getSqlCode(), (sqlCode, existing) -> {
+            if (existing != null && !template.isNewerThan(existing.template)) {
+                return existing;
+            }
+            if (existing != null) {
+                existing.cache.synchronous().invalidateAll();
+                removeMeters(sqlCode);
+            }
+            return new TemplateResultCache(template, buildCache(template));
+        });
+        return current.cache;
+    }
+
+    private AsyncCache<List<Object>, CachedResult> buildCache(CompiledSqlTemplate template) {
+        long maxBytes = template.getResultCacheMaxBytes() != null
+                ? template.getResultCacheMaxBytes()
+                : queryExecutionProperties.getResultCache().getDefaultMaxBytes();
+        AsyncCache<List<Object>, CachedResult> cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(template.getResultCacheTtlSeconds()))
+                .maximumWeight(maxBytes)
+                .weigher((List<Object> key, CachedResult result) -> (int) Math.min(result.weight, Integer.MAX_VALUE))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME_PREFIX + template.getSqlCode(), Tags.empty());
+        log.debug("Result cache created for sqlCode '{}' (ttl {}s, max {} bytes).",
+                template.getSqlCode(), template.getResultCacheTtlSeconds(), maxBytes);
+        return cache;
+    }
+
+    private void removeMeters(String sqlCode) {
+        String cacheName = CACHE_NAME_PREFIX + sqlCode;
+        List<Meter> meters = new ArrayList<>();
+        for (Meter meter : meterRegistry.getMeters()) {
+            if (cacheName.equals(meter.getId().getTag("cache"))) {
+                meters.add(meter);
+            }
+        }
+        meters.forEach(meterRegistry::remove);
+    }
+
+    /**
+     * Parameter maps are compared by value with a stable key order; arrays are compared by content.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>(); // Null values are kept, TreeMap allows them
+            ((Map<?, ?>) value).forEach((k, v) -> sorted.put(String.valueOf(k), normalize(v)));
+            return sorted;
+        } else if (value instanceof Collection) {
+            List<Object> list = new ArrayList<>();
+            ((Collection<?>) value).forEach(v -> list.add(normalize(v)));
+            return list;
+        } else if (value instanceof Object[]) {
+            return normalize(Arrays.asList((Object[]) value));
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    private static final class CachedResult {
+        private final Object value;
+        private final long weight;
+
+        private CachedResult(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class TemplateResultCache {
+        private final CompiledSqlTemplate template;
+        private final AsyncCache<List<Object>, CachedResult> cache;
+
+        private TemplateResultCache(CompiledSqlTemplate template, AsyncCache<List<Object>, CachedResult> cache) {
+            this.template = template;
+            this.cache = cache;
+        }
+    }
+}
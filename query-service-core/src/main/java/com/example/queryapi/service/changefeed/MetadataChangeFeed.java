@@ -0,0 +1,235 @@
+package com.example.queryapi.service.changefeed;
+
+import com.example.queryapi.common.enums.MetadataChangeType;
+import com.example.queryapi.common.enums.MetadataKind;
+import com.example.queryapi.dao.jpa.entity.MetadataChangeLogEntity;
+import com.example.queryapi.dao.jpa.repository.MetadataChangeLogRepository;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.event.DataSourceChangedEvent;
+import com.example.queryapi.service.event.MetadataResyncEvent;
+import com.example.queryapi.service.event.SqlTemplateChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps instances that share one metadata DB coherent. Template and datasource writes add a row to
+ * {@code metadata_change_log} in their own transaction; every instance polls the log and republishes
+ * the changes made by other instances as local {@link SqlTemplateChangedEvent}s and
+ * {@link DataSourceChangedEvent}s, so the template registry, pools, warm-up and caches react exactly
+ * as to a local write. Republished events carry no template, listeners reload it from the DB.
+ * <p>
+ * Ids are assigned on insert but become visible on commit, so a lower id can appear after a higher
+ * one. Skipped ids are looked up again on every poll. Once one has been missing for the gap grace
+ * (a rolled back insert, or a transaction still open), or more ids are missing than can be tracked, all
+ * templates and datasources are reloaded with a {@link MetadataResyncEvent}; an expired id that shows
+ * up later is still applied. Ages are measured with the DB clock, which also stamps the log rows, so
+ * clock skew between instances does not matter.
+ */
+@Component
+@Slf4j
+public class MetadataChangeFeed {
+
+    private static final int MAX_TRACKED_GAPS = 1_000;
+
+    private final MetadataChangeLogRepository changeLogRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QueryExecutionProperties.ChangeFeed properties;
+    private final String instanceId;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<Long, LocalDateTime> gaps = new TreeMap<>(); // Missing id -> DB time first missed; poller thread only
+    private final Map<Long, LocalDateTime> expiredGaps = new TreeMap<>(); // Past the grace and resynced, still applied if they show up
+    private long cursor; // Highest id applied; poller thread only
+    private long lastCleanupNanos = System.nanoTime();
+
+    @Autowired
+    public MetadataChangeFeed(MetadataChangeLogRepository changeLogRepository, ApplicationEventPublisher eventPublisher,
+                              QueryExecutionProperties queryExecutionProperties) {
+        this.changeLogRepository = changeLogRepository;
+        this.eventPublisher = eventPublisher;
+        this.properties = queryExecutionProperties.getChangeFeed();
+        this.instanceId = properties.getInstanceId() != null && !properties.getInstanceId().isBlank()
+                ? properties.getInstanceId() : UUID.randomUUID().toString();
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "metadata-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT) // Not for republished events, they run outside transactions
+    public void onSqlTemplateChanged(SqlTemplateChangedEvent event) {
+        record(MetadataKind.SQL_TEMPLATE, event.getSqlCode(), event.getChangeType());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onDataSourceChanged(DataSourceChangedEvent event) {
+        record(MetadataKind.DATA_SOURCE, event.getDatasourceId(), event.getChangeType());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Long replayFrom = changeLogRepository.findMaxIdCreatedBefore(changeLogRepository.findDatabaseTime().minusNanos(
+                TimeUnit.MILLISECONDS.toNanos(properties.getStartupLookbackMillis())));
+        if (replayFrom == null) {
+            Long oldest = changeLogRepository.findMinId(); // Ids below it were cleaned up, they are no gaps
+            replayFrom = oldest != null ? oldest - 1 : 0;
+        }
+        cursor = replayFrom;
+        long interval = Math.max(properties.getPollIntervalMillis(), 100);
+        scheduler.scheduleWithFixedDelay(this::pollSafely, 0, interval, TimeUnit.MILLISECONDS);
+        log.info("Metadata change feed started for instance {} after change {}", instanceId, cursor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void record(MetadataKind kind, String entityKey, MetadataChangeType changeType) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        MetadataChangeLogEntity change = new MetadataChangeLogEntity();
+        change.setKind(kind);
+        change.setEntityKey(entityKey);
+        change.setChangeType(changeType);
+        change.setOriginInstanceId(instanceId);
+        changeLogRepository.save(change);
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.warn("Polling the metadata change log failed: {}", e.getMessage(), e); // Keep the schedule alive, retried next interval
+        }
+    }
+
+    void poll() {
+        LocalDateTime now = changeLogRepository.findDatabaseTime();
+        String resyncReason = null;
+        int batchSize = Math.max(properties.getBatchSize(), 1);
+        List<MetadataChangeLogEntity> changes;
+        do {
+            changes = changeLogRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, batchSize));
+            for (MetadataChangeLogEntity change : changes) {
+                for (long missing = cursor + 1; missing < change.getId(); missing++) {
+                    if (gaps.size() + expiredGaps.size() >= MAX_TRACKED_GAPS) {
+                        log.warn("More than {} metadata change ids are missing, ids {} to {} are not tracked", MAX_TRACKED_GAPS,
+                                missing, change.getId() - 1);
+                        resyncReason = "too many missing change ids";
+                        break;
+                    }
+                    gaps.put(missing, now);
+                }
+                apply(change);
+                cursor = change.getId();
+            }
+        } while (changes.size() >= batchSize); // A full page may be followed by more
+        if (!gaps.isEmpty() || !expiredGaps.isEmpty()) {
+            String expired = retryGaps(now);
+            resyncReason = resyncReason != null ? resyncReason : expired;
+        }
+        if (resyncReason != null) {
+            resync(resyncReason);
+        }
+        cleanUp(now);
+    }
+
+    /**
+     * @return Why a resync is needed, null if no missing id passed the grace.
+     */
+    private String retryGaps(LocalDateTime now) {
+        List<Long> missing = new ArrayList<>(gaps.keySet());
+        missing.addAll(expiredGaps.keySet());
+        for (MetadataChangeLogEntity change : changeLogRepository.findAllById(missing)) {
+            gaps.remove(change.getId());
+            if (expiredGaps.remove(change.getId()) != null) {
+                log.info("Change {} committed after the gap grace, applied late", change.getId());
+            }
+            apply(change);
+        }
+        expiredGaps.values().removeIf(firstMissed -> firstMissed.isBefore(now.minus(properties.getRetentionMillis(), ChronoUnit.MILLIS)));
+        String reason = null;
+        LocalDateTime graceEnd = now.minus(properties.getGapGraceMillis(), ChronoUnit.MILLIS);
+        for (Iterator<Map.Entry<Long, LocalDateTime>> it = gaps.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, LocalDateTime> gap = it.next();
+            if (gap.getValue().isBefore(graceEnd)) {
+                expiredGaps.put(gap.getKey(), gap.getValue()); // Rolled back, or its transaction outlived the grace
+                it.remove();
+                reason = "change " + gap.getKey() + " missing for longer than the gap grace";
+            }
+        }
+        return reason;
+    }
+
+    /**
+     * Reloads everything, for changes that may have been missed.
+     */
+    private void resync(String reason) {
+        log.warn("Reloading all templates and datasources from the metadata DB: {}", reason);
+        try {
+            eventPublisher.publishEvent(new MetadataResyncEvent(reason));
+        } catch (RuntimeException e) {
+            log.warn("Metadata resync failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void apply(MetadataChangeLogEntity change) {
+        if (instanceId.equals(change.getOriginInstanceId())) {
+            return; // Applied when it was made
+        }
+        try {
+            if (change.getKind() == MetadataKind.SQL_TEMPLATE) {
+                eventPublisher.publishEvent(new SqlTemplateChangedEvent(change.getEntityKey(), change.getChangeType(), null));
+            } else {
+                eventPublisher.publishEvent(new DataSourceChangedEvent(change.getEntityKey(), change.getChangeType()));
+            }
+            log.debug("Applied {} {} '{}' from instance {}", change.getChangeType(), change.getKind(), change.getEntityKey(),
+                    change.getOriginInstanceId());
+        } catch (RuntimeException e) {
+            log.warn("Applying change {} of {} '{}' failed: {}", change.getId(), change.getKind(), change.getEntityKey(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Deletes old log rows about once per poll interval times 600 (10 minutes by default).
+     */
+    private void cleanUp(LocalDateTime now) {
+        long nowNanos = System.nanoTime();
+        if (nowNanos - lastCleanupNanos < TimeUnit.MILLISECONDS.toNanos(properties.getPollIntervalMillis()) * 600) {
+            return;
+        }
+        lastCleanupNanos = nowNanos;
+        int deleted = changeLogRepository.deleteCreatedBefore(now.minus(properties.getRetentionMillis(), ChronoUnit.MILLIS));
+        if (deleted > 0) {
+            log.info("Deleted {} metadata change log rows older than {} ms", deleted, properties.getRetentionMillis());
+        }
+    }
+}
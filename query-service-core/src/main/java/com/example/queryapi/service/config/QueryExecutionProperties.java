@@ -0,0 +1,474 @@
+package com.example.queryapi.service.config;
+
+import com.example.queryapi.common.enums.ExecutionEngine;
+import com.example.queryapi.common.enums.ExecutorMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tuning knobs for query execution, bound from {@code app.query.*}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.query")
+public class QueryExecutionProperties {
+
+    /**
+     * Engine used for template execution. JDBC skips MyBatis for static templates.
+     */
+    private ExecutionEngine executionEngine = ExecutionEngine.MYBATIS;
+
+    private Executor executor = new Executor();
+
+    private Pool pool = new Pool();
+
+    /**
+     * Pool and driver settings per database type (matched case-insensitively against dbType), applied
+     * to every datasource of that type before its own connectionPoolConfig.
+     */
+    private Map<String, DbProfile> dbProfiles = new LinkedHashMap<>();
+
+    private PoolSizing poolSizing = new PoolSizing();
+
+    private Replicas replicas = new Replicas();
+
+    private Credentials credentials = new Credentials();
+
+    private Bulkhead bulkhead = new Bulkhead();
+
+    private Deadline deadline = new Deadline();
+
+    private ResultLimits resultLimits = new ResultLimits();
+
+    private Batch batch = new Batch();
+
+    private Stream stream = new Stream();
+
+    private Arrow arrow = new Arrow();
+
+    private ResultCache resultCache = new ResultCache();
+
+    private MetadataCache metadataCache = new MetadataCache();
+
+    private ChangeFeed changeFeed = new ChangeFeed();
+
+    private MicroBatch microBatch = new MicroBatch();
+
+    private Paging paging = new Paging();
+
+    private Warmup warmup = new Warmup();
+
+    private Metrics metrics = new Metrics();
+
+    @Data
+    public static class Executor {
+        /**
+         * PLATFORM uses the bounded pool below; VIRTUAL runs every query on its own virtual thread.
+         * Applies to the batch executor, and in VIRTUAL mode single queries run on it too. Otherwise single and
+         * streamed queries run on the request thread, which is a virtual thread only when
+         * spring.threads.virtual.enabled is set (Java 21).
+         */
+        private ExecutorMode mode = ExecutorMode.PLATFORM;
+
+        // PLATFORM mode only
+        private int corePoolSize = 10;
+        private int maxPoolSize = 20;
+        private int queueCapacity = 50;
+    }
+
+    @Data
+    public static class Pool {
+        /**
+         * How long a pool replaced by a configuration change (or deleted) waits for its running queries
+         * before it is closed anyway.
+         */
+        private long drainTimeoutMillis = 60_000;
+
+        /**
+         * Pools unused for this long are closed and rebuilt on their next query; 0 keeps them forever.
+         */
+        private long idleEvictionMillis = 1_800_000;
+
+        /**
+         * Upper bound of the maximumPoolSize summed over all open pools; least recently used pools are
+         * closed to stay within it. 0 = no limit.
+         */
+        private int maxTotalConnections = 0;
+
+        /**
+         * Upper bound of open pools, each of which costs a housekeeping thread and a statement registry. 0 = no limit.
+         */
+        private int maxPools = 0;
+
+        /**
+         * How often pools are checked for idle eviction.
+         */
+        private long evictionIntervalMillis = 60_000;
+    }
+
+    @Data
+    public static class DbProfile {
+        /**
+         * HikariCP properties, e.g. keepaliveTime.
+         */
+        private Map<String, String> pool = new LinkedHashMap<>();
+
+        /**
+         * JDBC driver properties, e.g. cachePrepStmts.
+         */
+        private Map<String, String> driver = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class PoolSizing {
+        /**
+         * Resizes each pool's maximumPoolSize and minimumIdle to its observed load. Datasources narrow the
+         * bounds below with "adaptiveMinPoolSize"/"adaptiveMaxPoolSize" in their connectionPoolConfig.
+         */
+        private boolean enabled = false;
+
+        private int minPoolSize = 2;
+
+        private int maxPoolSize = 50;
+
+        /**
+         * Mean connection acquire time above which a pool is grown.
+         */
+        private double targetAcquireMillis = 5;
+
+        private long sampleIntervalMillis = 1_000;
+
+        /**
+         * Pools are resized at most once per interval, from the samples taken during it.
+         */
+        private long adjustIntervalMillis = 30_000;
+    }
+
+    @Data
+    public static class Replicas {
+        /**
+         * Interval of the replication lag and error rate check of each open replica pool.
+         */
+        private long checkIntervalMillis = 5_000;
+
+        /**
+         * Replicas lagging further behind their primary are taken out of rotation until they catch up.
+         */
+        private double maxLagSeconds = 10;
+
+        /**
+         * Share of failed queries per check interval above which a replica is taken out of rotation
+         * for the next interval.
+         */
+        private double maxErrorRate = 0.2;
+
+        /**
+         * Queries a replica must have run in the interval before its error rate counts.
+         */
+        private int minRequests = 20;
+    }
+
+    @Data
+    public static class Credentials {
+        /**
+         * Source of API_PROVIDED connection details: "http" (the credentials API) or "stub" (the entries below).
+         */
+        private String provider = "http";
+
+        /**
+         * Credentials API; details of a credentialsKey are fetched with GET {baseUrl}/connection-details/{credentialsKey}.
+         */
+        private String baseUrl;
+
+        /**
+         * Sent as "Authorization: Bearer ..." to the credentials API if set.
+         */
+        private String authToken;
+
+        private long connectTimeoutMillis = 2_000;
+
+        private long readTimeoutMillis = 5_000;
+
+        /**
+         * How long building a pool waits for details that were never fetched before.
+         */
+        private long fetchTimeoutMillis = 10_000;
+
+        /**
+         * Details are fetched again in the background once they are this old...
+         */
+        private long refreshIntervalMillis = 300_000;
+
+        /**
+         * ...or this long before the expiry the credentials API reports, whichever comes first.
+         */
+        private long refreshAheadMillis = 60_000;
+
+        private long checkIntervalMillis = 10_000;
+
+        /**
+         * Connection details per credentialsKey for the "stub" provider.
+         */
+        private Map<String, StubDetails> stub = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class StubDetails {
+        private String jdbcUrl;
+
+        private String username;
+
+        private String password;
+    }
+
+    @Data
+    public static class Bulkhead {
+        /**
+         * Queries that may wait for a slot per datasource before new ones are rejected with 503.
+         * The number of concurrently running queries defaults to the datasource's Hikari maximumPoolSize
+         * and can be overridden with "maxConcurrentQueries" in its connectionPoolConfig.
+         */
+        private int maxQueueDepth = 200;
+
+        /**
+         * Maximum wait for a slot; 0 uses the datasource's Hikari connectionTimeout.
+         */
+        private long acquireTimeoutMillis = 0;
+    }
+
+    @Data
+    public static class Deadline {
+        /**
+         * Query deadline when the template sets no queryTimeoutMillis. Requests may only shorten it; 0 = none.
+         */
+        private long defaultQueryTimeoutMillis = 30_000;
+
+        /**
+         * Deadline of streamed queries (/execute-stream, Arrow), which are expected to run long; 0 = none.
+         */
+        private long streamTimeoutMillis = 600_000;
+
+        /**
+         * Deadline of a whole batch request; queries still running when it passes are cancelled. 0 = none.
+         */
+        private long defaultBatchTimeoutMillis = 120_000;
+    }
+
+    @Data
+    public static class ResultLimits {
+        /**
+         * Rows per result when the template sets no maxResultRows; larger results are truncated and flagged.
+         * Requests may only lower it. 0 = no limit.
+         */
+        private long defaultMaxRows = 100_000;
+
+        /**
+         * Estimated bytes per result when the template sets no maxResultBytes. Requests may only lower it. 0 = no limit.
+         */
+        private long defaultMaxBytes = 64L * 1024 * 1024;
+
+        /**
+         * Estimated bytes all in-flight results may hold together; 0 = a quarter of the maximum heap.
+         */
+        private long memoryBudgetBytes = 0;
+
+        /**
+         * How long a query waits for result memory before it is rejected with 503.
+         */
+        private long budgetWaitMillis = 5_000;
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * Connections a batch holds per datasource; its queries for that datasource share them.
+         */
+        private int maxConnectionsPerDatasource = 4;
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * Rows fetched per driver round trip when streaming results.
+         */
+        private int fetchSize = 1000;
+
+        /**
+         * Enables server-side cursor fetch (useCursorFetch) on MySQL/OceanBase pools so that the
+         * fetch size is honoured instead of the driver buffering the whole result.
+         */
+        private boolean cursorFetch = true;
+    }
+
+    @Data
+    public static class Arrow {
+        /**
+         * Rows per Arrow record batch; bounds the memory held for one response.
+         */
+        private int batchRows = 4096;
+
+        /**
+         * Upper bound of off-heap memory a single Arrow response may allocate.
+         */
+        private long maxAllocationBytes = 256L * 1024 * 1024;
+    }
+
+    @Data
+    public static class ResultCache {
+        /**
+         * Global switch; caching is enabled per template by setting its result cache TTL.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Size bound (estimated bytes) of a template's cache when the template does not set one.
+         */
+        private long defaultMaxBytes = 64L * 1024 * 1024;
+    }
+
+    @Data
+    public static class MetadataCache {
+        /**
+         * Caches datasource configurations and list pages as returned by the management API.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Entries are dropped on writes; the TTL bounds staleness from writes of other instances.
+         */
+        private long ttlMillis = 60_000;
+
+        private long maxEntries = 10_000;
+
+        private long maxPages = 200;
+
+        /**
+         * Largest page size of the datasource list.
+         */
+        private int maxPageSize = 500;
+    }
+
+    @Data
+    public static class ChangeFeed {
+        /**
+         * Applies template and datasource changes made by other instances sharing the metadata DB.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Identifies this instance's own changes in the change log; a random id per start if not set.
+         */
+        private String instanceId;
+
+        /**
+         * Other instances' changes are applied within this interval (plus the gap grace for changes
+         * whose transactions commit out of order).
+         */
+        private long pollIntervalMillis = 1_000;
+
+        private int batchSize = 500;
+
+        /**
+         * How long a missing change log id is waited for (by the DB clock) before all templates and datasources
+         * are reloaded; the change is still applied if it commits later.
+         */
+        private long gapGraceMillis = 10_000;
+
+        /**
+         * Changes this old are replayed at start-up, covering the time the instance spent loading.
+         */
+        private long startupLookbackMillis = 60_000;
+
+        private long retentionMillis = 86_400_000;
+    }
+
+    @Data
+    public static class Paging {
+        /**
+         * Page size of templates with a page key column when the request does not set one.
+         */
+        private int defaultPageSize = 100;
+
+        /**
+         * Upper bound of the page size a request may ask for.
+         */
+        private int maxPageSize = 1000;
+    }
+
+    @Data
+    public static class MicroBatch {
+        /**
+         * Global switch; templates opt in with batchKeyParam and batchKeyColumn.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How long the first lookup of a batch waits for concurrent lookups to join it.
+         */
+        private long windowMicros = 2000;
+
+        /**
+         * Keys per set-based query; a full batch runs without waiting for the window to end.
+         */
+        private int maxBatchSize = 200;
+    }
+
+    @Data
+    public static class Warmup {
+        /**
+         * Builds and fills the pools of all configured datasources after startup, and of new ones when they
+         * are saved. Readiness is reported as OUT_OF_SERVICE until the startup warm-up has finished.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Datasources warmed concurrently.
+         */
+        private int parallelism = 8;
+
+        /**
+         * Maximum wait for one pool to reach its minimumIdle connections.
+         */
+        private long timeoutMillis = 30_000;
+
+        /**
+         * Checks one connection of each pool with {@link java.sql.Connection#isValid(int)}.
+         */
+        private boolean validate = true;
+
+        /**
+         * SQL codes whose statements are registered and prepared on every warmed datasource.
+         */
+        private List<String> hotTemplates = new ArrayList<>();
+    }
+
+    @Data
+    public static class Metrics {
+        /**
+         * Per-phase query timers; pool, bulkhead and batch executor meters are always registered.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Datasources with their own datasource tag on query and pool meters, later ones are tagged "other"
+         * and get no pool or bulkhead gauges.
+         */
+        private int maxDatasources = 100;
+
+        /**
+         * Distinct datasource/sqlCode pairs with their own timers, further templates are tagged "other".
+         */
+        private int maxSeries = 200;
+
+        /**
+         * Histogram buckets of the query.execution timers.
+         */
+        private List<Long> bucketsMillis = new ArrayList<>(List.of(1L, 5L, 10L, 25L, 50L, 100L, 250L, 500L, 1_000L, 2_500L, 5_000L, 10_000L, 30_000L));
+    }
+}
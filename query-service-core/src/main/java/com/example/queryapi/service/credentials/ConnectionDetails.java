@@ -0,0 +1,28 @@
+package com.example.queryapi.service.credentials;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * How to connect to an API_PROVIDED datasource, as resolved for its credentialsKey.
+ */
+@Getter
+@AllArgsConstructor
+public class ConnectionDetails {
+
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+    private final Instant expiresAt; // null if the provider reports no expiry
+
+    /**
+     * @return true if a pool built from the other details would connect the same way.
+     */
+    public boolean sameConnection(ConnectionDetails other) {
+        return other != null && Objects.equals(jdbcUrl, other.jdbcUrl) && Objects.equals(username, other.username)
+                && Objects.equals(password, other.password);
+    }
+}
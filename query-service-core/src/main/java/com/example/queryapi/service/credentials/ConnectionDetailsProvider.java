@@ -0,0 +1,13 @@
+package com.example.queryapi.service.credentials;
+
+/**
+ * Fetches the connection details of API_PROVIDED datasources. Called by {@link ConnectionDetailsResolver}
+ * on its own threads only, so implementations may block.
+ */
+public interface ConnectionDetailsProvider {
+
+    /**
+     * @throws RuntimeException if the details cannot be fetched; the resolver keeps the previous ones.
+     */
+    ConnectionDetails fetch(String credentialsKey);
+}
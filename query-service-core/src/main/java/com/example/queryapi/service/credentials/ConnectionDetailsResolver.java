@@ -0,0 +1,166 @@
+package com.example.queryapi.service.credentials;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.event.ConnectionDetailsRotatedEvent;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the connection details of API_PROVIDED datasources by credentialsKey.
+ * <p>
+ * Queries never reach the credentials API: they run on pools built earlier, and pools are built from
+ * cached details. Details are fetched when a datasource is loaded or saved, then refreshed in the
+ * background ahead of their age limit or reported expiry. A failed refresh keeps the cached details and
+ * is retried on the next check. When a refresh returns different details a
+ * {@link ConnectionDetailsRotatedEvent} is published and the pools are hot-swapped.
+ */
+@Component
+@Slf4j
+public class ConnectionDetailsResolver {
+
+    private final ConnectionDetailsProvider provider;
+    private final QueryExecutionProperties.Credentials properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledThreadPoolExecutor executor; // Fetches, refreshes and the refresh check
+    private final AsyncLoadingCache<String, Resolved> cache;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet(); // At most one refresh per key at a time
+
+    @Autowired
+    public ConnectionDetailsResolver(ConnectionDetailsProvider provider, QueryExecutionProperties queryExecutionProperties,
+                                     ApplicationEventPublisher eventPublisher) {
+        this.provider = provider;
+        this.properties = queryExecutionProperties.getCredentials();
+        this.eventPublisher = eventPublisher;
+        AtomicInteger threadSequence = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, "credentials-refresh-" + threadSequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.cache = Caffeine.newBuilder()
+                .executor(executor)
+                .buildAsync(credentialsKey -> new Resolved(provider.fetch(credentialsKey), Instant.now())); // Failed loads are not cached
+        long interval = Math.max(properties.getCheckIntervalMillis(), 1000);
+        this.executor.scheduleWithFixedDelay(this::refreshDueSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts fetching the details of a key in the background unless they are cached.
+     */
+    public void prefetch(String credentialsKey) {
+        cache.get(credentialsKey).whenComplete((resolved, e) -> {
+            if (e != null) {
+                log.warn("Could not fetch connection details for credentials key {}: {}", credentialsKey, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Returns the cached details of a key. Only details that were never fetched are waited for, up to
+     * the fetch timeout; this happens when a pool is built, never on a query.
+     *
+     * @throws IllegalStateException if the details cannot be fetched.
+     */
+    public ConnectionDetails resolve(String credentialsKey) {
+        try {
+            return cache.get(credentialsKey).get(properties.getFetchTimeoutMillis(), TimeUnit.MILLISECONDS).details;
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Connection details for credentials key " + credentialsKey + " not available within "
+                    + properties.getFetchTimeoutMillis() + " ms");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not fetch connection details for credentials key " + credentialsKey + ": "
+                    + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching connection details for credentials key " + credentialsKey, e);
+        }
+    }
+
+    /**
+     * Stops refreshing a key no datasource uses any more.
+     */
+    public void forget(String credentialsKey) {
+        cache.synchronous().invalidate(credentialsKey);
+    }
+
+    private void refreshDueSafely() {
+        try {
+            refreshDue();
+        } catch (RuntimeException e) {
+            log.warn("Connection details refresh check failed: {}", e.getMessage(), e); // Keep the schedule alive
+        }
+    }
+
+    void refreshDue() {
+        Instant now = Instant.now();
+        for (Map.Entry<String, Resolved> entry : cache.synchronous().asMap().entrySet()) {
+            Resolved current = entry.getValue();
+            if (!now.isBefore(refreshAt(current))) {
+                refresh(entry.getKey(), current, now);
+            }
+        }
+    }
+
+    private void refresh(String credentialsKey, Resolved current, Instant now) {
+        if (!refreshing.add(credentialsKey)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                Resolved fresh = new Resolved(provider.fetch(credentialsKey), Instant.now());
+                if (!cache.synchronous().asMap().replace(credentialsKey, current, fresh)) {
+                    return; // Forgotten or replaced meanwhile
+                }
+                if (!fresh.details.sameConnection(current.details)) {
+                    log.info("Connection details for credentials key {} changed, swapping its pools", credentialsKey);
+                    eventPublisher.publishEvent(new ConnectionDetailsRotatedEvent(credentialsKey));
+                }
+            } catch (RuntimeException e) {
+                boolean expired = current.details.getExpiresAt() != null && now.isAfter(current.details.getExpiresAt());
+                log.warn("Could not refresh connection details for credentials key {}{}, keeping the cached ones: {}",
+                        credentialsKey, expired ? " (expired)" : "", e.getMessage());
+            } finally {
+                refreshing.remove(credentialsKey);
+            }
+        });
+    }
+
+    private Instant refreshAt(Resolved resolved) {
+        Instant refreshAt = resolved.fetchedAt.plusMillis(properties.getRefreshIntervalMillis());
+        Instant expiresAt = resolved.details.getExpiresAt();
+        if (expiresAt != null && expiresAt.minusMillis(properties.getRefreshAheadMillis()).isBefore(refreshAt)) {
+            refreshAt = expiresAt.minusMillis(properties.getRefreshAheadMillis());
+        }
+        return refreshAt;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class Resolved {
+        private final ConnectionDetails details;
+        private final Instant fetchedAt;
+
+        private Resolved(ConnectionDetails details, Instant fetchedAt) {
+            this.details = details;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
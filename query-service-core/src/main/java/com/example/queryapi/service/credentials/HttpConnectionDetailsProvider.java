@@ -0,0 +1,89 @@
+package com.example.queryapi.service.credentials;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Feign;
+import feign.Headers;
+import feign.Param;
+import feign.Request;
+import feign.RequestLine;
+import feign.Retryer;
+import feign.jackson.JacksonDecoder;
+import feign.jackson.JacksonEncoder;
+import feign.okhttp.OkHttpClient;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches connection details from the credentials API:
+ * {@code GET {base-url}/connection-details/{credentialsKey}} returning
+ * {@code {"jdbcUrl": ..., "username": ..., "password": ..., "expiresInSeconds": ...}}.
+ * Not retried here, the resolver tries again on its next check.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.query.credentials", name = "provider", havingValue = "http", matchIfMissing = true)
+@Slf4j
+public class HttpConnectionDetailsProvider implements ConnectionDetailsProvider {
+
+    private final CredentialsApi credentialsApi; // Null if no base URL is configured
+
+    @Autowired
+    public HttpConnectionDetailsProvider(QueryExecutionProperties queryExecutionProperties, ObjectMapper objectMapper) {
+        QueryExecutionProperties.Credentials properties = queryExecutionProperties.getCredentials();
+        if (properties.getBaseUrl() == null || properties.getBaseUrl().isBlank()) {
+            log.info("app.query.credentials.base-url is not set, API_PROVIDED datasources cannot connect");
+            this.credentialsApi = null;
+            return;
+        }
+        this.credentialsApi = Feign.builder()
+                .client(new OkHttpClient())
+                .encoder(new JacksonEncoder(objectMapper))
+                .decoder(new JacksonDecoder(objectMapper))
+                .options(new Request.Options(properties.getConnectTimeoutMillis(), TimeUnit.MILLISECONDS,
+                        properties.getReadTimeoutMillis(), TimeUnit.MILLISECONDS, true))
+                .retryer(Retryer.NEVER_RETRY)
+                .requestInterceptor(template -> {
+                    if (properties.getAuthToken() != null && !properties.getAuthToken().isBlank()) {
+                        template.header("Authorization", "Bearer " + properties.getAuthToken());
+                    }
+                })
+                .target(CredentialsApi.class, properties.getBaseUrl());
+    }
+
+    @Override
+    public ConnectionDetails fetch(String credentialsKey) {
+        if (credentialsApi == null) {
+            throw new IllegalStateException("app.query.credentials.base-url is not set, cannot fetch credentials key " + credentialsKey);
+        }
+        ConnectionDetailsResponse response = credentialsApi.fetch(credentialsKey);
+        if (response == null || response.getJdbcUrl() == null || response.getJdbcUrl().isBlank()) {
+            throw new IllegalStateException("Credentials API returned no JDBC URL for credentials key " + credentialsKey);
+        }
+        Instant expiresAt = response.getExpiresInSeconds() != null ? Instant.now().plusSeconds(response.getExpiresInSeconds()) : null;
+        return new ConnectionDetails(response.getJdbcUrl(), response.getUsername(), response.getPassword(), expiresAt);
+    }
+
+    interface CredentialsApi {
+        @RequestLine("GET /connection-details/{credentialsKey}")
+        @Headers("Accept: application/json")
+        ConnectionDetailsResponse fetch(@Param("credentialsKey") String credentialsKey);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class ConnectionDetailsResponse {
+        private String jdbcUrl;
+        private String username;
+        private String password;
+        private Long expiresInSeconds; // null if the credentials do not expire
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.queryapi.service.credentials;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves connection details from {@code app.query.credentials.stub} instead of the credentials API,
+ * for local runs and tests. {@link #put} replaces an entry, e.g. to simulate a credential rotation.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.query.credentials", name = "provider", havingValue = "stub")
+public class StubConnectionDetailsProvider implements ConnectionDetailsProvider {
+
+    private final Map<String, ConnectionDetails> details = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StubConnectionDetailsProvider(QueryExecutionProperties queryExecutionProperties) {
+        queryExecutionProperties.getCredentials().getStub().forEach((credentialsKey, stub) ->
+                details.put(credentialsKey, new ConnectionDetails(stub.getJdbcUrl(), stub.getUsername(), stub.getPassword(), null)));
+    }
+
+    @Override
+    public ConnectionDetails fetch(String credentialsKey) {
+        ConnectionDetails found = details.get(credentialsKey);
+        if (found == null) {
+            throw new IllegalArgumentException("No stub connection details for credentials key " + credentialsKey);
+        }
+        return found;
+    }
+
+    public void put(String credentialsKey, ConnectionDetails connectionDetails) {
+        details.put(credentialsKey, connectionDetails);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.queryapi.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a background refresh finds new connection details for a credentialsKey of
+ * API_PROVIDED datasources, so the pools built from the old ones can be swapped.
+ */
+@Getter
+@AllArgsConstructor
+public class ConnectionDetailsRotatedEvent {
+
+    private final String credentialsKey;
+}
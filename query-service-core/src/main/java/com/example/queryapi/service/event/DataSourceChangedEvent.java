@@ -0,0 +1,25 @@
+package com.example.queryapi.service.event;
+
+import com.example.queryapi.common.enums.MetadataChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published whenever a data source configuration is created, updated or deleted so that its pool
+ * and other in-memory views of it can be rebuilt or dropped.
+ */
+@Getter
+@AllArgsConstructor
+public class DataSourceChangedEvent {
+
+    private final String datasourceId;
+    private final MetadataChangeType changeType;
+
+    public static DataSourceChangedEvent upserted(String datasourceId) {
+        return new DataSourceChangedEvent(datasourceId, MetadataChangeType.UPSERT);
+    }
+
+    public static DataSourceChangedEvent deleted(String datasourceId) {
+        return new DataSourceChangedEvent(datasourceId, MetadataChangeType.DELETE);
+    }
+}
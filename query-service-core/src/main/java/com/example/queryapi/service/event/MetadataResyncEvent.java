@@ -0,0 +1,15 @@
+package com.example.queryapi.service.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when changes made by other instances may have been missed, so that every in-memory view of
+ * templates and datasources is rebuilt from the metadata DB instead of per changed entity.
+ */
+@Getter
+@AllArgsConstructor
+public class MetadataResyncEvent {
+
+    private final String reason;
+}
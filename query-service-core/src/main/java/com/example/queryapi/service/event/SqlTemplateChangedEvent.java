@@ -0,0 +1,27 @@
+package com.example.queryapi.service.event;
+
+import com.example.queryapi.common.enums.MetadataChangeType;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published whenever an SQL template is created, updated or deleted so that in-memory views
+ * of the template (registry, prepared statements, cached results) can be refreshed.
+ */
+@Getter
+@AllArgsConstructor
+public class SqlTemplateChangedEvent {
+
+    private final String sqlCode;
+    private final MetadataChangeType changeType;
+    private final CompiledSqlTemplate template; // Null for deletions, or when the listener must reload from the DB
+
+    public static SqlTemplateChangedEvent upserted(CompiledSqlTemplate template) {
+        return new SqlTemplateChangedEvent(template.getSqlCode(), MetadataChangeType.UPSERT, template);
+    }
+
+    public static SqlTemplateChangedEvent deleted(String sqlCode) {
+        return new SqlTemplateChangedEvent(sqlCode, MetadataChangeType.DELETE, null);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Resizes datasource pools to their observed load. Each pool is sampled periodically (active connections,
+ * queries waiting for a connection or a bulkhead slot) and, once per adjustment interval, grown when
+ * queries had to wait or acquiring connections was slow, or shrunk towards its peak use otherwise.
+ * <p>
+ * Sizes stay within the datasource's bounds (the target database's own connection cap) and growth
+ * within the global connection budget. The datasource's bulkhead is resized with its pool unless
+ * it sets its own maxConcurrentQueries.
+ */
+@Slf4j
+public class AdaptivePoolSizer {
+
+    private final QueryExecutionProperties.PoolSizing properties;
+    private final int maxTotalConnections;
+    private final Supplier<List<DataSourceExecutionContext>> contexts;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<DataSourceExecutionContext, Window> windows = new HashMap<>(); // Sampler thread only
+    private final int samplesPerAdjustment;
+
+    /**
+     * @param maxTotalConnections Global connection budget, 0 for none.
+     * @param contexts            The open execution contexts.
+     */
+    public AdaptivePoolSizer(QueryExecutionProperties.PoolSizing properties, int maxTotalConnections,
+                             Supplier<List<DataSourceExecutionContext>> contexts) {
+        this.properties = properties;
+        this.maxTotalConnections = maxTotalConnections;
+        this.contexts = contexts;
+        long sampleInterval = Math.max(properties.getSampleIntervalMillis(), 100);
+        this.samplesPerAdjustment = (int) Math.max(1, properties.getAdjustIntervalMillis() / sampleInterval);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "datasource-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::sampleSafely, sampleInterval, sampleInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void sampleSafely() {
+        try {
+            sample();
+        } catch (RuntimeException e) {
+            log.warn("Pool sizing sample failed: {}", e.getMessage(), e); // Keep the schedule alive
+        }
+    }
+
+    void sample() {
+        List<DataSourceExecutionContext> resident = contexts.get();
+        windows.keySet().retainAll(new HashSet<>(resident)); // Drop windows of evicted and replaced pools
+        int reserved = resident.stream().mapToInt(DataSourceExecutionContext::getMaximumConnections).sum();
+        for (DataSourceExecutionContext context : resident) {
+            HikariPoolMXBean pool = context.getDataSource().getHikariPoolMXBean();
+            if (context.isRetired() || pool == null || context.getSizingTracker() == null) {
+                continue;
+            }
+            Window window = windows.computeIfAbsent(context, c -> new Window());
+            window.record(pool.getActiveConnections(), pool.getThreadsAwaitingConnection() + context.getBulkhead().getQueueDepth());
+            if (window.samples >= samplesPerAdjustment) {
+                reserved += adjust(context, window, reserved);
+                window.reset();
+            }
+        }
+    }
+
+    /**
+     * @return The change of the pool's maximum size.
+     */
+    private int adjust(DataSourceExecutionContext context, Window window, int reserved) {
+        PoolSizingTracker tracker = context.getSizingTracker();
+        PoolSizingTracker.Acquisitions acquisitions = tracker.drain();
+        HikariConfigMXBean config = context.getDataSource().getHikariConfigMXBean();
+        int current = config.getMaximumPoolSize();
+        int target = current;
+        if (window.peakWaiting > 0 || acquisitions.timeouts > 0 || acquisitions.meanMillis > properties.getTargetAcquireMillis()) {
+            target = current + Math.max(1, Math.min(window.peakWaiting, current)); // At most doubles per adjustment
+            if (maxTotalConnections > 0) {
+                target = Math.min(target, current + Math.max(0, maxTotalConnections - reserved));
+            }
+        } else if (window.peakActive < current) {
+            target = Math.max(window.peakActive + 1, current - Math.max(1, (current - window.peakActive) / 2));
+        }
+        target = Math.min(Math.max(target, tracker.getMinPoolSize()), tracker.getMaxPoolSize());
+        int minimumIdle = Math.min(target, Math.max(1, (int) Math.ceil((double) window.activeSum / window.samples)));
+        if (target != current) {
+            config.setMaximumPoolSize(target);
+            if (tracker.isBulkheadFollowsPool()) {
+                context.getBulkhead().resize(target);
+            }
+            log.info("Resized pool of datasource {} from {} to {} connections (peak active {}, peak waiting {}, mean acquire {} ms)",
+                    context.getDatasourceId(), current, target, window.peakActive, window.peakWaiting,
+                    String.format("%.1f", acquisitions.meanMillis));
+        }
+        if (minimumIdle != config.getMinimumIdle()) {
+            config.setMinimumIdle(minimumIdle); // Hikari adds or retires idle connections in its next housekeeping run
+        }
+        return target - current;
+    }
+
+    private static final class Window {
+        int samples;
+        int peakActive;
+        int peakWaiting;
+        long activeSum;
+
+        void record(int active, int waiting) {
+            samples++;
+            peakActive = Math.max(peakActive, active);
+            peakWaiting = Math.max(peakWaiting, waiting);
+            activeSum += active;
+        }
+
+        void reset() {
+            samples = 0;
+            peakActive = 0;
+            peakWaiting = 0;
+            activeSum = 0;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.dto.SingleQueryResponseDto;
+
+/**
+ * Receives the result of each query of a batch as soon as it completes. Called from batch worker
+ * threads, possibly concurrently, exactly once per query.
+ */
+@FunctionalInterface
+public interface BatchResultListener {
+
+    /**
+     * @param index Position of the query in the batch request.
+     */
+    void onResult(int index, SingleQueryResponseDto result);
+}
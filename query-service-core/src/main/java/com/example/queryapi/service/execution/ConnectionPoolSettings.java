@@ -0,0 +1,191 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.common.exception.InvalidInputException;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.util.PropertyElf;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Pool and driver settings of a datasource: the tuned profile of its database type
+ * ({@code app.query.db-profiles}), overridden by its own connectionPoolConfig.
+ * <p>
+ * Keys are HikariCP properties (any setter of {@link HikariConfig}), {@code driver.*} JDBC driver
+ * properties, or the service's own keys (maxConcurrentQueries, adaptiveMinPoolSize, adaptiveMaxPoolSize).
+ * Unknown keys are rejected when the datasource is saved instead of being ignored.
+ */
+@Component
+@Slf4j
+public class ConnectionPoolSettings {
+
+    public static final String DRIVER_PREFIX = "driver.";
+    private static final Set<String> SERVICE_KEYS = Set.of("maxConcurrentQueries", "adaptiveMinPoolSize", "adaptiveMaxPoolSize");
+    private static final Set<String> MANAGED_KEYS = Set.of("jdbcUrl", "username", "password", "poolName"); // Set from the datasource itself
+
+    private final Map<String, QueryExecutionProperties.DbProfile> profiles = new LinkedHashMap<>();
+    private final QueryExecutionProperties.PoolSizing poolSizing; // Adaptive bounds a datasource does not set
+
+    @Autowired
+    public ConnectionPoolSettings(QueryExecutionProperties queryExecutionProperties) {
+        this.poolSizing = queryExecutionProperties.getPoolSizing();
+        queryExecutionProperties.getDbProfiles().forEach((dbType, profile) -> profiles.put(normalize(dbType), profile));
+    }
+
+    /**
+     * Profiles are part of the application configuration, a bad one fails the start-up.
+     */
+    @PostConstruct
+    public void validateProfiles() {
+        profiles.forEach((dbType, profile) -> {
+            try {
+                apply(new HikariConfig(), new LinkedHashMap<>(profile.getPool()));
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Invalid pool property in db profile '" + dbType + "': " + e.getMessage(), e);
+            }
+        });
+        log.info("Database type profiles: {}", profiles.keySet());
+    }
+
+    /**
+     * @return The profile of the database type with the datasource's own settings on top, driver
+     * properties under {@link #DRIVER_PREFIX}.
+     */
+    public Map<String, String> resolve(String dbType, Map<String, String> datasourceSettings) {
+        Map<String, String> resolved = new LinkedHashMap<>();
+        QueryExecutionProperties.DbProfile profile = profiles.get(normalize(dbType));
+        if (profile != null) {
+            resolved.putAll(profile.getPool());
+            profile.getDriver().forEach((key, value) -> resolved.put(DRIVER_PREFIX + key, value));
+        }
+        if (datasourceSettings != null) {
+            resolved.putAll(datasourceSettings);
+        }
+        return resolved;
+    }
+
+    /**
+     * Applies resolved settings to a pool configuration. The service's own keys are skipped.
+     *
+     * @throws RuntimeException if a pool property does not exist or its value cannot be converted.
+     */
+    public void apply(HikariConfig hikariConfig, Map<String, String> settings) {
+        Properties poolProperties = new Properties();
+        settings.forEach((key, value) -> {
+            if (key.startsWith(DRIVER_PREFIX)) {
+                hikariConfig.addDataSourceProperty(key.substring(DRIVER_PREFIX.length()), value);
+            } else if (!SERVICE_KEYS.contains(key)) {
+                poolProperties.setProperty(key, value);
+            }
+        });
+        PropertyElf.setTargetFromProperties(hikariConfig, poolProperties); // Fails on properties without setter
+    }
+
+    /**
+     * Checks a datasource's connectionPoolConfig before it is stored.
+     *
+     * @throws InvalidInputException naming the first invalid key.
+     */
+    public void validate(String jdbcUrl, String dbType, Map<String, String> datasourceSettings) {
+        if (datasourceSettings == null || datasourceSettings.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : datasourceSettings.entrySet()) {
+            if (MANAGED_KEYS.contains(entry.getKey())) {
+                throw new InvalidInputException("connectionPoolConfig must not set '" + entry.getKey() + "', it is part of the datasource itself");
+            }
+            if (SERVICE_KEYS.contains(entry.getKey()) && !isPositiveInt(entry.getValue())) {
+                throw new InvalidInputException("connectionPoolConfig '" + entry.getKey() + "' must be a positive integer");
+            }
+        }
+        Map<String, String> resolved = resolve(dbType, datasourceSettings);
+        try {
+            apply(new HikariConfig(), resolved);
+        } catch (RuntimeException e) {
+            throw new InvalidInputException("Invalid connectionPoolConfig: " + e.getMessage());
+        }
+        validateAdaptiveBounds(resolved);
+        validateDriverProperties(jdbcUrl, datasourceSettings);
+    }
+
+    /**
+     * The adaptive bounds in effect (the datasource's or profile's, else the global ones) must not cross.
+     */
+    private void validateAdaptiveBounds(Map<String, String> resolved) {
+        if (!resolved.containsKey("adaptiveMinPoolSize") && !resolved.containsKey("adaptiveMaxPoolSize")) {
+            return;
+        }
+        int minPoolSize = adaptiveBound(resolved, "adaptiveMinPoolSize", poolSizing.getMinPoolSize());
+        int maxPoolSize = adaptiveBound(resolved, "adaptiveMaxPoolSize", poolSizing.getMaxPoolSize());
+        if (minPoolSize > maxPoolSize) {
+            throw new InvalidInputException("connectionPoolConfig 'adaptiveMinPoolSize' (" + minPoolSize
+                    + ") must not be greater than 'adaptiveMaxPoolSize' (" + maxPoolSize + ")");
+        }
+    }
+
+    private static int adaptiveBound(Map<String, String> resolved, String key, int fallback) {
+        String value = resolved.get(key);
+        if (value == null) {
+            return fallback;
+        }
+        if (!isPositiveInt(value)) {
+            throw new InvalidInputException("connectionPoolConfig '" + key + "' must be a positive integer");
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Checks driver properties against the ones the JDBC driver for the URL reports. Skipped if no
+     * driver on the classpath accepts the URL; such datasources fail when they connect.
+     */
+    private void validateDriverProperties(String jdbcUrl, Map<String, String> datasourceSettings) {
+        if (jdbcUrl == null || datasourceSettings.keySet().stream().noneMatch(key -> key.startsWith(DRIVER_PREFIX))) {
+            return;
+        }
+        DriverPropertyInfo[] supported;
+        Driver driver;
+        try {
+            driver = DriverManager.getDriver(jdbcUrl);
+            supported = driver.getPropertyInfo(jdbcUrl, new Properties());
+        } catch (SQLException e) {
+            return;
+        }
+        if (supported == null || supported.length == 0) {
+            return; // Driver does not describe its properties
+        }
+        Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (DriverPropertyInfo info : supported) {
+            names.add(info.name);
+        }
+        for (String key : datasourceSettings.keySet()) {
+            if (key.startsWith(DRIVER_PREFIX) && !names.contains(key.substring(DRIVER_PREFIX.length()))) {
+                throw new InvalidInputException("Unknown driver property '" + key.substring(DRIVER_PREFIX.length()) + "' for "
+                        + driver.getClass().getName());
+            }
+        }
+    }
+
+    private static boolean isPositiveInt(String value) {
+        try {
+            return Integer.parseInt(value) > 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String normalize(String dbType) {
+        return dbType != null ? dbType.replace(" ", "").toLowerCase() : "";
+    }
+}
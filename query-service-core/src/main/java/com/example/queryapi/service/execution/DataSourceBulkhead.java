@@ -0,0 +1,177 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.common.exception.ResourceExhaustedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Concurrency partition of one target data source. At most {@code maxConcurrent} queries run against
+ * the data source at a time; further queries wait in a bounded FIFO queue owned by this data source,
+ * so a slow database only delays its own queries instead of every query sharing the executor.
+ * <p>
+ * Acquisition is asynchronous: a waiting query holds a queue slot, not a thread. Every successful
+ * acquire must be paired with exactly one {@link #release()}.
+ */
+public class DataSourceBulkhead {
+
+    @Getter
+    private final String datasourceId;
+    @Getter
+    private volatile int maxConcurrent; // Follows the pool size when the adaptive pool sizer resizes it
+    private final int maxQueueDepth;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private final List<Meter> meters = new ArrayList<>();
+    private int available;
+    private Counter rejections;
+
+    public DataSourceBulkhead(String datasourceId, int maxConcurrent, int maxQueueDepth) {
+        this.datasourceId = datasourceId;
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+        this.maxQueueDepth = Math.max(maxQueueDepth, 0);
+        this.available = this.maxConcurrent;
+    }
+
+    /**
+     * @return A future completed once a permit is granted, or failed with {@link ResourceExhaustedException}
+     * if the queue is full.
+     */
+    public synchronized CompletableFuture<Void> acquire() {
+        if (available > 0 && waiters.isEmpty()) {
+            available--;
+            return CompletableFuture.completedFuture(null);
+        }
+        if (waiters.size() >= maxQueueDepth) {
+            if (rejections != null) {
+                rejections.increment();
+            }
+            return CompletableFuture.failedFuture(new ResourceExhaustedException("Too many concurrent queries for datasource '"
+                    + datasourceId + "' (" + maxConcurrent + " running, " + waiters.size() + " queued)"));
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.addLast(waiter);
+        return waiter;
+    }
+
+    /**
+     * Blocking acquire for callers already running on their own thread.
+     *
+     * @throws ResourceExhaustedException if the queue is full or no permit was granted within the timeout.
+     */
+    public void acquire(long timeoutMillis) {
+        CompletableFuture<Void> permit = acquire();
+        try {
+            permit.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (abandon(permit)) {
+                throw new ResourceExhaustedException("Timed out after " + timeoutMillis + "ms waiting for a query slot on datasource '"
+                        + datasourceId + "'");
+            }
+            // Granted concurrently with the timeout, keep the permit
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (abandon(permit)) {
+                throw new ResourceExhaustedException("Interrupted while waiting for a query slot on datasource '" + datasourceId + "'", e);
+            }
+        } catch (ExecutionException e) {
+            throw (ResourceExhaustedException) e.getCause(); // The only way acquire() fails
+        }
+    }
+
+    public void release() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                if (available < 0) {
+                    available++; // Resized below the running queries, this permit is not handed on
+                    return;
+                }
+                next = waiters.pollFirst();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            if (next.complete(null)) {
+                return; // Permit handed over to the longest waiting query
+            }
+            // The waiter was abandoned concurrently, pass the permit on
+        }
+    }
+
+    /**
+     * Changes the number of running queries. Permits added are granted to waiting queries; when shrinking,
+     * queries already running over the new limit finish and their permits are not handed on.
+     */
+    public void resize(int newMaxConcurrent) {
+        synchronized (this) {
+            int size = Math.max(newMaxConcurrent, 1);
+            available += size - maxConcurrent;
+            maxConcurrent = size;
+        }
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                if (available <= 0 || waiters.isEmpty()) {
+                    return;
+                }
+                available--;
+                next = waiters.pollFirst();
+            }
+            if (!next.complete(null)) {
+                synchronized (this) {
+                    available++; // Abandoned concurrently, offer the permit to the next waiter
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives up a pending acquire.
+     *
+     * @return false if the permit had already been granted, in which case the caller owns it.
+     */
+    public boolean abandon(CompletableFuture<Void> permit) {
+        synchronized (this) {
+            waiters.remove(permit);
+        }
+        return permit.cancel(false);
+    }
+
+    public synchronized int getQueueDepth() {
+        return waiters.size();
+    }
+
+    public synchronized int getActiveCount() {
+        return maxConcurrent - available;
+    }
+
+    /**
+     * Registers queue depth, active count and rejection meters tagged with the datasource id.
+     */
+    public void bindTo(MeterRegistry registry) {
+        meters.add(Gauge.builder("query.bulkhead.queue.depth", this, DataSourceBulkhead::getQueueDepth)
+                .tag("datasource", datasourceId).description("Queries waiting for a slot on the datasource").register(registry));
+        meters.add(Gauge.builder("query.bulkhead.active", this, DataSourceBulkhead::getActiveCount)
+                .tag("datasource", datasourceId).description("Queries running on the datasource").register(registry));
+        rejections = Counter.builder("query.bulkhead.rejections")
+                .tag("datasource", datasourceId).description("Queries rejected because the datasource queue was full").register(registry);
+        meters.add(rejections);
+    }
+
+    public void unbindFrom(MeterRegistry registry) {
+        meters.forEach(registry::remove);
+        meters.clear();
+    }
+}
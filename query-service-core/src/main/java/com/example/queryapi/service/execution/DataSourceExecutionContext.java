@@ -0,0 +1,346 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.LanguageDriver;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Everything needed to run queries against one target data source: its connection pool and a
+ * dedicated MyBatis {@link SqlSessionFactory} with one pre-built {@link MappedStatement} per SQL template.
+ * <p>
+ * Statements are built the first time a template version is executed on this data source and reused
+ * afterwards, so MyBatis parses each template once per data source instead of once per call.
+ * <p>
+ * Queries use the context under a {@link Lease}. A context replaced by a newer configuration is
+ * retired: it takes no new leases and its pool is closed once the last lease is returned.
+ */
+@Slf4j
+public class DataSourceExecutionContext {
+
+    private static final String TEMPLATE_STATEMENT_PREFIX = "template:";
+    private static final String AD_HOC_STATEMENT_PREFIX = "adhoc:";
+    private static final int MAX_AD_HOC_STATEMENTS = 256; // Bounded, raw SQL text is client controlled
+
+    @Getter
+    private final String datasourceId;
+    @Getter
+    private final String dbType; // Configured database type, e.g. "MySQL"; selects dialect-specific SQL
+    @Getter
+    private final HikariDataSource dataSource;
+    @Getter
+    private final DataSourceBulkhead bulkhead; // Concurrency partition, queries must hold a permit to run
+    @Getter
+    private final PoolSizingTracker sizingTracker; // Null if the pool is not adaptively sized
+    @Getter
+    private final ReplicaSet replicas; // Read replicas for read-only templates, closed with the context
+    private final StatementRegistryConfiguration configuration;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final Map<String, TemplateStatement> templateStatements = new ConcurrentHashMap<>();
+    private final Map<String, MappedStatement> adHocStatements;
+    private final AtomicLong adHocStatementSequence = new AtomicLong();
+    private final AtomicInteger leases = new AtomicInteger();
+    private final List<Meter> poolMeters = new ArrayList<>(); // Registered while this is the current context of its datasource
+    private final CompletableFuture<Void> drained = new CompletableFuture<>();
+    private volatile boolean retired;
+    private volatile long lastUsedNanos = System.nanoTime(); // Drives idle and LRU eviction of the pool
+
+    public DataSourceExecutionContext(String datasourceId, String dbType, HikariDataSource dataSource, DataSourceBulkhead bulkhead,
+                                      PoolSizingTracker sizingTracker, ReplicaSet replicas) {
+        this.datasourceId = datasourceId;
+        this.dbType = dbType;
+        this.dataSource = dataSource;
+        this.bulkhead = bulkhead;
+        this.sizingTracker = sizingTracker;
+        this.replicas = replicas;
+        this.configuration = new StatementRegistryConfiguration(new Environment(datasourceId, new JdbcTransactionFactory(), dataSource));
+        this.configuration.setCallSettersOnNulls(true); // Keep NULL columns in the row maps
+        this.configuration.addInterceptor(new QueryDeadlineInterceptor()); // Query timeout and cancellation per call
+        this.configuration.addInterceptor(new QueryTimingInterceptor()); // Execute and row mapping phases
+        this.sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        this.adHocStatements = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappedStatement> eldest) {
+                boolean evict = size() > MAX_AD_HOC_STATEMENTS;
+                if (evict) {
+                    configuration.removeMappedStatement(eldest.getValue().getId());
+                }
+                return evict;
+            }
+        });
+    }
+
+    /**
+     * Returns the mapped statement for the given template version, building and registering it on first use.
+     */
+    public MappedStatement resolveTemplateStatement(CompiledSqlTemplate template) {
+        return templateStatements.compute(template.getSqlCode(), (sqlCode, existing) -> {
+            if (existing != null && !template.isNewerThan(existing.template)) {
+                return existing;
+            }
+            String id = TEMPLATE_STATEMENT_PREFIX + sqlCode + ":v" + template.getVersion();
+            MappedStatement statement = buildSelectStatement(id, template.getSqlContent(), template.isDynamic());
+            configuration.addMappedStatement(statement);
+            if (existing != null) {
+                configuration.removeMappedStatement(existing.statement.getId());
+            }
+            log.debug("Registered mapped statement '{}' on datasource {}", id, datasourceId);
+            return new TemplateStatement(template, statement);
+        }).statement;
+    }
+
+    /**
+     * Returns a mapped statement for a raw SQL string. Recently used raw statements are kept for reuse.
+     */
+    public MappedStatement resolveAdHocStatement(String sql) {
+        synchronized (adHocStatements) {
+            return adHocStatements.computeIfAbsent(sql, key -> {
+                MappedStatement statement = buildSelectStatement(AD_HOC_STATEMENT_PREFIX + adHocStatementSequence.incrementAndGet(),
+                        key, key.trim().startsWith("<script>"));
+                configuration.addMappedStatement(statement);
+                return statement;
+            });
+        }
+    }
+
+    public void evictTemplateStatement(String sqlCode) {
+        TemplateStatement removed = templateStatements.remove(sqlCode);
+        if (removed != null) {
+            configuration.removeMappedStatement(removed.statement.getId());
+        }
+    }
+
+    /**
+     * @param connectionSource This context's pool, or a data source over a connection the caller already holds.
+     * @param deadline         Applied to the statement MyBatis prepares.
+     * @param guard            Mapping stops at the first row over its limits.
+     */
+    public List<Map<String, Object>> selectList(MappedStatement statement, Map<String, Object> params, DataSource connectionSource,
+                                                QueryDeadline deadline, ResultGuard guard) throws SQLException {
+        Object parameterObject = params != null ? params : Collections.emptyMap();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        ResultHandler<Map<String, Object>> handler = resultContext -> {
+            if (guard.admit(ResultSizeEstimator.estimateRow(resultContext.getResultObject()))) {
+                rows.add(resultContext.getResultObject());
+            } else {
+                resultContext.stop();
+            }
+        };
+        deadline.check();
+        QueryDeadline.bind(deadline);
+        try {
+            if (connectionSource == dataSource) {
+                try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+                    sqlSession.select(statement.getId(), parameterObject, handler);
+                    return rows;
+                }
+            }
+            try (Connection connection = connectionSource.getConnection();
+                 SqlSession sqlSession = sqlSessionFactory.openSession(connection)) {
+                sqlSession.select(statement.getId(), parameterObject, handler);
+                return rows;
+            }
+        } finally {
+            QueryDeadline.unbind();
+        }
+    }
+
+    /**
+     * Renders a mapped statement for the given parameters into positional SQL, bound by MyBatis'
+     * own parameter handler. Lets dynamic templates run on the plain JDBC engine (e.g. for streaming).
+     */
+    public PreparedQuery render(MappedStatement statement, Map<String, Object> params) {
+        Object parameterObject = params != null ? params : Collections.emptyMap();
+        BoundSql boundSql = statement.getBoundSql(parameterObject);
+        DefaultParameterHandler parameterHandler = new DefaultParameterHandler(statement, parameterObject, boundSql);
+        return new PreparedQuery() {
+            @Override
+            public String getSql() {
+                return boundSql.getSql();
+            }
+
+            @Override
+            public int getParameterCount() {
+                return boundSql.getParameterMappings().size();
+            }
+
+            @Override
+            public void bind(PreparedStatement ps) throws SQLException {
+                parameterHandler.setParameters(ps);
+            }
+        };
+    }
+
+    /**
+     * @return A lease keeping the pool open until it is closed, or null if this context was retired
+     * and the current one must be looked up again.
+     */
+    public Lease tryLease() {
+        leases.incrementAndGet();
+        if (retired) {
+            releaseLease();
+            return null;
+        }
+        lastUsedNanos = System.nanoTime();
+        return new Lease();
+    }
+
+    /**
+     * Stops handing out leases.
+     *
+     * @return Completed once all outstanding leases are closed.
+     */
+    public CompletableFuture<Void> retire() {
+        retired = true;
+        if (leases.get() == 0) {
+            drained.complete(null);
+        }
+        return drained;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    public int getLeaseCount() {
+        return leases.get();
+    }
+
+    /**
+     * {@link System#nanoTime()} of the last lease, or of the creation.
+     */
+    public long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    /**
+     * maximumPoolSize of the primary pool plus the replica pools.
+     */
+    public int getMaximumConnections() {
+        return dataSource.getMaximumPoolSize() + replicas.getMaximumPoolSize();
+    }
+
+    /**
+     * Registers the bulkhead meters and connection gauges of the primary and replica pools, tagged
+     * with the datasource id and the pool ({@code primary}, {@code replica-<n>}).
+     */
+    public void bindTo(MeterRegistry registry) {
+        bulkhead.bindTo(registry);
+        bindPoolGauges(registry, dataSource, "primary");
+        List<ReplicaSet.Replica> replicaList = replicas.getReplicas();
+        for (int i = 0; i < replicaList.size(); i++) {
+            bindPoolGauges(registry, replicaList.get(i).getDataSource(), "replica-" + (i + 1));
+        }
+    }
+
+    public void unbindFrom(MeterRegistry registry) {
+        bulkhead.unbindFrom(registry);
+        poolMeters.forEach(registry::remove);
+        poolMeters.clear();
+    }
+
+    private void bindPoolGauges(MeterRegistry registry, HikariDataSource pool, String poolTag) {
+        poolMeters.add(Gauge.builder("query.datasource.pool.active", pool, ds -> poolStat(ds, HikariPoolMXBean::getActiveConnections))
+                .tags("datasource", datasourceId, "pool", poolTag).description("Connections in use").register(registry));
+        poolMeters.add(Gauge.builder("query.datasource.pool.idle", pool, ds -> poolStat(ds, HikariPoolMXBean::getIdleConnections))
+                .tags("datasource", datasourceId, "pool", poolTag).description("Idle connections").register(registry));
+        poolMeters.add(Gauge.builder("query.datasource.pool.pending", pool, ds -> poolStat(ds, HikariPoolMXBean::getThreadsAwaitingConnection))
+                .tags("datasource", datasourceId, "pool", poolTag).description("Threads waiting for a connection").register(registry));
+        poolMeters.add(Gauge.builder("query.datasource.pool.max", pool, HikariDataSource::getMaximumPoolSize)
+                .tags("datasource", datasourceId, "pool", poolTag).description("Maximum pool size").register(registry));
+    }
+
+    private static double poolStat(HikariDataSource dataSource, ToIntFunction<HikariPoolMXBean> stat) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null ? stat.applyAsInt(pool) : Double.NaN; // Closed pool
+    }
+
+    /**
+     * Closes the pools; connections still in use are closed by Hikari once returned.
+     */
+    public void close() {
+        dataSource.close();
+        replicas.close();
+    }
+
+    private void releaseLease() {
+        if (leases.decrementAndGet() == 0 && retired) {
+            drained.complete(null);
+        }
+    }
+
+    private MappedStatement buildSelectStatement(String id, String sql, boolean scripted) {
+        LanguageDriver languageDriver = configuration.getDefaultScriptingLanguageInstance();
+        String script = scripted && !sql.trim().startsWith("<script>") ? "<script>" + sql + "</script>" : sql;
+        SqlSource sqlSource = languageDriver.createSqlSource(configuration, script, Map.class);
+        ResultMap inlineResultMap = new ResultMap.Builder(configuration, id + "-Inline", LinkedHashMap.class, new ArrayList<>()).build();
+        return new MappedStatement.Builder(configuration, id, sqlSource, SqlCommandType.SELECT)
+                .resultMaps(List.of(inlineResultMap))
+                .build();
+    }
+
+    private static final class TemplateStatement {
+        private final CompiledSqlTemplate template;
+        private final MappedStatement statement;
+
+        private TemplateStatement(CompiledSqlTemplate template, MappedStatement statement) {
+            this.template = template;
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * Use of the context by one query (or batch group); the pool stays open while it is held.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private boolean closed;
+
+        private Lease() {
+        }
+
+        public DataSourceExecutionContext getContext() {
+            return DataSourceExecutionContext.this;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                releaseLease();
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Owns the execution contexts (pools) of the target datasources.
+ * <p>
+ * Each datasource id maps to a future of its context. The first caller builds the pool on its own
+ * thread outside any map lock; concurrent callers for the same id wait for that future, callers for
+ * other ids are not affected by a slow or hanging connect. A failed build is removed so the next call retries.
+ * <p>
+ * On a configuration change the new pool is built while queries keep running on the old one, then
+ * swapped in. The old context is retired: queries holding a lease on it finish, then its pool is closed.
+ * <p>
+ * Pools unused for longer than the idle eviction period are retired the same way, as are the least
+ * recently used pools when the open pools exceed the connection or pool count budget. Evicted pools
+ * are rebuilt on their next query.
+ */
+@Slf4j
+public class DataSourceLifecycleManager {
+
+    private final ConcurrentMap<String, CompletableFuture<DataSourceExecutionContext>> contexts = new ConcurrentHashMap<>();
+    private final Function<String, DataSourceExecutionContext> factory;
+    private final MeterRegistry meterRegistry;
+    private final Predicate<String> metered; // Datasources within the metrics cardinality limit
+    private final QueryExecutionProperties.Pool properties;
+    private final ScheduledExecutorService closer; // Closing a pool blocks, never do it on a query thread; also runs the idle sweep
+    private final Object meterLock = new Object(); // Only the current context of an id has its meters registered
+    private final Object budgetLock = new Object();
+    private final Counter idleEvictions;
+    private final Counter budgetEvictions;
+
+    /**
+     * @param factory Builds the context of a datasource id from its stored configuration.
+     * @param metered Whether the pool and bulkhead meters of a datasource are registered.
+     */
+    public DataSourceLifecycleManager(Function<String, DataSourceExecutionContext> factory, MeterRegistry meterRegistry,
+                                      Predicate<String> metered, QueryExecutionProperties.Pool properties) {
+        this.factory = factory;
+        this.meterRegistry = meterRegistry;
+        this.metered = metered;
+        this.properties = properties;
+        this.closer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "datasource-pool-closer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (properties.getIdleEvictionMillis() > 0) {
+            long interval = Math.max(properties.getEvictionIntervalMillis(), 1000);
+            closer.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        this.idleEvictions = Counter.builder("query.datasource.pool.evictions").tag("reason", "idle")
+                .description("Datasource pools closed because they were not used").register(meterRegistry);
+        this.budgetEvictions = Counter.builder("query.datasource.pool.evictions").tag("reason", "budget")
+                .description("Datasource pools closed to stay within the connection or pool budget").register(meterRegistry);
+        Gauge.builder("query.datasource.pools.resident", this, manager -> manager.getActiveContexts().size())
+                .description("Open datasource pools").register(meterRegistry);
+        Gauge.builder("query.datasource.pools.connections.reserved", this, DataSourceLifecycleManager::reservedConnections)
+                .description("maximumPoolSize summed over the open datasource and replica pools").register(meterRegistry);
+    }
+
+    /**
+     * Returns the current context of the datasource, building it on the calling thread if there is none.
+     */
+    public DataSourceExecutionContext get(String datasourceId) {
+        CompletableFuture<DataSourceExecutionContext> future = contexts.get(datasourceId);
+        if (future == null) {
+            CompletableFuture<DataSourceExecutionContext> created = new CompletableFuture<>();
+            future = contexts.putIfAbsent(datasourceId, created);
+            if (future == null) {
+                return build(datasourceId, created);
+            }
+        }
+        return await(future);
+    }
+
+    /**
+     * Leases the current context; retried if the context is retired between lookup and lease.
+     */
+    public DataSourceExecutionContext.Lease lease(String datasourceId) {
+        while (true) {
+            DataSourceExecutionContext.Lease lease = get(datasourceId).tryLease();
+            if (lease != null) {
+                return lease;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the pool of an active datasource from its current configuration and swaps it in. Queries
+     * keep using the old pool while the new one is built. If the build fails the old pool is retired
+     * anyway, so the next query rebuilds from the new configuration and reports its error.
+     */
+    public void swap(String datasourceId) {
+        if (!contexts.containsKey(datasourceId)) {
+            return; // Not in use, built from the new configuration on first use
+        }
+        DataSourceExecutionContext fresh;
+        try {
+            fresh = factory.apply(datasourceId);
+        } catch (RuntimeException e) {
+            log.warn("Could not build the new pool of datasource {}, retiring the old one: {}", datasourceId, e.getMessage());
+            remove(datasourceId);
+            return;
+        }
+        CompletableFuture<DataSourceExecutionContext> previous;
+        synchronized (meterLock) {
+            previous = contexts.put(datasourceId, CompletableFuture.completedFuture(fresh));
+            unbindIfDone(previous);
+            if (metered.test(datasourceId)) {
+                fresh.bindTo(meterRegistry);
+            }
+        }
+        retire(previous);
+        log.info("Swapped in a new pool for datasource {}", datasourceId);
+        enforceBudget(datasourceId);
+    }
+
+    /**
+     * Drops the context of a datasource; its pool is closed once in-flight queries are done.
+     */
+    public void remove(String datasourceId) {
+        CompletableFuture<DataSourceExecutionContext> previous;
+        synchronized (meterLock) {
+            previous = contexts.remove(datasourceId);
+            unbindIfDone(previous);
+        }
+        retire(previous);
+    }
+
+    /**
+     * Applies an action to every context that is built.
+     */
+    public void forEachActive(Consumer<DataSourceExecutionContext> action) {
+        for (CompletableFuture<DataSourceExecutionContext> future : contexts.values()) {
+            DataSourceExecutionContext context = builtOrNull(future);
+            if (context != null) {
+                action.accept(context);
+            }
+        }
+    }
+
+    /**
+     * Closes all pools without waiting for leases; used at shutdown.
+     */
+    public void close() {
+        List<CompletableFuture<DataSourceExecutionContext>> all = new ArrayList<>(contexts.values());
+        contexts.clear();
+        for (CompletableFuture<DataSourceExecutionContext> future : all) {
+            future.thenAccept(context -> {
+                context.unbindFrom(meterRegistry);
+                context.close();
+            });
+        }
+        closer.shutdown();
+    }
+
+    private DataSourceExecutionContext build(String datasourceId, CompletableFuture<DataSourceExecutionContext> slot) {
+        DataSourceExecutionContext context;
+        try {
+            context = factory.apply(datasourceId);
+        } catch (RuntimeException e) {
+            contexts.remove(datasourceId, slot); // The next call retries
+            slot.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (meterLock) {
+            if (contexts.get(datasourceId) == slot && metered.test(datasourceId)) {
+                context.bindTo(meterRegistry);
+            }
+        }
+        slot.complete(context); // If swapped or removed meanwhile, that retires it now
+        enforceBudget(datasourceId);
+        return context;
+    }
+
+    /**
+     * Retires the pools no query has leased for longer than the idle eviction period.
+     */
+    void evictIdle() {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(properties.getIdleEvictionMillis());
+        long now = System.nanoTime();
+        for (Map.Entry<String, CompletableFuture<DataSourceExecutionContext>> entry : contexts.entrySet()) {
+            DataSourceExecutionContext context = builtOrNull(entry.getValue());
+            if (context != null && context.getLeaseCount() == 0 && now - context.getLastUsedNanos() > idleNanos
+                    && evict(entry.getKey(), entry.getValue())) {
+                idleEvictions.increment();
+                log.info("Evicted pool of datasource {}, idle for more than {} ms", entry.getKey(), properties.getIdleEvictionMillis());
+            }
+        }
+    }
+
+    /**
+     * Retires least recently used pools until the open pools fit the budget. Pools without running
+     * queries go first; the pool just built for {@code keepId} is never evicted.
+     */
+    private void enforceBudget(String keepId) {
+        int maxConnections = properties.getMaxTotalConnections();
+        int maxPools = properties.getMaxPools();
+        if (maxConnections <= 0 && maxPools <= 0) {
+            return;
+        }
+        synchronized (budgetLock) {
+            List<DataSourceExecutionContext> resident = getActiveContexts();
+            int pools = resident.size();
+            int connections = resident.stream().mapToInt(DataSourceExecutionContext::getMaximumConnections).sum();
+            resident.sort(Comparator.comparing((DataSourceExecutionContext context) -> context.getLeaseCount() > 0)
+                    .thenComparingLong(DataSourceExecutionContext::getLastUsedNanos));
+            for (DataSourceExecutionContext context : resident) {
+                if ((maxPools <= 0 || pools <= maxPools) && (maxConnections <= 0 || connections <= maxConnections)) {
+                    return;
+                }
+                CompletableFuture<DataSourceExecutionContext> current = contexts.get(context.getDatasourceId());
+                if (context.getDatasourceId().equals(keepId) || current == null || builtOrNull(current) != context
+                        || !evict(context.getDatasourceId(), current)) {
+                    continue;
+                }
+                pools--;
+                connections -= context.getMaximumConnections();
+                budgetEvictions.increment();
+                log.info("Evicted pool of datasource {} to stay within the pool budget", context.getDatasourceId());
+            }
+            if ((maxPools > 0 && pools > maxPools) || (maxConnections > 0 && connections > maxConnections)) {
+                log.warn("Open datasource pools ({} pools, {} connections) exceed the budget ({} pools, {} connections)",
+                        pools, connections, maxPools, maxConnections);
+            }
+        }
+    }
+
+    /**
+     * Removes the entry if it is still the given one and retires its context.
+     */
+    private boolean evict(String datasourceId, CompletableFuture<DataSourceExecutionContext> expected) {
+        synchronized (meterLock) {
+            if (!contexts.remove(datasourceId, expected)) {
+                return false; // Swapped or removed concurrently
+            }
+            unbindIfDone(expected);
+        }
+        retire(expected);
+        return true;
+    }
+
+    /**
+     * The contexts that are built, in no particular order.
+     */
+    public List<DataSourceExecutionContext> getActiveContexts() {
+        List<DataSourceExecutionContext> resident = new ArrayList<>();
+        forEachActive(resident::add);
+        return resident;
+    }
+
+    private double reservedConnections() {
+        return getActiveContexts().stream().mapToInt(DataSourceExecutionContext::getMaximumConnections).sum();
+    }
+
+    private void unbindIfDone(CompletableFuture<DataSourceExecutionContext> future) {
+        DataSourceExecutionContext context = future != null ? builtOrNull(future) : null;
+        if (context != null) {
+            context.unbindFrom(meterRegistry);
+        }
+    }
+
+    private void retire(CompletableFuture<DataSourceExecutionContext> future) {
+        if (future == null) {
+            return;
+        }
+        future.thenAccept(context -> context.retire()
+                .orTimeout(properties.getDrainTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((drained, timeout) -> {
+                    if (timeout instanceof TimeoutException) {
+                        log.warn("Datasource {} still had {} queries running after {} ms, closing its old pool anyway",
+                                context.getDatasourceId(), context.getLeaseCount(), properties.getDrainTimeoutMillis());
+                    }
+                    context.close();
+                    log.info("Closed retired pool of datasource {}", context.getDatasourceId());
+                }, closer));
+    }
+
+    /**
+     * The context of a future whose build succeeded, otherwise null.
+     */
+    private static DataSourceExecutionContext builtOrNull(CompletableFuture<DataSourceExecutionContext> future) {
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    private static DataSourceExecutionContext await(CompletableFuture<DataSourceExecutionContext> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause(); // Same exception as the caller that built it got
+            }
+            throw e;
+        }
+    }
+}
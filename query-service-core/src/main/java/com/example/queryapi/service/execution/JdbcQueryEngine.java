@@ -0,0 +1,113 @@
+package com.example.queryapi.service.execution;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Runs precompiled queries with a plain JDBC {@link PreparedStatement} on a pooled connection,
+ * bypassing MyBatis statement rendering and result mapping.
+ */
+@Component
+public class JdbcQueryEngine {
+
+    /**
+     * @param deadline Becomes the statement's query timeout; cancelling it cancels the running statement.
+     */
+    public <T> T query(DataSource dataSource, PreparedQuery query, ResultSetExtractor<T> extractor, QueryDeadline deadline) throws SQLException {
+        return query(dataSource, query, extractor, 0, deadline);
+    }
+
+    /**
+     * @param maxRows Row limit applied by the driver (drivers that buffer whole results stop buffering there), 0 for none.
+     */
+    public <T> T query(DataSource dataSource, PreparedQuery query, ResultSetExtractor<T> extractor, int maxRows,
+                       QueryDeadline deadline) throws SQLException {
+        deadline.check();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(query.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            if (maxRows > 0) {
+                ps.setMaxRows(maxRows);
+            }
+            query.bind(ps);
+            deadline.apply(ps);
+            long started = System.nanoTime();
+            try (ResultSet rs = ps.executeQuery()) {
+                long executed = System.nanoTime();
+                QueryTimings.addCurrent(QueryTimings.Phase.EXECUTE, executed - started);
+                T result = extractor.extractData(rs);
+                QueryTimings.addCurrent(QueryTimings.Phase.ROW_MAPPING, System.nanoTime() - executed);
+                return result;
+            } finally {
+                deadline.release(ps);
+            }
+        }
+    }
+
+    /**
+     * Executes the query with a forward-only cursor and hands each row to the handler as it is fetched.
+     * Only {@code fetchSize} rows are buffered by the driver at any time (MySQL requires
+     * {@code useCursorFetch=true} on the connection, PostgreSQL a non auto-commit transaction).
+     *
+     * @return The number of rows streamed.
+     */
+    public long stream(DataSource dataSource, PreparedQuery query, int fetchSize, ResultRowHandler handler,
+                       QueryDeadline deadline) throws SQLException, IOException {
+        deadline.check();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean restoreAutoCommit = requiresTransactionForCursor(connection) && connection.getAutoCommit();
+            if (restoreAutoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement ps = connection.prepareStatement(query.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(fetchSize);
+                query.bind(ps);
+                deadline.apply(ps);
+                long started = System.nanoTime();
+                try (ResultSet rs = ps.executeQuery()) {
+                    QueryTimings timings = QueryTimings.current();
+                    long fetchStarted = System.nanoTime();
+                    if (timings != null) {
+                        timings.add(QueryTimings.Phase.EXECUTE, fetchStarted - started);
+                    }
+                    handler.start(ResultColumns.from(rs.getMetaData()));
+                    long rowCount = 0;
+                    long handlerNanos = 0;
+                    while (rs.next()) {
+                        if (timings != null) {
+                            long rowStarted = System.nanoTime();
+                            handler.row(rs);
+                            handlerNanos += System.nanoTime() - rowStarted;
+                        } else {
+                            handler.row(rs);
+                        }
+                        rowCount++;
+                    }
+                    if (timings != null) {
+                        // The handler writes each row to the response, fetching and reading the cursor is the mapping
+                        timings.add(QueryTimings.Phase.SERIALIZATION, handlerNanos);
+                        timings.add(QueryTimings.Phase.ROW_MAPPING, System.nanoTime() - fetchStarted - handlerNanos);
+                    }
+                    return rowCount;
+                } finally {
+                    deadline.release(ps);
+                }
+            } finally {
+                if (restoreAutoCommit) {
+                    connection.rollback(); // Read-only work, nothing to commit
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    private boolean requiresTransactionForCursor(Connection connection) throws SQLException {
+        return "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+    }
+}
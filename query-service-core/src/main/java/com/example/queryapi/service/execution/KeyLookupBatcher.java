@@ -0,0 +1,282 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import com.example.queryapi.service.template.KeyLookupSql;
+import com.example.queryapi.service.template.ParameterBinding;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent point lookups of the same template into one set-based query.
+ * <p>
+ * Lookups are grouped by datasource, template version and the values of all parameters other than
+ * the key. The first lookup of a group leads the batch: it waits for up to the configured window
+ * (or until the batch is full), runs one {@code IN (...)} query on its own thread and hands every
+ * caller the rows matching its key. No extra threads are involved, so a batch can never wait for a
+ * free executor thread, and each batch uses one pooled connection instead of one per caller.
+ * <p>
+ * The batch belongs to all of its callers: it runs on a connection of its own under the latest of
+ * their deadlines, and is only cancelled once every caller is gone. Each caller waits for it until
+ * its own deadline.
+ * <p>
+ * Rows are handed back by comparing the key column with the keys, which only agrees with the
+ * database's comparison for numbers: under a case-insensitive or padding collation a string key
+ * matches rows whose value differs from it. Only numeric keys are batched.
+ */
+@Component
+@Slf4j
+public class KeyLookupBatcher {
+
+    private final JdbcQueryEngine jdbcQueryEngine;
+    private final QueryExecutionProperties queryExecutionProperties;
+    private final QueryDeadlineWatchdog deadlineWatchdog;
+    private final Map<List<Object>, PendingBatch> openBatches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public KeyLookupBatcher(JdbcQueryEngine jdbcQueryEngine, QueryExecutionProperties queryExecutionProperties,
+                            QueryDeadlineWatchdog deadlineWatchdog) {
+        this.jdbcQueryEngine = jdbcQueryEngine;
+        this.queryExecutionProperties = queryExecutionProperties;
+        this.deadlineWatchdog = deadlineWatchdog;
+    }
+
+    /**
+     * @return true if this lookup can join a batch: the template is batchable and the key is a single number
+     * (or a numeric string for a key declared with a numeric jdbcType).
+     */
+    public boolean supports(CompiledSqlTemplate template, Map<String, Object> params) {
+        if (!queryExecutionProperties.getMicroBatch().isEnabled() || !template.isKeyLookupBatchable() || params == null) {
+            return false;
+        }
+        return isBatchableKey(template.getKeyLookupSql(), params.get(template.getKeyLookupSql().getKeyParam()));
+    }
+
+    /**
+     * @return true if rows of this key can be told apart from other keys' rows by comparing numbers.
+     */
+    public static boolean isBatchableKey(KeyLookupSql lookupSql, Object key) {
+        if (key instanceof Number) {
+            return normalizeKey(key) != null;
+        }
+        return key instanceof String && isNumeric(lookupSql.getKeyBinding()) && normalizeKey(key) != null;
+    }
+
+    /**
+     * Returns the rows of one lookup, run as part of a batch with concurrent lookups of the same group.
+     *
+     * @param pool     Pool the batch takes its connection from if this lookup leads it (the primary's or a replica's),
+     *                 never a connection held by the caller.
+     * @param deadline Bounds the wait for the batch; the batch itself runs until the latest deadline of its callers.
+     */
+    public List<Map<String, Object>> lookup(DataSourceExecutionContext context, DataSource pool,
+                                            CompiledSqlTemplate template, Map<String, Object> params, QueryDeadline deadline) throws Exception {
+        KeyLookupSql lookupSql = template.getKeyLookupSql();
+        QueryExecutionProperties.MicroBatch settings = queryExecutionProperties.getMicroBatch();
+        Map<String, Object> sharedParams = new TreeMap<>();
+        for (String name : lookupSql.getSharedParameterNames()) {
+            sharedParams.put(name, params.get(name));
+        }
+        List<Object> groupKey = List.of(context.getDatasourceId(), template.getSqlCode(), String.valueOf(template.getVersion()), sharedParams);
+        PendingLookup pending = new PendingLookup(params.get(lookupSql.getKeyParam()), deadline);
+
+        PendingBatch[] created = new PendingBatch[1];
+        openBatches.compute(groupKey, (k, existing) -> {
+            PendingBatch batch = existing;
+            if (batch == null || !batch.add(pending, settings.getMaxBatchSize())) {
+                batch = new PendingBatch();
+                batch.add(pending, settings.getMaxBatchSize());
+                created[0] = batch;
+            }
+            return batch.isClosed() ? null : batch; // Full batches stop accepting lookups
+        });
+
+        if (created[0] != null) {
+            PendingBatch batch = created[0];
+            List<PendingLookup> lookups = batch.awaitAndClose(TimeUnit.MICROSECONDS.toNanos(settings.getWindowMicros()));
+            openBatches.remove(groupKey, batch);
+            execute(context, pool, lookupSql, sharedParams, lookups);
+        }
+        // Cancelling this caller (client gone, its deadline passed) only ends its own wait
+        deadline.onCancel(() -> pending.result.completeExceptionally(new SQLTimeoutException(deadline.getCancelReason())));
+        try {
+            if (!deadline.hasLimit()) {
+                return pending.result.get();
+            }
+            return pending.result.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            deadline.cancel("Query deadline exceeded while waiting for a batched lookup");
+            throw new SQLTimeoutException(deadline.getCancelReason());
+        } catch (CompletionException | ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Runs one set-based query for the given keys and returns its rows grouped by {@link #normalizeKey normalized} key.
+     */
+    public Map<String, List<Map<String, Object>>> lookupAll(DataSource connectionSource, KeyLookupSql lookupSql,
+                                                            Map<String, Object> sharedParams, List<Object> keys,
+                                                            QueryDeadline deadline) throws Exception {
+        List<Map<String, Object>> rows = jdbcQueryEngine.query(connectionSource,
+                lookupSql.prepare(sharedParams, keys), RowMapListExtractor.INSTANCE, deadline);
+        return splitByKey(rows, lookupSql.getKeyColumn());
+    }
+
+    private void execute(DataSourceExecutionContext context, DataSource pool, KeyLookupSql lookupSql,
+                         Map<String, Object> sharedParams, List<PendingLookup> lookups) {
+        Map<String, Object> distinctKeys = new LinkedHashMap<>();
+        for (PendingLookup lookup : lookups) {
+            distinctKeys.putIfAbsent(lookup.normalizedKey, lookup.key);
+        }
+        List<Object> keys = new ArrayList<>(distinctKeys.values());
+        QueryDeadline batchDeadline = batchDeadline(lookups);
+        QueryDeadlineWatchdog.Watch watch = deadlineWatchdog.watch(batchDeadline,
+                "Batched lookup of " + keys.size() + " keys on datasource '" + context.getDatasourceId() + "'");
+        try {
+            Map<String, List<Map<String, Object>>> rowsByKey = lookupAll(pool, lookupSql, sharedParams, keys, batchDeadline);
+            for (PendingLookup lookup : lookups) {
+                lookup.result.complete(rowsByKey.getOrDefault(lookup.normalizedKey, Collections.emptyList()));
+            }
+            log.debug("Micro-batch ran {} lookups ({} distinct keys) on datasource {}",
+                    lookups.size(), keys.size(), context.getDatasourceId());
+        } catch (Exception | Error e) {
+            lookups.forEach(lookup -> lookup.result.completeExceptionally(e));
+        } finally {
+            watch.close();
+        }
+    }
+
+    /**
+     * The latest deadline of the callers (none if one of them has none), cancelled once all callers are cancelled.
+     */
+    private static QueryDeadline batchDeadline(List<PendingLookup> lookups) {
+        long remainingMillis = 0;
+        for (PendingLookup lookup : lookups) {
+            if (!lookup.deadline.hasLimit()) {
+                remainingMillis = 0;
+                break;
+            }
+            remainingMillis = Math.max(remainingMillis, Math.max(lookup.deadline.remainingMillis(), 1));
+        }
+        QueryDeadline batchDeadline = QueryDeadline.within(remainingMillis);
+        AtomicInteger live = new AtomicInteger(lookups.size());
+        for (PendingLookup lookup : lookups) {
+            lookup.deadline.onCancel(() -> {
+                if (live.decrementAndGet() == 0) {
+                    batchDeadline.cancel("Every caller of the batched lookup is gone");
+                }
+            });
+        }
+        return batchDeadline;
+    }
+
+    private static Map<String, List<Map<String, Object>>> splitByKey(List<Map<String, Object>> rows, String keyColumn) {
+        Map<String, List<Map<String, Object>>> rowsByKey = new HashMap<>();
+        if (rows.isEmpty()) {
+            return rowsByKey;
+        }
+        String label = rows.get(0).keySet().stream()
+                .filter(keyColumn::equalsIgnoreCase) // Drivers differ in the case of returned labels
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Batch key column '" + keyColumn + "' is not part of the result"));
+        for (Map<String, Object> row : rows) {
+            rowsByKey.computeIfAbsent(normalizeKey(row.get(label)), k -> new ArrayList<>()).add(row);
+        }
+        return rowsByKey;
+    }
+
+    /**
+     * JSON request values and JDBC column values differ in type (e.g. Integer vs Long, or a numeric string), so
+     * keys are matched by their canonical decimal form.
+     *
+     * @return null for values that are not numbers (including NaN and infinity).
+     */
+    public static String normalizeKey(Object key) {
+        if (key instanceof Number || key instanceof String) {
+            try {
+                return new BigDecimal(key.toString().trim()).stripTrailingZeros().toPlainString();
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNumeric(ParameterBinding binding) {
+        JDBCType type = binding.getJdbcType();
+        return type == JDBCType.BIGINT || type == JDBCType.INTEGER || type == JDBCType.SMALLINT || type == JDBCType.TINYINT
+                || type == JDBCType.DECIMAL || type == JDBCType.NUMERIC;
+    }
+
+    private static final class PendingLookup {
+        private final Object key;
+        private final String normalizedKey;
+        private final QueryDeadline deadline;
+        private final CompletableFuture<List<Map<String, Object>>> result = new CompletableFuture<>();
+
+        private PendingLookup(Object key, QueryDeadline deadline) {
+            this.key = key;
+            this.normalizedKey = normalizeKey(key);
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class PendingBatch {
+        private final List<PendingLookup> lookups = new ArrayList<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private boolean closed;
+
+        synchronized boolean add(PendingLookup lookup, int maxBatchSize) {
+            if (closed) {
+                return false;
+            }
+            lookups.add(lookup);
+            if (lookups.size() >= maxBatchSize) {
+                closed = true;
+                full.countDown(); // Wake the leader, the batch can run now
+            }
+            return true;
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Waits outside of the monitor, so lookups can keep joining while the leader waits.
+         */
+        List<PendingLookup> awaitAndClose(long windowNanos) {
+            try {
+                full.await(windowNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Run what has been collected so far
+            }
+            synchronized (this) {
+                closed = true;
+                return new ArrayList<>(lookups);
+            }
+        }
+    }
+}
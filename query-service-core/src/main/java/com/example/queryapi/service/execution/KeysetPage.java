@@ -0,0 +1,89 @@
+package com.example.queryapi.service.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+
+/**
+ * Keyset (seek) pagination of a query: the query is wrapped, ordered by its key column and resumed
+ * after the last key of the previous page with {@code key > ?} instead of an OFFSET. With an index on
+ * the key every page costs the same as the first one, however deep it is.
+ */
+public final class KeysetPage {
+
+    private static final Pattern KEY_COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*"); // Inlined into SQL, plain names only
+    private static final String ALIAS = "keyset_page";
+
+    private KeysetPage() {
+    }
+
+    public static boolean isValidKeyColumn(String keyColumn) {
+        return keyColumn != null && KEY_COLUMN.matcher(keyColumn).matches();
+    }
+
+    /**
+     * @param afterKey  Last key of the previous page, null for the first page.
+     * @param fetchRows Rows to fetch; one more than the page size tells whether another page follows.
+     * @param dbType    Datasource type, selects the row limit syntax.
+     */
+    public static PreparedQuery prepare(PreparedQuery inner, String keyColumn, Object afterKey, int fetchRows, String dbType) {
+        if (!isValidKeyColumn(keyColumn)) {
+            throw new IllegalArgumentException("Invalid page key column: " + keyColumn);
+        }
+        String key = ALIAS + "." + keyColumn;
+        StringBuilder sql = new StringBuilder(inner.getSql().length() + 96)
+                .append("SELECT * FROM (").append(inner.getSql()).append(") ").append(ALIAS);
+        if (afterKey != null) {
+            sql.append(" WHERE ").append(key).append(" > ?");
+        }
+        sql.append(" ORDER BY ").append(key).append(' ').append(limitClause(dbType, fetchRows));
+        String executable = sql.toString();
+        int innerParameters = inner.getParameterCount();
+        return new PreparedQuery() {
+            @Override
+            public String getSql() {
+                return executable;
+            }
+
+            @Override
+            public int getParameterCount() {
+                return innerParameters + (afterKey != null ? 1 : 0);
+            }
+
+            @Override
+            public void bind(PreparedStatement ps) throws SQLException {
+                inner.bind(ps);
+                if (afterKey != null) {
+                    ps.setObject(innerParameters + 1, afterKey);
+                }
+            }
+        };
+    }
+
+    /**
+     * Index of the key column in the result, matched case-insensitively as drivers differ in label case.
+     */
+    public static int keyIndex(ResultColumns columns, String keyColumn) {
+        String[] labels = columns.getLabels();
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(keyColumn)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Page key column '" + keyColumn + "' is not part of the result");
+    }
+
+    /**
+     * The row count is an int, so it is inlined rather than bound.
+     */
+    private static String limitClause(String dbType, int rows) {
+        String type = dbType != null ? dbType.replace(" ", "").toLowerCase() : "";
+        if (type.equals("sqlserver") || type.equals("mssql")) {
+            return "OFFSET 0 ROWS FETCH NEXT " + rows + " ROWS ONLY";
+        }
+        if (type.equals("oracle") || type.equals("db2")) {
+            return "FETCH FIRST " + rows + " ROWS ONLY";
+        }
+        return "LIMIT " + rows; // MySQL, OceanBase, PostgreSQL and most others
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.common.exception.InvalidInputException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Opaque continuation token of a keyset page: the last key of the page, tagged with its type so it is
+ * bound with the same SQL type on the next request, and bound to the template and query parameters
+ * it was issued for.
+ */
+public final class PageToken {
+
+    private static final String VERSION = "1";
+    private static final char SEPARATOR = '|';
+
+    private PageToken() {
+    }
+
+    public static String encode(String sqlCode, Map<String, Object> params, Object lastKey) {
+        String payload = VERSION + SEPARATOR + fingerprint(sqlCode, params) + SEPARATOR + encodeKey(lastKey);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The last key of the previous page.
+     * @throws InvalidInputException if the token is malformed or was issued for another template or other parameters.
+     */
+    public static Object decode(String token, String sqlCode, Map<String, Object> params) {
+        String payload;
+        try {
+            payload = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException("Malformed page token");
+        }
+        // version|fingerprint|type|value; the value may itself contain the separator
+        String[] parts = payload.split("\\|", 4);
+        if (parts.length != 4 || !VERSION.equals(parts[0])) {
+            throw new InvalidInputException("Malformed page token");
+        }
+        if (!parts[1].equals(fingerprint(sqlCode, params))) {
+            throw new InvalidInputException("Page token was issued for a different query or different parameters");
+        }
+        try {
+            return decodeKey(parts[2], parts[3]);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new InvalidInputException("Malformed page token");
+        }
+    }
+
+    private static String encodeKey(Object key) {
+        if (key == null) {
+            throw new IllegalStateException("Page key column must not be NULL"); // NULL keys cannot be seeked past
+        } else if (key instanceof Number) {
+            return "N" + SEPARATOR + new BigDecimal(key.toString()).toPlainString();
+        } else if (key instanceof Timestamp) {
+            return "T" + SEPARATOR + ((Timestamp) key).toLocalDateTime();
+        } else if (key instanceof LocalDateTime) {
+            return "T" + SEPARATOR + key;
+        } else if (key instanceof java.sql.Date) {
+            return "D" + SEPARATOR + ((java.sql.Date) key).toLocalDate();
+        } else if (key instanceof LocalDate) {
+            return "D" + SEPARATOR + key;
+        } else if (key instanceof OffsetDateTime) {
+            return "O" + SEPARATOR + key;
+        }
+        return "S" + SEPARATOR + key;
+    }
+
+    private static Object decodeKey(String type, String value) {
+        switch (type) {
+            case "N":
+                return new BigDecimal(value);
+            case "T":
+                return LocalDateTime.parse(value);
+            case "D":
+                return LocalDate.parse(value);
+            case "O":
+                return OffsetDateTime.parse(value);
+            case "S":
+                return value;
+            default:
+                throw new InvalidInputException("Malformed page token");
+        }
+    }
+
+    private static String fingerprint(String sqlCode, Map<String, Object> params) {
+        CRC32 crc = new CRC32();
+        crc.update((sqlCode + SEPARATOR + (params != null ? new TreeMap<>(params) : Map.of())).getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.queryapi.service.execution;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Input of the {@link AdaptivePoolSizer} for one pool: the size bounds of its datasource, and the
+ * connection acquire latency and timeouts Hikari reports through its metrics tracker.
+ */
+public class PoolSizingTracker implements IMetricsTracker {
+
+    @Getter
+    private final int minPoolSize;
+    @Getter
+    private final int maxPoolSize; // The connections the target database allows this service
+    @Getter
+    private final boolean bulkheadFollowsPool; // False if the datasource sets its own maxConcurrentQueries
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public PoolSizingTracker(int minPoolSize, int maxPoolSize, boolean bulkheadFollowsPool) {
+        this.minPoolSize = Math.max(minPoolSize, 1);
+        this.maxPoolSize = Math.max(maxPoolSize, this.minPoolSize);
+        this.bulkheadFollowsPool = bulkheadFollowsPool;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquireNanos.add(elapsedAcquiredNanos);
+        acquireCount.increment();
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Returns and resets the acquisitions recorded since the previous call.
+     */
+    Acquisitions drain() {
+        long count = acquireCount.sumThenReset();
+        long nanos = acquireNanos.sumThenReset();
+        return new Acquisitions(count > 0 ? TimeUnit.NANOSECONDS.toMicros(nanos / count) / 1000.0 : 0, timeouts.sumThenReset());
+    }
+
+    static final class Acquisitions {
+        final double meanMillis;
+        final long timeouts;
+
+        private Acquisitions(double meanMillis, long timeouts) {
+            this.meanMillis = meanMillis;
+            this.timeouts = timeouts;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.queryapi.service.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Positional SQL plus the logic to bind its parameters, ready for a plain JDBC {@link PreparedStatement}.
+ */
+public interface PreparedQuery {
+
+    String getSql();
+
+    /**
+     * Number of {@code ?} markers bound by {@link #bind(PreparedStatement)}, so callers can wrap the SQL
+     * and bind further parameters after them.
+     */
+    int getParameterCount();
+
+    void bind(PreparedStatement ps) throws SQLException;
+}
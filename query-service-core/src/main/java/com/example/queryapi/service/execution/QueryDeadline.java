@@ -0,0 +1,180 @@
+package com.example.queryapi.service.execution;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a query (or a whole request) must finish, and the means to stop it early.
+ * <p>
+ * Statements run under a deadline get it as their JDBC query timeout and are registered while they
+ * execute, so {@link #cancel(String)} can stop them with {@link Statement#cancel()}. Deadlines form a
+ * tree: cancelling a request-scoped deadline (client gone, batch deadline passed) cancels the
+ * statements of all deadlines derived from it with {@link #child(long)}.
+ */
+@Slf4j
+public final class QueryDeadline {
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private final QueryDeadline parent;
+    private final long deadlineNanos;
+    private final Set<Statement> runningStatements = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> cancelCallbacks = new CopyOnWriteArrayList<>();
+    private final Runnable cancelWithParent; // Registered with the parent, null for roots
+    private volatile String cancelReason;
+
+    private QueryDeadline(QueryDeadline parent, long timeoutMillis) {
+        this.parent = parent;
+        long own = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Long.MAX_VALUE;
+        this.deadlineNanos = parent != null ? Math.min(own, parent.deadlineNanos) : own;
+        this.cancelWithParent = parent != null ? () -> cancel(parent.cancelReason) : null;
+    }
+
+    /**
+     * A deadline without time limit that can still be cancelled, e.g. scoped to one HTTP request.
+     */
+    public static QueryDeadline unbounded() {
+        return new QueryDeadline(null, 0);
+    }
+
+    /**
+     * @param timeoutMillis 0 or less for no limit.
+     */
+    public static QueryDeadline within(long timeoutMillis) {
+        return new QueryDeadline(null, timeoutMillis);
+    }
+
+    /**
+     * A deadline that ends with this one at the latest, and is cancelled together with it.
+     * Completed children should be {@link #detach() detached} so long-lived parents do not collect them.
+     *
+     * @param timeoutMillis 0 or less to only inherit this deadline.
+     */
+    public QueryDeadline child(long timeoutMillis) {
+        QueryDeadline child = new QueryDeadline(this, timeoutMillis);
+        onCancel(child.cancelWithParent);
+        return child;
+    }
+
+    public void detach() {
+        if (parent != null) {
+            parent.cancelCallbacks.remove(cancelWithParent);
+        }
+    }
+
+    public boolean hasLimit() {
+        return deadlineNanos != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return Milliseconds left, {@link Long#MAX_VALUE} without limit, 0 once passed.
+     */
+    public long remainingMillis() {
+        if (!hasLimit()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()), 0);
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    public String getCancelReason() {
+        return cancelReason;
+    }
+
+    /**
+     * @throws SQLTimeoutException if the deadline has passed or was cancelled, so no new work should start.
+     */
+    public void check() throws SQLTimeoutException {
+        if (!isCancelled() && hasLimit() && remainingMillis() == 0) {
+            cancel("Query deadline exceeded");
+        }
+        if (isCancelled()) {
+            throw new SQLTimeoutException(cancelReason);
+        }
+    }
+
+    /**
+     * Applies the remaining time as the statement's query timeout and registers it for cancellation
+     * until {@link #release(Statement)}.
+     */
+    public void apply(Statement statement) throws SQLException {
+        check();
+        if (hasLimit()) {
+            // JDBC timeouts are whole seconds, the watchdog cancels at the exact deadline
+            statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remainingMillis() + 999)));
+        }
+        runningStatements.add(statement);
+        if (isCancelled()) {
+            cancelStatement(statement); // Cancelled between check and registration
+        }
+    }
+
+    public void release(Statement statement) {
+        runningStatements.remove(statement);
+    }
+
+    /**
+     * Registers a callback run once when this deadline is cancelled, or immediately if it already is.
+     */
+    public void onCancel(Runnable callback) {
+        cancelCallbacks.add(callback);
+        if (isCancelled() && cancelCallbacks.remove(callback)) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Stops the work under this deadline: running statements are cancelled, derived deadlines too.
+     * Only the first reason is kept.
+     */
+    public void cancel(String reason) {
+        synchronized (this) {
+            if (cancelReason != null) {
+                return;
+            }
+            cancelReason = reason != null ? reason : "Query cancelled";
+        }
+        for (Statement statement : runningStatements) {
+            cancelStatement(statement);
+        }
+        for (Runnable callback : cancelCallbacks) {
+            if (cancelCallbacks.remove(callback)) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * Binds the deadline to the current thread for code that cannot receive it as a parameter (MyBatis plugins).
+     */
+    public static void bind(QueryDeadline deadline) {
+        CURRENT.set(deadline);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public static QueryDeadline current() {
+        return CURRENT.get();
+    }
+
+    private static void cancelStatement(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException | RuntimeException e) {
+            log.debug("Statement cancel failed: {}", e.getMessage()); // Statement may have completed concurrently
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.queryapi.service.execution;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Applies the thread's {@link QueryDeadline} to statements prepared by MyBatis: the remaining time
+ * becomes the query timeout and the statement can be cancelled while it runs.
+ */
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}),
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class})
+})
+public class QueryDeadlineInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        QueryDeadline deadline = QueryDeadline.current();
+        if (deadline == null) {
+            return invocation.proceed();
+        }
+        if ("prepare".equals(invocation.getMethod().getName())) {
+            Statement statement = (Statement) invocation.proceed();
+            try {
+                deadline.apply(statement); // Overrides the timeout MyBatis set from its own configuration
+            } catch (SQLException e) {
+                statement.close(); // MyBatis only closes statements it got back
+                throw e;
+            }
+            return statement;
+        }
+        Statement statement = (Statement) invocation.getArgs()[0];
+        try {
+            return invocation.proceed();
+        } finally {
+            deadline.release(statement);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.queryapi.service.execution;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancels deadlines when they pass. JDBC query timeouts only have second granularity and are not
+ * enforced by every driver while rows are fetched, so the watchdog stops statements at the exact
+ * deadline with {@link java.sql.Statement#cancel()}.
+ */
+@Component
+public class QueryDeadlineWatchdog {
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    public QueryDeadlineWatchdog() {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "query-deadline-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true); // Most deadlines are met, don't keep their tasks queued
+    }
+
+    /**
+     * Cancels the deadline when it passes, unless the returned watch is closed first.
+     */
+    public Watch watch(QueryDeadline deadline, String description) {
+        if (!deadline.hasLimit()) {
+            return Watch.NONE;
+        }
+        ScheduledFuture<?> task = scheduler.schedule(() -> deadline.cancel(description + " exceeded its deadline"),
+                deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        return () -> task.cancel(false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @FunctionalInterface
+    public interface Watch extends AutoCloseable {
+
+        Watch NONE = () -> { };
+
+        @Override
+        void close();
+    }
+}
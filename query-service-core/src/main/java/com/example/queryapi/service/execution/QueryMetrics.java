@@ -0,0 +1,340 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.common.enums.MetadataChangeType;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.event.DataSourceChangedEvent;
+import com.example.queryapi.service.event.SqlTemplateChangedEvent;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Meters of the query pipeline: {@code query.phase} timers per phase and {@code query.execution}
+ * timers per query, tagged datasource, sqlCode and status; connection pool timers fed by Hikari;
+ * batch executor saturation.
+ * <p>
+ * Tags have bounded cardinality: datasource and sqlCode values only come from existing datasources
+ * and registered templates (raw SQL is tagged {@link #RAW_SQL}), datasources beyond
+ * {@code maxDatasources} and datasource/sqlCode pairs beyond {@code maxSeries} are tagged
+ * {@link #OTHER}. Pool meters and gauges follow the same datasource limit. Only {@code query.execution}
+ * publishes histogram buckets, phase timers keep count, sum and max. Meters of deleted datasources and
+ * templates are removed.
+ * <p>
+ * Timers are created on first use and looked up by the datasource id and sqlCode strings afterwards.
+ */
+@Component
+@Slf4j
+public class QueryMetrics {
+
+    public static final String RAW_SQL = "raw_sql";
+    public static final String OTHER = "other";
+    private static final String[] POOL_METER_NAMES = {"query.datasource.pool.acquire", "query.datasource.pool.usage",
+            "query.datasource.pool.creation", "query.datasource.pool.timeouts"};
+
+    private final MeterRegistry meterRegistry;
+    private final QueryExecutionProperties.Metrics properties;
+    private final Duration[] buckets;
+    private final ConcurrentMap<String, DataSourceSeries> datasources = new ConcurrentHashMap<>();
+    private final DataSourceSeries otherDatasources;
+    private final AtomicInteger ownDatasources = new AtomicInteger();
+    private final AtomicInteger seriesCount = new AtomicInteger();
+    private final AtomicInteger batchWorkers = new AtomicInteger();
+    private final Timer batchQueueWait;
+    private final Counter batchRejections;
+
+    @Autowired
+    public QueryMetrics(QueryExecutionProperties queryExecutionProperties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.properties = queryExecutionProperties.getMetrics();
+        this.buckets = properties.getBucketsMillis().stream().map(Duration::ofMillis).toArray(Duration[]::new);
+        this.otherDatasources = new DataSourceSeries(OTHER);
+        Gauge.builder("query.batch.workers.active", batchWorkers, AtomicInteger::get)
+                .description("Batch workers running on the batch executor").register(meterRegistry);
+        this.batchQueueWait = Timer.builder("query.batch.executor.queue.wait").serviceLevelObjectives(buckets)
+                .description("Time batch workers waited for a batch executor thread").register(meterRegistry);
+        this.batchRejections = Counter.builder("query.batch.executor.rejections")
+                .description("Batch workers rejected because the batch executor was saturated").register(meterRegistry);
+    }
+
+    /**
+     * Records the phases and total time of the query on this thread and ends its timings.
+     */
+    public void record(QueryTimings timings) {
+        timings.finish();
+        if (!properties.isEnabled()) {
+            return;
+        }
+        QuerySeries series = series(timings.getDatasourceId(), timings.getSqlCode());
+        QueryTimings.Status status = timings.getStatus();
+        for (QueryTimings.Phase phase : QueryTimings.PHASES) {
+            long nanos = timings.get(phase);
+            if (nanos > 0) {
+                series.phase(status, phase).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        series.total(status).record(timings.elapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time to write the response of the query just recorded on this thread, as its serialization
+     * phase. The response may be written later and on another thread.
+     *
+     * @return Takes the write time in nanoseconds; null if metrics are disabled.
+     */
+    public LongConsumer serializationRecorder(QueryTimings timings) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        Timer timer = series(timings.getDatasourceId(), timings.getSqlCode()).phase(timings.getStatus(), QueryTimings.Phase.SERIALIZATION);
+        return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Whether the datasource has its own datasource tag, taking a free maxDatasources slot on first call.
+     * Gauges are only registered for these: unlike timers, gauges of several datasources cannot share {@link #OTHER}.
+     */
+    public boolean hasOwnTag(String datasourceId) {
+        return datasource(datasourceId) != otherDatasources;
+    }
+
+    /**
+     * Hikari metrics for one pool of a datasource, also feeding the pool sizer and the connection acquire
+     * phase of the query on the acquiring thread.
+     *
+     * @param pool          {@code primary} or {@code replica-<n>}.
+     * @param sizingTracker Null if the pool is not adaptively sized.
+     */
+    public MetricsTrackerFactory poolTrackerFactory(String datasourceId, String pool, PoolSizingTracker sizingTracker) {
+        return (poolName, poolStats) -> new PoolMetricsTracker(datasourceId, pool, sizingTracker);
+    }
+
+    /**
+     * @param submittedNanos {@link System#nanoTime()} when the worker was handed to the batch executor.
+     */
+    public void batchWorkerStarted(long submittedNanos) {
+        batchQueueWait.record(System.nanoTime() - submittedNanos, TimeUnit.NANOSECONDS);
+        batchWorkers.incrementAndGet();
+    }
+
+    public void batchWorkerFinished() {
+        batchWorkers.decrementAndGet();
+    }
+
+    public void batchWorkerRejected() {
+        batchRejections.increment();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDataSourceChanged(DataSourceChangedEvent event) {
+        if (event.getChangeType() != MetadataChangeType.DELETE) {
+            return;
+        }
+        DataSourceSeries removed = datasources.remove(event.getDatasourceId());
+        if (removed != null && removed != otherDatasources) {
+            ownDatasources.decrementAndGet();
+            removed.templates.values().stream().distinct().filter(series -> series != removed.other).forEach(this::remove);
+            if (removed.other != null) {
+                removed.other.forEachMeter(meterRegistry::remove);
+            }
+        }
+        for (String name : POOL_METER_NAMES) {
+            meterRegistry.find(name).tag("datasource", event.getDatasourceId()).meters().forEach(meterRegistry::remove);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSqlTemplateChanged(SqlTemplateChangedEvent event) {
+        if (event.getChangeType() != MetadataChangeType.DELETE) {
+            return;
+        }
+        List<DataSourceSeries> all = new ArrayList<>(datasources.values());
+        all.add(otherDatasources);
+        for (DataSourceSeries datasource : all) {
+            QuerySeries removed = datasource.templates.remove(event.getSqlCode());
+            if (removed != null && removed != datasource.other) {
+                remove(removed);
+            }
+        }
+    }
+
+    private DataSourceSeries datasource(String datasourceId) {
+        DataSourceSeries datasource = datasources.get(datasourceId);
+        if (datasource == null) {
+            datasource = datasources.computeIfAbsent(datasourceId, id -> {
+                if (ownDatasources.incrementAndGet() <= properties.getMaxDatasources()) {
+                    return new DataSourceSeries(id);
+                }
+                ownDatasources.decrementAndGet();
+                return otherDatasources;
+            });
+        }
+        return datasource;
+    }
+
+    private QuerySeries series(String datasourceId, String sqlCode) {
+        DataSourceSeries datasource = datasource(datasourceId);
+        QuerySeries series = datasource.templates.get(sqlCode);
+        if (series == null) {
+            DataSourceSeries owner = datasource;
+            series = datasource.templates.computeIfAbsent(sqlCode, code -> {
+                if (seriesCount.incrementAndGet() <= properties.getMaxSeries()) {
+                    return new QuerySeries(owner.tag, code);
+                }
+                seriesCount.decrementAndGet();
+                return owner.other();
+            });
+        }
+        return series;
+    }
+
+    /**
+     * Removes the meters of a series counted against maxSeries.
+     */
+    private void remove(QuerySeries series) {
+        seriesCount.decrementAndGet();
+        series.forEachMeter(meterRegistry::remove);
+    }
+
+    private final class DataSourceSeries {
+        private final String tag;
+        private final ConcurrentMap<String, QuerySeries> templates = new ConcurrentHashMap<>(); // Over the limit, codes map to other
+        private volatile QuerySeries other;
+
+        private DataSourceSeries(String tag) {
+            this.tag = tag;
+        }
+
+        private synchronized QuerySeries other() {
+            if (other == null) {
+                other = new QuerySeries(tag, OTHER); // One per datasource tag, not counted against maxSeries
+            }
+            return other;
+        }
+    }
+
+    /**
+     * Timers of one datasource/sqlCode pair, created per status and phase on first use.
+     */
+    private final class QuerySeries {
+        private final String datasourceTag;
+        private final String sqlCodeTag;
+        private final AtomicReferenceArray<Timer> phases = new AtomicReferenceArray<>(QueryTimings.Status.COUNT * QueryTimings.Phase.COUNT);
+        private final AtomicReferenceArray<Timer> totals = new AtomicReferenceArray<>(QueryTimings.Status.COUNT);
+
+        private QuerySeries(String datasourceTag, String sqlCodeTag) {
+            this.datasourceTag = datasourceTag;
+            this.sqlCodeTag = sqlCodeTag;
+        }
+
+        private Timer phase(QueryTimings.Status status, QueryTimings.Phase phase) {
+            int index = status.ordinal() * QueryTimings.Phase.COUNT + phase.ordinal();
+            Timer timer = phases.get(index);
+            if (timer == null) {
+                timer = Timer.builder("query.phase")
+                        .tags("datasource", datasourceTag, "sqlCode", sqlCodeTag, "phase", phase.getTag(), "status", status.getTag())
+                        .description("Time queries spent in one phase of the pipeline")
+                        .register(meterRegistry);
+                phases.set(index, timer); // Racing registrations get the same timer from the registry
+            }
+            return timer;
+        }
+
+        private Timer total(QueryTimings.Status status) {
+            Timer timer = totals.get(status.ordinal());
+            if (timer == null) {
+                timer = Timer.builder("query.execution")
+                        .tags("datasource", datasourceTag, "sqlCode", sqlCodeTag, "status", status.getTag())
+                        .serviceLevelObjectives(buckets)
+                        .description("Time from receiving a query to its response")
+                        .register(meterRegistry);
+                totals.set(status.ordinal(), timer);
+            }
+            return timer;
+        }
+
+        private void forEachMeter(Consumer<Meter> action) {
+            for (int i = 0; i < phases.length(); i++) {
+                if (phases.get(i) != null) {
+                    action.accept(phases.get(i));
+                }
+            }
+            for (int i = 0; i < totals.length(); i++) {
+                if (totals.get(i) != null) {
+                    action.accept(totals.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Hikari reports connection acquire, usage and creation of one pool here. The meters are shared
+     * with the pool that replaces it on a configuration change, so closing the pool keeps them;
+     * they are removed with the datasource. Datasources beyond maxDatasources share the {@link #OTHER} meters.
+     */
+    private final class PoolMetricsTracker implements IMetricsTracker {
+        private final PoolSizingTracker sizingTracker;
+        private final Timer acquire;
+        private final Timer usage;
+        private final Timer creation;
+        private final Counter timeouts;
+
+        private PoolMetricsTracker(String datasourceId, String pool, PoolSizingTracker sizingTracker) {
+            this.sizingTracker = sizingTracker;
+            String datasourceTag = datasource(datasourceId).tag;
+            this.acquire = Timer.builder(POOL_METER_NAMES[0]).tags("datasource", datasourceTag, "pool", pool)
+                    .description("Time to get a connection from the pool").register(meterRegistry);
+            this.usage = Timer.builder(POOL_METER_NAMES[1]).tags("datasource", datasourceTag, "pool", pool)
+                    .description("Time connections were held before being returned").register(meterRegistry);
+            this.creation = Timer.builder(POOL_METER_NAMES[2]).tags("datasource", datasourceTag, "pool", pool)
+                    .description("Time to open a new physical connection").register(meterRegistry);
+            this.timeouts = Counter.builder(POOL_METER_NAMES[3]).tags("datasource", datasourceTag, "pool", pool)
+                    .description("Connection requests that timed out").register(meterRegistry);
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquire.record(elapsedAcquiredNanos, TimeUnit.NANOSECONDS);
+            QueryTimings.addCurrent(QueryTimings.Phase.CONNECTION_ACQUIRE, elapsedAcquiredNanos); // Called on the acquiring thread
+            if (sizingTracker != null) {
+                sizingTracker.recordConnectionAcquiredNanos(elapsedAcquiredNanos);
+            }
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usage.record(elapsedBorrowedMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            creation.record(connectionCreatedMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+            if (sizingTracker != null) {
+                sizingTracker.recordConnectionTimeout();
+            }
+        }
+    }
+}
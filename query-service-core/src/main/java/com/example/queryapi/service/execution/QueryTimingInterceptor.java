@@ -0,0 +1,44 @@
+package com.example.queryapi.service.execution;
+
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.sql.Statement;
+
+/**
+ * Splits the time of statements run by MyBatis into the execute and row mapping phases of the
+ * thread's {@link QueryTimings}: mapping is {@link ResultSetHandler#handleResultSets(Statement)},
+ * which also fetches the rows, execute the rest of the statement's query.
+ */
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+        @Signature(type = ResultSetHandler.class, method = "handleResultSets", args = {Statement.class})
+})
+public class QueryTimingInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        QueryTimings timings = QueryTimings.current();
+        if (timings == null) {
+            return invocation.proceed();
+        }
+        boolean mapping = invocation.getTarget() instanceof ResultSetHandler;
+        long mappingBefore = timings.get(QueryTimings.Phase.ROW_MAPPING);
+        long started = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            if (mapping) {
+                timings.add(QueryTimings.Phase.ROW_MAPPING, elapsed);
+            } else {
+                timings.add(QueryTimings.Phase.EXECUTE, elapsed - (timings.get(QueryTimings.Phase.ROW_MAPPING) - mappingBefore));
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.queryapi.service.execution;
+
+import java.util.Arrays;
+
+/**
+ * Time one query spends in each phase of the pipeline, recorded as {@link QueryMetrics} timers when
+ * the query ends.
+ * <p>
+ * One instance per thread, reset at the start of each query.
+ * Code below the service (the JDBC engine, MyBatis plugins, Hikari's metrics tracker) adds to the
+ * thread's timings through the static methods; outside a query they do nothing.
+ */
+public final class QueryTimings {
+
+    public static final String UNKNOWN = "unknown"; // Tag until the datasource or template is resolved
+
+    static final Phase[] PHASES = Phase.values(); // values() copies the array on every call
+    private static final ThreadLocal<QueryTimings> CURRENT = new ThreadLocal<>();
+
+    private final long[] nanos = new long[Phase.COUNT];
+    private boolean active;
+    private long startNanos;
+    private String datasourceId;
+    private String sqlCode;
+    private Status status;
+
+    private QueryTimings() {
+    }
+
+    public enum Phase {
+        TEMPLATE_LOOKUP("template_lookup"),
+        CONNECTION_ACQUIRE("connection_acquire"),
+        EXECUTE("execute"),
+        ROW_MAPPING("row_mapping"),
+        SERIALIZATION("serialization");
+
+        static final int COUNT = values().length;
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    public enum Status {
+        SUCCESS("success"),
+        ERROR("error"),
+        TIMEOUT("timeout"), // Deadline passed or request cancelled
+        REJECTED("rejected"); // Datasource queue or result memory budget full
+
+        static final int COUNT = values().length;
+
+        private final String tag;
+
+        Status(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Resets the thread's timings for a new query.
+     */
+    public static QueryTimings start() {
+        QueryTimings timings = CURRENT.get();
+        if (timings == null) {
+            timings = new QueryTimings();
+            CURRENT.set(timings);
+        }
+        Arrays.fill(timings.nanos, 0);
+        timings.active = true;
+        timings.startNanos = System.nanoTime();
+        timings.datasourceId = UNKNOWN;
+        timings.sqlCode = UNKNOWN;
+        timings.status = Status.ERROR;
+        return timings;
+    }
+
+    /**
+     * The timings of the query running on this thread, or null.
+     */
+    public static QueryTimings current() {
+        QueryTimings timings = CURRENT.get();
+        return timings != null && timings.active ? timings : null;
+    }
+
+    /**
+     * Adds to a phase of the query running on this thread, if any.
+     */
+    public static void addCurrent(Phase phase, long elapsedNanos) {
+        QueryTimings timings = CURRENT.get();
+        if (timings != null && timings.active) {
+            timings.nanos[phase.ordinal()] += elapsedNanos;
+        }
+    }
+
+    public void add(Phase phase, long elapsedNanos) {
+        nanos[phase.ordinal()] += elapsedNanos;
+    }
+
+    long get(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @param datasourceId Only ids of existing datasources, it becomes a tag value.
+     */
+    public void setDatasourceId(String datasourceId) {
+        this.datasourceId = datasourceId;
+    }
+
+    String getDatasourceId() {
+        return datasourceId;
+    }
+
+    /**
+     * @param sqlCode Only codes of registered templates (or a constant for raw SQL), it becomes a tag value.
+     */
+    public void setSqlCode(String sqlCode) {
+        this.sqlCode = sqlCode;
+    }
+
+    String getSqlCode() {
+        return sqlCode;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Ends the query; its values stay readable until the thread starts the next one.
+     */
+    void finish() {
+        active = false;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the read replicas of the open datasource pools in or out of rotation. Every check interval each
+ * replica's replication lag is queried and its error rate since the last check is computed; a replica
+ * over either limit, or whose lag cannot be read, serves no reads until a later check finds it healthy.
+ * New replicas serve no reads until their first check.
+ * <p>
+ * Lag is read with the replica's own lagQuery, else the database type's default (MySQL
+ * {@code SHOW REPLICA STATUS}, PostgreSQL replay delay). Other database types are only checked for connectivity.
+ */
+@Slf4j
+public class ReplicaMonitor {
+
+    private static final String MYSQL_LAG_QUERY = "SHOW REPLICA STATUS"; // MySQL 8.0.22+, older servers set "SHOW SLAVE STATUS" as lagQuery
+    private static final String POSTGRESQL_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END"; // An idle primary is not lag
+    private static final List<String> LAG_COLUMNS = List.of("Seconds_Behind_Source", "Seconds_Behind_Master");
+
+    private final QueryExecutionProperties.Replicas properties;
+    private final Supplier<List<DataSourceExecutionContext>> contexts;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * @param contexts The open execution contexts.
+     */
+    public ReplicaMonitor(QueryExecutionProperties.Replicas properties, Supplier<List<DataSourceExecutionContext>> contexts) {
+        this.properties = properties;
+        this.contexts = contexts;
+        long interval = Math.max(properties.getCheckIntervalMillis(), 500);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "datasource-replica-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::checkSafely, 0, interval, TimeUnit.MILLISECONDS); // Replicas start out of rotation
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void checkSafely() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            log.warn("Replica check failed: {}", e.getMessage(), e); // Keep the schedule alive
+        }
+    }
+
+    void check() {
+        for (DataSourceExecutionContext context : contexts.get()) {
+            if (context.isRetired()) {
+                continue;
+            }
+            for (ReplicaSet.Replica replica : context.getReplicas().getReplicas()) {
+                check(context, replica);
+            }
+        }
+    }
+
+    private void check(DataSourceExecutionContext context, ReplicaSet.Replica replica) {
+        long requests = replica.drainRequests();
+        long errors = replica.drainErrors();
+        String reason = null;
+        try {
+            double lagSeconds = measureLag(context.getDbType(), replica);
+            replica.setLagSeconds(lagSeconds);
+            if (Double.isInfinite(lagSeconds)) {
+                reason = "replication is not running";
+            } else if (lagSeconds > properties.getMaxLagSeconds()) {
+                reason = String.format("replication lag %.1f s", lagSeconds);
+            }
+        } catch (SQLException e) {
+            reason = "lag check failed: " + e.getMessage();
+        }
+        if (reason == null && requests >= properties.getMinRequests() && (double) errors / requests > properties.getMaxErrorRate()) {
+            reason = errors + " of " + requests + " queries failed";
+        }
+        boolean wasInRotation = replica.isInRotation();
+        boolean firstCheck = ReplicaSet.Replica.NOT_CHECKED.equals(replica.getOutOfRotationReason());
+        replica.setOutOfRotationReason(reason);
+        if ((wasInRotation || firstCheck) && reason != null) {
+            log.warn("Replica {} of datasource {} {} rotation: {}", replica.getName(), context.getDatasourceId(),
+                    firstCheck ? "not taken into" : "taken out of", reason);
+        } else if (!wasInRotation && reason == null) {
+            log.info("Replica {} of datasource {} {} rotation", replica.getName(), context.getDatasourceId(), firstCheck ? "taken into" : "back in");
+        }
+    }
+
+    /**
+     * @return Seconds the replica is behind, 0 if the query returns no row (not a replica of an asynchronous
+     * primary), infinite if it reports no lag (replication stopped).
+     */
+    private double measureLag(String dbType, ReplicaSet.Replica replica) throws SQLException {
+        String lagQuery = replica.getLagQuery() != null ? replica.getLagQuery() : defaultLagQuery(dbType);
+        int timeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(properties.getCheckIntervalMillis()));
+        try (Connection connection = replica.getDataSource().getConnection()) {
+            if (lagQuery == null) {
+                if (!connection.isValid(timeoutSeconds)) {
+                    throw new SQLException("Connection validation failed");
+                }
+                return 0;
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(timeoutSeconds);
+                try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                    if (!resultSet.next()) {
+                        return 0;
+                    }
+                    double lag = resultSet.getDouble(lagColumn(resultSet.getMetaData()));
+                    return resultSet.wasNull() ? Double.POSITIVE_INFINITY : lag;
+                }
+            }
+        }
+    }
+
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int column = 1; column <= metaData.getColumnCount(); column++) {
+            for (String name : LAG_COLUMNS) {
+                if (name.equalsIgnoreCase(metaData.getColumnLabel(column))) {
+                    return column;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static String defaultLagQuery(String dbType) {
+        if (dbType == null) {
+            return null;
+        }
+        switch (dbType.replace(" ", "").toLowerCase()) {
+            case "mysql":
+                return MYSQL_LAG_QUERY;
+            case "postgresql":
+                return POSTGRESQL_LAG_QUERY;
+            default:
+                return null;
+        }
+    }
+}
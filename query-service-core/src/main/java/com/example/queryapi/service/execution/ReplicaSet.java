@@ -0,0 +1,134 @@
+package com.example.queryapi.service.execution;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The read replicas of a datasource, each with its own pool. Read-only queries run on the replica in
+ * rotation with the fewest running queries, ties are spread round-robin. A replica enters the rotation after
+ * its first successful lag check; {@link ReplicaMonitor} takes it out again while it lags or fails. With none
+ * in rotation reads fall back to the primary.
+ */
+public class ReplicaSet {
+
+    public static final ReplicaSet NONE = new ReplicaSet(List.of());
+
+    @Getter
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger(); // Where the scan starts
+
+    public ReplicaSet(List<Replica> replicas) {
+        this.replicas = List.copyOf(replicas);
+    }
+
+    /**
+     * @return The replica with the fewest running queries among those in rotation, or null to use the primary.
+     */
+    public Replica choose() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica chosen = null;
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((start + i) % size);
+            if (candidate.inRotation && (chosen == null || candidate.outstanding.get() < chosen.outstanding.get())) {
+                chosen = candidate;
+            }
+        }
+        return chosen;
+    }
+
+    public boolean isEmpty() {
+        return replicas.isEmpty();
+    }
+
+    /**
+     * maximumPoolSize summed over the replica pools.
+     */
+    public int getMaximumPoolSize() {
+        return replicas.stream().mapToInt(replica -> replica.dataSource.getMaximumPoolSize()).sum();
+    }
+
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+
+    /**
+     * One replica endpoint. Queries call {@link #begin()} before and {@link #end()} after running on it.
+     */
+    public static class Replica {
+
+        static final String NOT_CHECKED = "lag not checked yet";
+
+        @Getter
+        private final String name; // Pool name, for logs
+        @Getter
+        private final HikariDataSource dataSource;
+        @Getter
+        private final String lagQuery; // null for the database type's default
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final LongAdder requests = new LongAdder(); // Since the last check
+        private final LongAdder errors = new LongAdder();
+        private volatile boolean inRotation = false; // Until the first lag check passes, the replica may be far behind
+        @Getter
+        private volatile String outOfRotationReason = NOT_CHECKED;
+        @Getter
+        private volatile double lagSeconds;
+
+        public Replica(String name, HikariDataSource dataSource, String lagQuery) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.lagQuery = lagQuery;
+        }
+
+        public void begin() {
+            outstanding.incrementAndGet();
+            requests.increment();
+        }
+
+        public void end() {
+            outstanding.decrementAndGet();
+        }
+
+        /**
+         * Counts a query that failed on the replica (not one cancelled by its deadline).
+         */
+        public void recordError() {
+            errors.increment();
+        }
+
+        public boolean isInRotation() {
+            return inRotation;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        long drainRequests() {
+            return requests.sumThenReset();
+        }
+
+        long drainErrors() {
+            return errors.sumThenReset();
+        }
+
+        void setLagSeconds(double lagSeconds) {
+            this.lagSeconds = lagSeconds;
+        }
+
+        /**
+         * @param reason Why the replica leaves the rotation, null to put it (back) in.
+         */
+        void setOutOfRotationReason(String reason) {
+            this.outOfRotationReason = reason;
+            this.inRotation = reason == null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.queryapi.service.execution;
+
+import lombok.Getter;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Column labels and JDBC types of a result set, resolved once per query.
+ */
+@Getter
+public final class ResultColumns {
+
+    private final String[] labels;
+    private final int[] jdbcTypes;
+    private final String[] typeNames;
+    private final int[] precisions;
+    private final int[] scales;
+
+    private ResultColumns(String[] labels, int[] jdbcTypes, String[] typeNames, int[] precisions, int[] scales) {
+        this.labels = labels;
+        this.jdbcTypes = jdbcTypes;
+        this.typeNames = typeNames;
+        this.precisions = precisions;
+        this.scales = scales;
+    }
+
+    public static ResultColumns from(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        int[] jdbcTypes = new int[columnCount];
+        String[] typeNames = new String[columnCount];
+        int[] precisions = new int[columnCount];
+        int[] scales = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+            jdbcTypes[i] = metaData.getColumnType(i + 1);
+            typeNames[i] = metaData.getColumnTypeName(i + 1);
+            precisions[i] = metaData.getPrecision(i + 1);
+            scales[i] = metaData.getScale(i + 1);
+        }
+        return new ResultColumns(labels, jdbcTypes, typeNames, precisions, scales);
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Reads the value of a zero-based column from the current row, using standard JDBC-to-Java type mapping.
+     */
+    public Object getValue(ResultSet rs, int columnIndex) throws SQLException {
+        return JdbcUtils.getResultSetValue(rs, columnIndex + 1);
+    }
+}
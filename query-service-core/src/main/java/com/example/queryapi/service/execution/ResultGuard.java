@@ -0,0 +1,97 @@
+package com.example.queryapi.service.execution;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Size limits and memory accounting of one query result. Rows are admitted one at a time while the
+ * result is read; the first row over a limit truncates the result, and reading should stop there.
+ * Not thread-safe, a guard belongs to one query. Closing it returns its reservation to the budget,
+ * unless the reservation was handed over to the response holding the result.
+ */
+public final class ResultGuard implements AutoCloseable {
+
+    private static final long CHUNK_BYTES = 256 * 1024; // Reservation granularity, keeps the budget lock cold
+
+    private final ResultMemoryBudget budget; // null if the result is not accounted
+    private final long maxRows;
+    private final long maxBytes;
+    private long rows;
+    private long bytes;
+    private long reservedBytes;
+    private boolean truncated;
+
+    ResultGuard(ResultMemoryBudget budget, long maxRows, long maxBytes) {
+        this.budget = budget;
+        this.maxRows = maxRows > 0 ? maxRows : Long.MAX_VALUE;
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        if (budget != null) {
+            budget.reserve(CHUNK_BYTES); // Admission: new queries wait here while the budget is used up
+            reservedBytes = CHUNK_BYTES;
+        }
+    }
+
+    /**
+     * A guard without limits or accounting.
+     */
+    public static ResultGuard unlimited() {
+        return new ResultGuard(null, 0, 0);
+    }
+
+    /**
+     * @param rowBytes Estimated size of the row, see {@link ResultSizeEstimator}.
+     * @return false if the row is over a limit; the result is then truncated before this row.
+     */
+    public boolean admit(long rowBytes) {
+        if (truncated || rows >= maxRows || bytes + rowBytes > maxBytes) {
+            truncated = true;
+            return false;
+        }
+        if (budget != null && bytes + rowBytes > reservedBytes) {
+            long chunk = Math.max(CHUNK_BYTES, bytes + rowBytes - reservedBytes);
+            budget.reserve(chunk);
+            reservedBytes += chunk;
+        }
+        rows++;
+        bytes += rowBytes;
+        return true;
+    }
+
+    /**
+     * Row limit to hand to the driver (one more than allowed, to detect truncation), 0 for none.
+     */
+    public int getDriverMaxRows() {
+        return maxRows < Integer.MAX_VALUE ? (int) maxRows + 1 : 0;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Hands the reservation over to the result, which stays on the heap until its response has been written.
+     * Closing the guard then no longer releases it; running the returned action does, once.
+     *
+     * @return null if nothing is reserved.
+     */
+    public Runnable handOver() {
+        if (budget == null || reservedBytes == 0) {
+            return null;
+        }
+        long bytes = reservedBytes;
+        reservedBytes = 0;
+        AtomicBoolean released = new AtomicBoolean(); // Released from whichever thread finishes the response
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                budget.release(bytes);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (budget != null) {
+            budget.release(reservedBytes);
+            reservedBytes = 0;
+        }
+    }
+}
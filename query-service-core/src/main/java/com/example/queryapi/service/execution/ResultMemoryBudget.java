@@ -0,0 +1,100 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.common.exception.ResourceExhaustedException;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide budget for the heap held by query results while they are read and assembled.
+ * <p>
+ * Each query takes a {@link ResultGuard} before it runs and reserves budget in chunks as its rows
+ * arrive. When the budget is used up, queries wait for others to release theirs and fail with
+ * {@link ResourceExhaustedException} once the configured wait has passed, so a burst of large
+ * results degrades into 503s instead of an OutOfMemoryError.
+ */
+@Component
+@Slf4j
+public class ResultMemoryBudget {
+
+    private final long maxBytes;
+    private final long waitMillis;
+    private final ReentrantLock lock = new ReentrantLock(); // Not synchronized: waiting must not pin virtual threads
+    private final Condition released = lock.newCondition();
+    private long reservedBytes;
+
+    @Autowired
+    public ResultMemoryBudget(QueryExecutionProperties queryExecutionProperties, MeterRegistry meterRegistry) {
+        QueryExecutionProperties.ResultLimits limits = queryExecutionProperties.getResultLimits();
+        this.maxBytes = limits.getMemoryBudgetBytes() > 0 ? limits.getMemoryBudgetBytes() : Runtime.getRuntime().maxMemory() / 4;
+        this.waitMillis = limits.getBudgetWaitMillis();
+        Gauge.builder("query.result.memory.reserved", this, ResultMemoryBudget::getReservedBytes)
+                .baseUnit("bytes").description("Estimated heap reserved by in-flight query results").register(meterRegistry);
+        Gauge.builder("query.result.memory.max", this, budget -> budget.maxBytes)
+                .baseUnit("bytes").description("Budget for in-flight query results").register(meterRegistry);
+        log.info("Result memory budget: {} bytes", maxBytes);
+    }
+
+    /**
+     * Opens the accounting of one result and reserves its first chunk.
+     *
+     * @param maxRows  Rows after which the result is truncated, 0 or less for no limit.
+     * @param maxBytes Estimated bytes after which the result is truncated, 0 or less for no limit.
+     * @throws ResourceExhaustedException if no budget became available in time.
+     */
+    public ResultGuard open(long maxRows, long maxBytes) {
+        return new ResultGuard(this, maxRows, maxBytes);
+    }
+
+    void reserve(long bytes) {
+        if (bytes > maxBytes) {
+            throw new ResourceExhaustedException("Query result needs more memory than the whole result budget (" + maxBytes + " bytes)");
+        }
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        lock.lock();
+        try {
+            while (reservedBytes + bytes > maxBytes) {
+                if (remainingNanos <= 0) {
+                    throw new ResourceExhaustedException("Result memory budget exhausted (" + reservedBytes + " of "
+                            + maxBytes + " bytes in use), retry later");
+                }
+                remainingNanos = released.awaitNanos(remainingNanos);
+            }
+            reservedBytes += bytes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceExhaustedException("Interrupted while waiting for result memory budget", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            reservedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getReservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.queryapi.service.execution;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Receives rows one at a time while the driver is still fetching, so results can be written
+ * out without being materialized in memory first.
+ */
+public interface ResultRowHandler {
+
+    /**
+     * Called once, before the first row, with the result set columns.
+     */
+    void start(ResultColumns columns) throws IOException;
+
+    /**
+     * Called for every row. The result set is positioned on the row and must not be advanced by the handler.
+     */
+    void row(ResultSet rs) throws SQLException, IOException;
+}
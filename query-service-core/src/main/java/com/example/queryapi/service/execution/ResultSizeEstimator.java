@@ -0,0 +1,58 @@
+package com.example.queryapi.service.execution;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Rough estimate of the heap held by query results. Used to weigh cached results and to enforce
+ * result size limits without serializing the data; it deliberately errs on the high side.
+ */
+public final class ResultSizeEstimator {
+
+    private static final long OBJECT_OVERHEAD = 16;
+    private static final long REFERENCE_SIZE = 8;
+    private static final long MAP_ENTRY_OVERHEAD = 40;
+
+    private ResultSizeEstimator() {
+    }
+
+    public static long estimateRows(Collection<Map<String, Object>> rows) {
+        long size = OBJECT_OVERHEAD;
+        for (Map<String, Object> row : rows) {
+            size += estimateRow(row);
+        }
+        return size;
+    }
+
+    public static long estimateRow(Map<String, Object> row) {
+        long size = OBJECT_OVERHEAD + REFERENCE_SIZE;
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            // Column labels are shared between rows, only the entry itself is counted
+            size += MAP_ENTRY_OVERHEAD + estimateValue(entry.getValue());
+        }
+        return size;
+    }
+
+    public static long estimateRow(Object[] row) {
+        long size = OBJECT_OVERHEAD + REFERENCE_SIZE * row.length;
+        for (Object value : row) {
+            size += estimateValue(value);
+        }
+        return size;
+    }
+
+    public static long estimateValue(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof CharSequence) {
+            return OBJECT_OVERHEAD + 24 + 2L * ((CharSequence) value).length();
+        } else if (value instanceof byte[]) {
+            return OBJECT_OVERHEAD + ((byte[]) value).length;
+        } else if (value instanceof BigDecimal) {
+            return OBJECT_OVERHEAD + 32 + ((BigDecimal) value).precision() / 2;
+        } else {
+            return OBJECT_OVERHEAD + 16; // Boxed numbers, booleans and date/time values
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.queryapi.service.execution;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps a result set to one ordered map per row. Column labels are resolved once per result set
+ * rather than once per row. With a {@link ResultGuard}, reading stops at the first row over its limits.
+ */
+public class RowMapListExtractor implements ResultSetExtractor<List<Map<String, Object>>> {
+
+    public static final RowMapListExtractor INSTANCE = new RowMapListExtractor(null);
+
+    private final ResultGuard guard; // null to read all rows
+
+    public RowMapListExtractor(ResultGuard guard) {
+        this.guard = guard;
+    }
+
+    @Override
+    public List<Map<String, Object>> extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        while (rs.next()) {
+            Map<String, Object> row = new LinkedHashMap<>(columnCount * 4 / 3 + 1);
+            for (int i = 0; i < columnCount; i++) {
+                row.put(labels[i], JdbcUtils.getResultSetValue(rs, i + 1));
+            }
+            if (guard != null && !guard.admit(ResultSizeEstimator.estimateRow(row))) {
+                break;
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.queryapi.service.execution;
+
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MyBatis {@link Configuration} whose mapped statements can be registered and removed at runtime.
+ * <p>
+ * The stock configuration keeps statements in a non thread-safe map that is only meant to be
+ * populated at startup. Template statements are registered lazily while queries are running,
+ * so they are kept in a concurrent map instead.
+ */
+class StatementRegistryConfiguration extends Configuration {
+
+    private final Map<String, MappedStatement> runtimeStatements = new ConcurrentHashMap<>();
+
+    StatementRegistryConfiguration(Environment environment) {
+        super(environment);
+    }
+
+    @Override
+    public void addMappedStatement(MappedStatement ms) {
+        runtimeStatements.put(ms.getId(), ms);
+    }
+
+    void removeMappedStatement(String id) {
+        runtimeStatements.remove(id);
+    }
+
+    @Override
+    public MappedStatement getMappedStatement(String id, boolean validateIncompleteStatements) {
+        MappedStatement statement = runtimeStatements.get(id);
+        if (statement == null) {
+            throw new IllegalArgumentException("Mapped Statements collection does not contain value for " + id);
+        }
+        return statement;
+    }
+
+    @Override
+    public boolean hasStatement(String statementName, boolean validateIncompleteStatements) {
+        return runtimeStatements.containsKey(statementName);
+    }
+
+    @Override
+    public Collection<MappedStatement> getMappedStatements() {
+        return runtimeStatements.values();
+    }
+
+    @Override
+    public Collection<String> getMappedStatementNames() {
+        return runtimeStatements.keySet();
+    }
+}
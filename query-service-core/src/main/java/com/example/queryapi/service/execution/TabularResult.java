@@ -0,0 +1,39 @@
+package com.example.queryapi.service.execution;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fully read result held column-wise: the column metadata once, then one positional value array per row.
+ */
+@Getter
+public final class TabularResult {
+
+    private final ResultColumns columns;
+    private final List<Object[]> rows;
+
+    public TabularResult(ResultColumns columns, List<Object[]> rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Converts to one ordered map per row, for the {@code ROWS} response format.
+     */
+    public List<Map<String, Object>> toRowMaps() {
+        String[] labels = columns.getLabels();
+        List<Map<String, Object>> maps = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Map<String, Object> map = new LinkedHashMap<>(labels.length * 4 / 3 + 1);
+            for (int i = 0; i < labels.length; i++) {
+                map.put(labels[i], row[i]);
+            }
+            maps.add(map);
+        }
+        return maps;
+    }
+}
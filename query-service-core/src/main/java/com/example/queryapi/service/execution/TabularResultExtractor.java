@@ -0,0 +1,41 @@
+package com.example.queryapi.service.execution;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a result set into a {@link TabularResult}, one value array per row and no per-row maps.
+ * With a {@link ResultGuard}, reading stops at the first row over its limits.
+ */
+public class TabularResultExtractor implements ResultSetExtractor<TabularResult> {
+
+    public static final TabularResultExtractor INSTANCE = new TabularResultExtractor(null);
+
+    private final ResultGuard guard; // null to read all rows
+
+    public TabularResultExtractor(ResultGuard guard) {
+        this.guard = guard;
+    }
+
+    @Override
+    public TabularResult extractData(ResultSet rs) throws SQLException {
+        ResultColumns columns = ResultColumns.from(rs.getMetaData());
+        int columnCount = columns.size();
+        List<Object[]> rows = new ArrayList<>();
+        while (rs.next()) {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = columns.getValue(rs, i);
+            }
+            if (guard != null && !guard.admit(ResultSizeEstimator.estimateRow(row))) {
+                break;
+            }
+            rows.add(row);
+        }
+        return new TabularResult(columns, rows);
+    }
+}
@@ -1,23 +1,59 @@
 package com.example.queryapi.service.impl;
 
 import com.example.queryapi.common.enums.DataSourceType;
+import com.example.queryapi.common.enums.MetadataChangeType;
+import com.example.queryapi.common.exception.InvalidInputException;
 import com.example.queryapi.common.exception.ResourceNotFoundException;
 import com.example.queryapi.dao.jpa.entity.DataSourceConfigEntity;
+import com.example.queryapi.dao.jpa.projection.DataSourceSummary;
 import com.example.queryapi.dao.jpa.repository.DataSourceConfigRepository;
 import com.example.queryapi.dto.DataSourceDto;
+import com.example.queryapi.dto.DataSourcePageDto;
+import com.example.queryapi.dto.DataSourceSummaryDto;
+import com.example.queryapi.dto.ReplicaEndpointDto;
 import com.example.queryapi.service.DataSourceManagementService;
+import com.example.queryapi.service.cache.DataSourceMetadataCache;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.credentials.ConnectionDetails;
+import com.example.queryapi.service.credentials.ConnectionDetailsResolver;
+import com.example.queryapi.service.event.ConnectionDetailsRotatedEvent;
+import com.example.queryapi.service.event.DataSourceChangedEvent;
+import com.example.queryapi.service.event.MetadataResyncEvent;
+import com.example.queryapi.service.event.SqlTemplateChangedEvent;
+import com.example.queryapi.service.execution.AdaptivePoolSizer;
+import com.example.queryapi.service.execution.ConnectionPoolSettings;
+import com.example.queryapi.service.execution.DataSourceBulkhead;
+import com.example.queryapi.service.execution.DataSourceExecutionContext;
+import com.example.queryapi.service.execution.DataSourceLifecycleManager;
+import com.example.queryapi.service.execution.PoolSizingTracker;
+import com.example.queryapi.service.execution.QueryMetrics;
+import com.example.queryapi.service.execution.ReplicaMonitor;
+import com.example.queryapi.service.execution.ReplicaSet;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -28,16 +64,51 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DataSourceManagementServiceImpl implements DataSourceManagementService {
 
+    private static final TypeReference<Map<String, String>> CONNECTION_POOL_CONFIG_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<ReplicaEndpointDto>> REPLICA_CONFIG_TYPE = new TypeReference<>() {};
+
     private final DataSourceConfigRepository dataSourceConfigRepository;
-    private final ObjectMapper objectMapper; // For parsing JSON connectionPoolConfig
+    private final ObjectMapper objectMapper; // For writing the JSON columns
+    private final ObjectReader connectionPoolConfigReader; // Readers keep their resolved deserializer, unlike readValue with a new TypeReference
+    private final ObjectReader replicaConfigReader;
+    private final DataSourceMetadataCache metadataCache; // DTOs and list pages for the management API
+    private final QueryExecutionProperties queryExecutionProperties;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher; // Notifies pool warm-up and other in-memory views
+    private final ConnectionPoolSettings connectionPoolSettings; // Database type profiles and per-datasource overrides
+    private final ConnectionDetailsResolver connectionDetailsResolver; // Cached connection details of API_PROVIDED datasources
+    private final QueryMetrics queryMetrics; // Hikari metrics of the dynamic pools
+    private final Map<String, String> credentialsKeys = new ConcurrentHashMap<>(); // datasourceId -> credentialsKey its pool was built with
 
-    // Cache for active HikariDataSources
-    private final Map<String, DataSource> activeDataSources = new ConcurrentHashMap<>();
+    // Active HikariDataSources, each wrapped with its own MyBatis statement registry; swapped and closed on config changes
+    private final DataSourceLifecycleManager lifecycleManager;
+    private final AdaptivePoolSizer poolSizer; // Null unless app.query.pool-sizing is enabled
+    private final ReplicaMonitor replicaMonitor; // Takes lagging or failing read replicas out of rotation
 
     @Autowired
-    public DataSourceManagementServiceImpl(DataSourceConfigRepository dataSourceConfigRepository, ObjectMapper objectMapper) {
+    public DataSourceManagementServiceImpl(DataSourceConfigRepository dataSourceConfigRepository, ObjectMapper objectMapper,
+                                           QueryExecutionProperties queryExecutionProperties, MeterRegistry meterRegistry,
+                                           ApplicationEventPublisher eventPublisher, ConnectionPoolSettings connectionPoolSettings,
+                                           ConnectionDetailsResolver connectionDetailsResolver, DataSourceMetadataCache metadataCache,
+                                           QueryMetrics queryMetrics) {
         this.dataSourceConfigRepository = dataSourceConfigRepository;
         this.objectMapper = objectMapper;
+        this.connectionPoolConfigReader = objectMapper.readerFor(CONNECTION_POOL_CONFIG_TYPE);
+        this.replicaConfigReader = objectMapper.readerFor(REPLICA_CONFIG_TYPE);
+        this.metadataCache = metadataCache;
+        this.queryExecutionProperties = queryExecutionProperties;
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.connectionPoolSettings = connectionPoolSettings;
+        this.connectionDetailsResolver = connectionDetailsResolver;
+        this.queryMetrics = queryMetrics;
+        this.lifecycleManager = new DataSourceLifecycleManager(this::createExecutionContext, meterRegistry,
+                queryMetrics::hasOwnTag, queryExecutionProperties.getPool());
+        this.poolSizer = queryExecutionProperties.getPoolSizing().isEnabled()
+                ? new AdaptivePoolSizer(queryExecutionProperties.getPoolSizing(), queryExecutionProperties.getPool().getMaxTotalConnections(),
+                        lifecycleManager::getActiveContexts)
+                : null;
+        this.replicaMonitor = new ReplicaMonitor(queryExecutionProperties.getReplicas(), lifecycleManager::getActiveContexts);
     }
 
     @Override
@@ -46,18 +117,45 @@ public class DataSourceManagementServiceImpl implements DataSourceManagementServ
         if (dataSourceConfigRepository.existsByDatasourceId(dataSourceDto.getDatasourceId())) {
             throw new IllegalArgumentException("Data source with ID " + dataSourceDto.getDatasourceId() + " already exists.");
         }
+        validateConnection(dataSourceDto);
         DataSourceConfigEntity entity = convertToEntity(dataSourceDto);
         // Securely handle password if provided - e.g., encrypt before saving
         // For now, assuming it's handled or will be added
         DataSourceConfigEntity savedEntity = dataSourceConfigRepository.save(entity);
+        eventPublisher.publishEvent(DataSourceChangedEvent.upserted(savedEntity.getDatasourceId()));
         return convertToDto(savedEntity);
     }
 
+    private void validateConnection(DataSourceDto dataSourceDto) {
+        if (dataSourceDto.getSourceType() == DataSourceType.API_PROVIDED
+                && (dataSourceDto.getCredentialsKey() == null || dataSourceDto.getCredentialsKey().isBlank())) {
+            throw new InvalidInputException("credentialsKey is required for API_PROVIDED data sources");
+        }
+        connectionPoolSettings.validate(dataSourceDto.getJdbcUrl(), dataSourceDto.getDbType(), dataSourceDto.getConnectionPoolConfig());
+    }
+
     @Override
-    @Transactional(readOnly = true)
     public Optional<DataSourceDto> getDataSourceByDatasourceId(String datasourceId) {
-        return dataSourceConfigRepository.findByDatasourceId(datasourceId)
-                .map(this::convertToDto);
+        // Not @Transactional: cache hits need no metadata DB connection
+        return metadataCache.get(datasourceId, () -> dataSourceConfigRepository.findByDatasourceId(datasourceId)
+                .map(this::convertToDto));
+    }
+
+    @Override
+    public DataSourcePageDto listDataSources(int page, int size) {
+        if (page < 0 || size < 1) {
+            throw new InvalidInputException("page must be 0 or more and size 1 or more");
+        }
+        int pageSize = Math.min(size, queryExecutionProperties.getMetadataCache().getMaxPageSize());
+        return metadataCache.getPage(page, pageSize, () -> {
+            Page<DataSourceSummary> summaries = dataSourceConfigRepository.findAllProjectedBy(
+                    PageRequest.of(page, pageSize, Sort.by("datasourceId")));
+            List<DataSourceSummaryDto> content = summaries.getContent().stream()
+                    .map(summary -> new DataSourceSummaryDto(summary.getDatasourceId(), summary.getSourceType(), summary.getName(),
+                            summary.getDbType(), summary.getCreatedAt(), summary.getUpdatedAt()))
+                    .collect(Collectors.toList());
+            return new DataSourcePageDto(content, page, pageSize, summaries.getTotalElements(), summaries.getTotalPages());
+        });
     }
 
     @Override
@@ -74,13 +172,19 @@ public class DataSourceManagementServiceImpl implements DataSourceManagementServ
         DataSourceConfigEntity existingEntity = dataSourceConfigRepository.findByDatasourceId(datasourceId)
                 .orElseThrow(() -> new ResourceNotFoundException("Data source not found with ID: " + datasourceId));
 
+        validateConnection(dataSourceDto);
+
         // Update fields from DTO
         BeanUtils.copyProperties(dataSourceDto, existingEntity, "id", "datasourceId", "createdAt");
         // Re-apply datasourceId to ensure it's not changed if DTO had a different one by mistake
         existingEntity.setDatasourceId(datasourceId);
+        // Map to JSON columns, not covered by copyProperties
+        DataSourceConfigEntity converted = convertToEntity(dataSourceDto);
+        existingEntity.setConnectionPoolConfig(converted.getConnectionPoolConfig());
+        existingEntity.setReplicaConfig(converted.getReplicaConfig());
 
         DataSourceConfigEntity updatedEntity = dataSourceConfigRepository.save(existingEntity);
-        activeDataSources.remove(datasourceId); // Invalidate cache
+        eventPublisher.publishEvent(DataSourceChangedEvent.upserted(datasourceId));
         return convertToDto(updatedEntity);
     }
 
@@ -91,65 +195,253 @@ public class DataSourceManagementServiceImpl implements DataSourceManagementServ
             throw new ResourceNotFoundException("Data source not found with ID: " + datasourceId);
         }
         dataSourceConfigRepository.deleteByDatasourceId(datasourceId);
-        activeDataSources.remove(datasourceId); // Invalidate cache
+        eventPublisher.publishEvent(DataSourceChangedEvent.deleted(datasourceId));
         log.info("Data source configuration with ID {} deleted.", datasourceId);
     }
 
     @Override
     public DataSource getActiveDataSource(String datasourceId) {
-        return activeDataSources.computeIfAbsent(datasourceId, id -> {
-            log.info("Attempting to create or retrieve active data source for ID: {}", id);
-            DataSourceConfigEntity configEntity = dataSourceConfigRepository.findByDatasourceId(id)
-                    .orElseThrow(() -> new ResourceNotFoundException("Data source configuration not found for ID: " + id));
-            return createHikariDataSource(configEntity);
+        return getExecutionContext(datasourceId).getDataSource();
+    }
+
+    @Override
+    public DataSourceExecutionContext getExecutionContext(String datasourceId) {
+        return lifecycleManager.get(datasourceId);
+    }
+
+    @Override
+    public DataSourceExecutionContext.Lease leaseExecutionContext(String datasourceId) {
+        return lifecycleManager.lease(datasourceId);
+    }
+
+    /**
+     * Builds the pool and statement registry of a datasource; called by the lifecycle manager outside any lock.
+     */
+    private DataSourceExecutionContext createExecutionContext(String datasourceId) {
+        log.info("Attempting to create active data source for ID: {}", datasourceId);
+        DataSourceConfigEntity configEntity = dataSourceConfigRepository.findByDatasourceId(datasourceId)
+                .orElseThrow(() -> new ResourceNotFoundException("Data source configuration not found for ID: " + datasourceId));
+        Map<String, String> poolProps = connectionPoolSettings.resolve(configEntity.getDbType(), parseConnectionPoolConfig(configEntity));
+        List<ReplicaEndpointDto> replicaEndpoints = parseReplicaConfig(configEntity);
+        PoolSizingTracker sizingTracker = createSizingTracker(poolProps, replicaEndpoints.isEmpty());
+        HikariConfig hikariConfig = createHikariConfig(configEntity, poolProps, sizingTracker);
+        HikariDataSource dataSource = createHikariDataSource(configEntity, hikariConfig);
+        ReplicaSet replicas;
+        try {
+            replicas = createReplicaSet(configEntity, hikariConfig, replicaEndpoints);
+        } catch (RuntimeException e) {
+            dataSource.close();
+            throw e;
+        }
+        DataSourceBulkhead bulkhead = new DataSourceBulkhead(datasourceId, resolveMaxConcurrentQueries(poolProps, dataSource, replicas),
+                queryExecutionProperties.getBulkhead().getMaxQueueDepth());
+        return new DataSourceExecutionContext(datasourceId, configEntity.getDbType(), dataSource, bulkhead, sizingTracker, replicas);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE) // Swap before listeners that use the pool, e.g. the warm-up
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDataSourceChanged(DataSourceChangedEvent event) {
+        if (event.getChangeType() == MetadataChangeType.DELETE) {
+            lifecycleManager.remove(event.getDatasourceId());
+            forgetCredentialsKey(event.getDatasourceId());
+        } else {
+            dataSourceConfigRepository.findByDatasourceId(event.getDatasourceId()).ifPresent(this::prefetchConnectionDetails);
+            lifecycleManager.swap(event.getDatasourceId());
+        }
+    }
+
+    /**
+     * Rebuilds every open pool from its stored configuration, and drops the pools of datasources no longer stored.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMetadataResync(MetadataResyncEvent event) {
+        for (DataSourceExecutionContext context : lifecycleManager.getActiveContexts()) {
+            onDataSourceChanged(dataSourceConfigRepository.existsByDatasourceId(context.getDatasourceId())
+                    ? DataSourceChangedEvent.upserted(context.getDatasourceId())
+                    : DataSourceChangedEvent.deleted(context.getDatasourceId()));
+        }
+    }
+
+    /**
+     * Fetches the connection details of all API_PROVIDED datasources so that no pool built later waits for them.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE) // Before the warm-up builds pools
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        dataSourceConfigRepository.findAll().forEach(this::prefetchConnectionDetails);
+    }
+
+    /**
+     * Swaps the open pools built with rotated credentials; queries keep running on the old pools meanwhile.
+     */
+    @EventListener
+    public void onConnectionDetailsRotated(ConnectionDetailsRotatedEvent event) {
+        credentialsKeys.forEach((datasourceId, credentialsKey) -> {
+            if (credentialsKey.equals(event.getCredentialsKey())) {
+                lifecycleManager.swap(datasourceId);
+            }
         });
     }
 
-    private HikariDataSource createHikariDataSource(DataSourceConfigEntity configEntity) {
-        HikariConfig hikariConfig = new HikariConfig();
+    private void prefetchConnectionDetails(DataSourceConfigEntity configEntity) {
+        if (configEntity.getSourceType() == DataSourceType.API_PROVIDED && configEntity.getCredentialsKey() != null) {
+            connectionDetailsResolver.prefetch(configEntity.getCredentialsKey());
+        }
+    }
 
-        if (configEntity.getSourceType() == DataSourceType.API_PROVIDED) {
-            // TODO: Implement logic to fetch connection details via external API
-            // This would involve calling an external service using Feign/WebClient
-            // and then populating hikariConfig.setJdbcUrl(), setUsername(), setPassword()
-            // For now, this path will likely fail or require placeholder logic.
-            log.warn("API_PROVIDED data source type is not fully implemented for dynamic connection fetching. Datasource: {}", configEntity.getDatasourceId());
-            // Placeholder - assuming details might be in configEntity for now for this example
-            if (configEntity.getJdbcUrl() == null || configEntity.getJdbcUrl().isBlank()) {
-                 throw new IllegalStateException("JDBC URL is required for API_PROVIDED data source if not fetched dynamically: " + configEntity.getDatasourceId());
+    private void forgetCredentialsKey(String datasourceId) {
+        String credentialsKey = credentialsKeys.remove(datasourceId);
+        if (credentialsKey != null && !credentialsKeys.containsValue(credentialsKey)) {
+            connectionDetailsResolver.forget(credentialsKey);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (poolSizer != null) {
+            poolSizer.shutdown();
+        }
+        replicaMonitor.shutdown();
+        lifecycleManager.close();
+    }
+
+    /**
+     * Running query slots of a datasource: "maxConcurrentQueries" from its connectionPoolConfig,
+     * otherwise one per pooled connection of the primary and its replicas.
+     */
+    private int resolveMaxConcurrentQueries(Map<String, String> poolProps, HikariDataSource dataSource, ReplicaSet replicas) {
+        if (poolProps.containsKey("maxConcurrentQueries")) {
+            return Integer.parseInt(poolProps.get("maxConcurrentQueries"));
+        }
+        return dataSource.getMaximumPoolSize() + replicas.getMaximumPoolSize();
+    }
+
+    /**
+     * Size bounds of an adaptively sized pool: the configured ones, narrowed by "adaptiveMinPoolSize" and
+     * "adaptiveMaxPoolSize" (the connections the target database allows) from its connectionPoolConfig.
+     * Only the primary pool is sized; its bulkhead follows it unless set explicitly or shared with replicas.
+     */
+    private PoolSizingTracker createSizingTracker(Map<String, String> poolProps, boolean primaryOnly) {
+        QueryExecutionProperties.PoolSizing poolSizing = queryExecutionProperties.getPoolSizing();
+        if (!poolSizing.isEnabled()) {
+            return null;
+        }
+        int minPoolSize = poolProps.containsKey("adaptiveMinPoolSize") ? Integer.parseInt(poolProps.get("adaptiveMinPoolSize")) : poolSizing.getMinPoolSize();
+        int maxPoolSize = poolProps.containsKey("adaptiveMaxPoolSize") ? Integer.parseInt(poolProps.get("adaptiveMaxPoolSize")) : poolSizing.getMaxPoolSize();
+        return new PoolSizingTracker(minPoolSize, maxPoolSize, primaryOnly && !poolProps.containsKey("maxConcurrentQueries"));
+    }
+
+    private Map<String, String> parseConnectionPoolConfig(DataSourceConfigEntity configEntity) {
+        if (configEntity.getConnectionPoolConfig() == null || configEntity.getConnectionPoolConfig().isBlank()) {
+            return Map.of();
+        }
+        try {
+            return connectionPoolConfigReader.readValue(configEntity.getConnectionPoolConfig());
+        } catch (JsonProcessingException e) {
+            log.error("Failed to parse connectionPoolConfig JSON for datasource {}: {}", configEntity.getDatasourceId(), configEntity.getConnectionPoolConfig(), e);
+            throw new IllegalArgumentException("Invalid connectionPoolConfig JSON format for datasource " + configEntity.getDatasourceId(), e);
+        }
+    }
+
+    private List<ReplicaEndpointDto> parseReplicaConfig(DataSourceConfigEntity configEntity) {
+        if (configEntity.getReplicaConfig() == null || configEntity.getReplicaConfig().isBlank()) {
+            return List.of();
+        }
+        try {
+            return replicaConfigReader.readValue(configEntity.getReplicaConfig());
+        } catch (JsonProcessingException e) {
+            log.error("Failed to parse replicaConfig JSON for datasource {}", configEntity.getDatasourceId(), e); // Holds passwords, not logged
+            throw new IllegalArgumentException("Invalid replicaConfig JSON format for datasource " + configEntity.getDatasourceId(), e);
+        }
+    }
+
+    /**
+     * One pool per replica endpoint with the primary's pool settings. Replica pools start without
+     * waiting for a connection, an unreachable replica is taken out of rotation by the monitor
+     * instead of failing the datasource.
+     */
+    private ReplicaSet createReplicaSet(DataSourceConfigEntity configEntity, HikariConfig primaryConfig, List<ReplicaEndpointDto> endpoints) {
+        if (endpoints.isEmpty()) {
+            return ReplicaSet.NONE;
+        }
+        List<ReplicaSet.Replica> replicas = new ArrayList<>();
+        try {
+            for (ReplicaEndpointDto endpoint : endpoints) {
+                HikariConfig replicaConfig = new HikariConfig();
+                primaryConfig.copyStateTo(replicaConfig);
+                replicaConfig.setPoolName(primaryConfig.getPoolName() + "-replica-" + (replicas.size() + 1));
+                replicaConfig.setJdbcUrl(endpoint.getJdbcUrl());
+                if (endpoint.getUsername() != null) {
+                    replicaConfig.setUsername(endpoint.getUsername());
+                    replicaConfig.setPassword(endpoint.getPassword());
+                }
+                // Pool metrics only, the pool sizer only tracks the primary
+                replicaConfig.setMetricsTrackerFactory(queryMetrics.poolTrackerFactory(configEntity.getDatasourceId(),
+                        "replica-" + (replicas.size() + 1), null));
+                replicaConfig.setInitializationFailTimeout(-1);
+                log.info("Creating replica HikariDataSource for datasourceId: {} with URL: {}", configEntity.getDatasourceId(), endpoint.getJdbcUrl());
+                replicas.add(new ReplicaSet.Replica(replicaConfig.getPoolName(), new HikariDataSource(replicaConfig), endpoint.getLagQuery()));
             }
+        } catch (RuntimeException e) {
+            replicas.forEach(replica -> replica.getDataSource().close());
+            log.error("Failed to create replica HikariDataSource for {}: {}", configEntity.getDatasourceId(), e.getMessage(), e);
+            throw new IllegalStateException("Could not create replica data source for ID: " + configEntity.getDatasourceId(), e);
         }
+        return new ReplicaSet(replicas);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSqlTemplateChanged(SqlTemplateChangedEvent event) {
+        // Updated templates are re-registered lazily by version; deleted ones are dropped eagerly
+        if (event.getChangeType() == MetadataChangeType.DELETE) {
+            lifecycleManager.forEachActive(context -> context.evictTemplateStatement(event.getSqlCode()));
+        }
+    }
+
+    private HikariConfig createHikariConfig(DataSourceConfigEntity configEntity, Map<String, String> poolProps,
+                                            PoolSizingTracker sizingTracker) {
+        HikariConfig hikariConfig = new HikariConfig();
 
         hikariConfig.setPoolName("HikariPool-" + configEntity.getDatasourceId());
-        hikariConfig.setJdbcUrl(configEntity.getJdbcUrl());
-        hikariConfig.setUsername(configEntity.getUsername());
-        hikariConfig.setPassword(configEntity.getPassword()); // Password should be decrypted if stored encrypted
+        if (configEntity.getSourceType() == DataSourceType.API_PROVIDED) {
+            // Cached and refreshed in the background; rotated details swap the pool
+            ConnectionDetails details = connectionDetailsResolver.resolve(configEntity.getCredentialsKey());
+            credentialsKeys.put(configEntity.getDatasourceId(), configEntity.getCredentialsKey());
+            hikariConfig.setJdbcUrl(details.getJdbcUrl());
+            hikariConfig.setUsername(details.getUsername());
+            hikariConfig.setPassword(details.getPassword());
+        } else {
+            credentialsKeys.remove(configEntity.getDatasourceId());
+            hikariConfig.setJdbcUrl(configEntity.getJdbcUrl());
+            hikariConfig.setUsername(configEntity.getUsername());
+            hikariConfig.setPassword(configEntity.getPassword()); // Password should be decrypted if stored encrypted
+        }
         // hikariConfig.setDriverClassName(); // Usually not needed with modern JDBC drivers if URL is correct
+        if (queryExecutionProperties.getStream().isCursorFetch() && isMySqlCompatible(configEntity.getDbType())) {
+            // Only takes effect for statements with a positive fetch size, i.e. streamed queries
+            hikariConfig.addDataSourceProperty("useCursorFetch", "true");
+        }
 
-        // Apply connection pool configuration from JSON
-        if (configEntity.getConnectionPoolConfig() != null && !configEntity.getConnectionPoolConfig().isBlank()) {
-            try {
-                Map<String, String> poolProps = objectMapper.readValue(configEntity.getConnectionPoolConfig(), new TypeReference<Map<String, String>>() {});
-                if (poolProps.containsKey("maximumPoolSize")) hikariConfig.setMaximumPoolSize(Integer.parseInt(poolProps.get("maximumPoolSize")));
-                if (poolProps.containsKey("minimumIdle")) hikariConfig.setMinimumIdle(Integer.parseInt(poolProps.get("minimumIdle")));
-                if (poolProps.containsKey("connectionTimeout")) hikariConfig.setConnectionTimeout(Long.parseLong(poolProps.get("connectionTimeout")));
-                if (poolProps.containsKey("idleTimeout")) hikariConfig.setIdleTimeout(Long.parseLong(poolProps.get("idleTimeout")));
-                if (poolProps.containsKey("maxLifetime")) hikariConfig.setMaxLifetime(Long.parseLong(poolProps.get("maxLifetime")));
-                // Add other HikariCP properties as needed
-            } catch (JsonProcessingException e) {
-                log.error("Failed to parse connectionPoolConfig JSON for datasource {}: {}", configEntity.getDatasourceId(), configEntity.getConnectionPoolConfig(), e);
-                throw new IllegalArgumentException("Invalid connectionPoolConfig JSON format for datasource " + configEntity.getDatasourceId(), e);
-            }
-        } else {
-            // Default sensible values if not configured
-            hikariConfig.setMaximumPoolSize(10);
-            hikariConfig.setMinimumIdle(2);
-            hikariConfig.setConnectionTimeout(30000); // 30 seconds
-            hikariConfig.setIdleTimeout(600000); // 10 minutes
-            hikariConfig.setMaxLifetime(1800000); // 30 minutes
+        // Default sensible values, overridden by the database type profile and the datasource's connectionPoolConfig
+        hikariConfig.setMaximumPoolSize(10);
+        hikariConfig.setMinimumIdle(2);
+        hikariConfig.setConnectionTimeout(30000); // 30 seconds
+        hikariConfig.setIdleTimeout(600000); // 10 minutes
+        hikariConfig.setMaxLifetime(1800000); // 30 minutes
+        try {
+            connectionPoolSettings.apply(hikariConfig, poolProps); // Hikari properties and driver.* driver properties
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid connectionPoolConfig for datasource " + configEntity.getDatasourceId() + ": " + e.getMessage(), e);
         }
 
-        log.info("Creating HikariDataSource for datasourceId: {} with URL: {}", configEntity.getDatasourceId(), configEntity.getJdbcUrl());
+        // Pool metrics, and connection acquire latency for the pool sizer
+        hikariConfig.setMetricsTrackerFactory(queryMetrics.poolTrackerFactory(configEntity.getDatasourceId(), "primary", sizingTracker));
+        return hikariConfig;
+    }
+
+    private HikariDataSource createHikariDataSource(DataSourceConfigEntity configEntity, HikariConfig hikariConfig) {
+        log.info("Creating HikariDataSource for datasourceId: {} with URL: {}", configEntity.getDatasourceId(), hikariConfig.getJdbcUrl());
         try {
             return new HikariDataSource(hikariConfig);
         } catch (Exception e) {
@@ -158,17 +450,30 @@ public class DataSourceManagementServiceImpl implements DataSourceManagementServ
         }
     }
 
+    private boolean isMySqlCompatible(String dbType) {
+        return dbType != null && (dbType.equalsIgnoreCase("MySQL") || dbType.equalsIgnoreCase("OceanBase"));
+    }
+
     private DataSourceDto convertToDto(DataSourceConfigEntity entity) {
         DataSourceDto dto = new DataSourceDto();
         BeanUtils.copyProperties(entity, dto, "password"); // Exclude password from DTO by default
         if (entity.getConnectionPoolConfig() != null && !entity.getConnectionPoolConfig().isBlank()) {
             try {
-                dto.setConnectionPoolConfig(objectMapper.readValue(entity.getConnectionPoolConfig(), new TypeReference<Map<String, String>>() {}));
+                dto.setConnectionPoolConfig(connectionPoolConfigReader.readValue(entity.getConnectionPoolConfig()));
             } catch (JsonProcessingException e) {
                 log.warn("Could not parse connectionPoolConfig for DTO mapping, datasourceId: {}", entity.getDatasourceId(), e);
                 // Potentially set to null or an error indicator in DTO
             }
         }
+        if (entity.getReplicaConfig() != null && !entity.getReplicaConfig().isBlank()) {
+            try {
+                List<ReplicaEndpointDto> replicas = replicaConfigReader.readValue(entity.getReplicaConfig());
+                replicas.forEach(replica -> replica.setPassword(null)); // Exclude passwords like the primary's
+                dto.setReplicas(replicas);
+            } catch (JsonProcessingException e) {
+                log.warn("Could not parse replicaConfig for DTO mapping, datasourceId: {}", entity.getDatasourceId(), e);
+            }
+        }
         return dto;
     }
 
@@ -183,6 +488,13 @@ public class DataSourceManagementServiceImpl implements DataSourceManagementServ
                 // Potentially set to null or handle error
             }
         }
+        if (dto.getReplicas() != null && !dto.getReplicas().isEmpty()) {
+            try {
+                entity.setReplicaConfig(objectMapper.writeValueAsString(dto.getReplicas()));
+            } catch (JsonProcessingException e) {
+                log.warn("Could not serialize replicas for entity mapping, datasourceId: {}", dto.getDatasourceId(), e);
+            }
+        }
         // Password from DTO should be handled here (e.g., encryption)
         // entity.setPassword(encrypt(dto.getPassword()));
         return entity;
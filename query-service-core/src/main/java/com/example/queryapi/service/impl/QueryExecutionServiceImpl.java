@@ -1,164 +1,941 @@
 package com.example.queryapi.service.impl;
 
-import com.example.queryapi.common.exception.InvalidRequestException;
-import com.example.queryapi.dao.mybatis.mapper.GenericMapper;
+import com.example.queryapi.common.enums.ExecutionEngine;
+import com.example.queryapi.common.enums.ExecutionStatus;
+import com.example.queryapi.common.enums.ExecutorMode;
+import com.example.queryapi.common.enums.ResultFormat;
+import com.example.queryapi.common.exception.InvalidInputException;
+import com.example.queryapi.common.exception.ResourceExhaustedException;
 import com.example.queryapi.dto.*;
 import com.example.queryapi.service.DataSourceManagementService;
 import com.example.queryapi.service.QueryExecutionService;
-import com.example.queryapi.service.SqlTemplateService;
+import com.example.queryapi.service.cache.QueryResultCache;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.execution.BatchResultListener;
+import com.example.queryapi.service.execution.DataSourceBulkhead;
+import com.example.queryapi.service.execution.DataSourceExecutionContext;
+import com.example.queryapi.service.execution.JdbcQueryEngine;
+import com.example.queryapi.service.execution.KeyLookupBatcher;
+import com.example.queryapi.service.execution.KeysetPage;
+import com.example.queryapi.service.execution.PageToken;
+import com.example.queryapi.service.execution.PreparedQuery;
+import com.example.queryapi.service.execution.QueryDeadline;
+import com.example.queryapi.service.execution.QueryDeadlineWatchdog;
+import com.example.queryapi.service.execution.QueryMetrics;
+import com.example.queryapi.service.execution.QueryTimings;
+import com.example.queryapi.service.execution.ReplicaSet;
+import com.example.queryapi.service.execution.ResultColumns;
+import com.example.queryapi.service.execution.ResultGuard;
+import com.example.queryapi.service.execution.ResultMemoryBudget;
+import com.example.queryapi.service.execution.ResultRowHandler;
+import com.example.queryapi.service.execution.ResultSizeEstimator;
+import com.example.queryapi.service.execution.RowMapListExtractor;
+import com.example.queryapi.service.execution.TabularResult;
+import com.example.queryapi.service.execution.TabularResultExtractor;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import com.example.queryapi.service.template.KeyLookupSql;
+import com.example.queryapi.service.template.SqlTemplateRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.ibatis.session.SqlSession;
-import org.apache.ibatis.session.SqlSessionFactory;
-import org.mybatis.spring.SqlSessionTemplate;
+import org.apache.ibatis.mapping.MappedStatement;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToLongFunction;
 
 @Service
 @Slf4j
 public class QueryExecutionServiceImpl implements QueryExecutionService {
 
     private final DataSourceManagementService dataSourceManagementService;
-    private final SqlTemplateService sqlTemplateService;
-    // private final GenericMapper genericMapper; // This might not be directly usable with dynamic datasources easily
-    private final SqlSessionFactory sqlSessionFactory; // Autowire the main one, or handle dynamic ones
+    private final SqlTemplateRegistry sqlTemplateRegistry; // In-memory templates, no metadata DB access per query
+    private final JdbcQueryEngine jdbcQueryEngine; // Plain JDBC fast path for static templates
+    private final QueryExecutionProperties queryExecutionProperties;
+    private final QueryResultCache queryResultCache; // Per-template result cache, opt-in via the template's TTL
+    private final KeyLookupBatcher keyLookupBatcher; // Coalesces concurrent point lookups into IN (...) queries
+    private final QueryDeadlineWatchdog deadlineWatchdog; // Cancels statements still running when their deadline passes
+    private final ResultMemoryBudget resultMemoryBudget; // Bounds the heap held by buffered results across queries
+    private final QueryMetrics queryMetrics; // Phase timers per datasource, template and status
     private final ExecutorService batchQueryExecutor; // For parallel execution of batch queries
 
     @Autowired
     public QueryExecutionServiceImpl(DataSourceManagementService dataSourceManagementService,
-                                     SqlTemplateService sqlTemplateService,
-                                     SqlSessionFactory sqlSessionFactory, // Default SqlSessionFactory
+                                     SqlTemplateRegistry sqlTemplateRegistry,
+                                     JdbcQueryEngine jdbcQueryEngine,
+                                     QueryExecutionProperties queryExecutionProperties,
+                                     QueryResultCache queryResultCache,
+                                     KeyLookupBatcher keyLookupBatcher,
+                                     QueryDeadlineWatchdog deadlineWatchdog,
+                                     ResultMemoryBudget resultMemoryBudget,
+                                     QueryMetrics queryMetrics,
                                      @Qualifier("batchQueryExecutorService") ExecutorService batchQueryExecutor) {
         this.dataSourceManagementService = dataSourceManagementService;
-        this.sqlTemplateService = sqlTemplateService;
-        this.sqlSessionFactory = sqlSessionFactory;
+        this.sqlTemplateRegistry = sqlTemplateRegistry;
+        this.jdbcQueryEngine = jdbcQueryEngine;
+        this.queryExecutionProperties = queryExecutionProperties;
+        this.queryResultCache = queryResultCache;
+        this.keyLookupBatcher = keyLookupBatcher;
+        this.deadlineWatchdog = deadlineWatchdog;
+        this.resultMemoryBudget = resultMemoryBudget;
+        this.queryMetrics = queryMetrics;
         this.batchQueryExecutor = batchQueryExecutor;
     }
 
     @Override
-    public SingleQueryResponseDto executeSingleQuery(SingleQueryRequestDto requestDto) {
-        long startTime = System.currentTimeMillis();
-        String sqlToExecute;
-        String effectiveSqlCode = requestDto.getSqlCode();
-
-        if (requestDto.getSqlCode() != null && !requestDto.getSqlCode().isBlank()) {
-            SqlTemplateDto templateDto = sqlTemplateService.getSqlTemplateBySqlCode(requestDto.getSqlCode())
-                    .orElseThrow(() -> new InvalidRequestException("SQL Template not found with code: " + requestDto.getSqlCode()));
-            sqlToExecute = templateDto.getSqlContent();
-        } else if (requestDto.getRawSql() != null && !requestDto.getRawSql().isBlank()) {
-            // Potentially add validation/sanitization for raw SQL if allowed
-            // For security, raw SQL execution should be highly restricted or disabled by default
-            log.warn("Executing raw SQL for datasource: {}. This should be used with extreme caution.", requestDto.getDatasourceId());
-            sqlToExecute = requestDto.getRawSql();
-            effectiveSqlCode = "raw_sql_" + startTime; // Create a temporary identifier for raw SQL
-        } else {
-            throw new InvalidRequestException("Either sqlCode or rawSql must be provided.");
+    public CompletableFuture<SingleQueryResponseDto> executeSingleQuery(SingleQueryRequestDto requestDto, QueryDeadline scope) {
+        if (queryExecutionProperties.getExecutor().getMode() != ExecutorMode.VIRTUAL) {
+            // The bounded pool is sized for batch workers, single queries keep using the request threads
+            return CompletableFuture.completedFuture(executeSingleQuery(requestDto, null, scope));
         }
+        CompletableFuture<SingleQueryResponseDto> result = new CompletableFuture<>();
+        try {
+            batchQueryExecutor.execute(() -> {
+                try {
+                    result.complete(executeSingleQuery(requestDto, null, scope));
+                } catch (Exception | Error e) {
+                    result.completeExceptionally(e); // Datasource queue or result memory budget full, or invalid input
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new ResourceExhaustedException("Query executor is saturated, retry later", e));
+        }
+        return result;
+    }
 
+    /**
+     * @param held  The connection of a batch worker that already holds a slot of the datasource's bulkhead, with the
+     *              context its group leased, or null to lease the context, take a slot and use the pool.
+     * @param scope Deadline of the enclosing request; the query's own deadline is derived from it.
+     */
+    private SingleQueryResponseDto executeSingleQuery(SingleQueryRequestDto requestDto, HeldConnection held, QueryDeadline scope) {
+        QueryTimings timings = QueryTimings.start();
+        SingleQueryResponseDto response = null;
         try {
-            DataSource targetDataSource = dataSourceManagementService.getActiveDataSource(requestDto.getDatasourceId());
-            
-            // For dynamic datasources, it's often easier to manually open a SqlSession
-            // from a SqlSessionFactory configured for that DataSource, or use a routing DataSource.
-            // If using a single SqlSessionFactory that routes, this could be simpler.
-            // Assuming a more manual approach for clarity with truly dynamic sources:
-            
-            // This is a simplified approach. A robust solution would involve a SqlSessionFactory per DataSource
-            // or a routing SqlSessionFactory. For now, we'll try to use the generic mapper with the default factory,
-            // which implies the default factory's DataSource must be a routing one, or this won't work for multiple DBs.
-            // A better way is to get a SqlSession for the specific DataSource.
-
-            List<Map<String, Object>> resultData;
-            // The SqlSessionTemplate is typically bound to a single DataSource (the primary one).
-            // To work with dynamic DataSources, you need to obtain a SqlSession specifically for that DataSource.
-            // One way is to create a new SqlSessionFactory for each dynamic DataSource, or use a routing DataSource
-            // that Spring's transaction management and MyBatis can work with.
-
-            // Let's assume sqlSessionFactory.getConfiguration().getEnvironment().getDataSource() is a routing DataSource
-            // or we manually manage SqlSession.
-            try (SqlSession sqlSession = sqlSessionFactory.openSession(targetDataSource.getConnection())) {
-                 // It's generally better to use a specific mapper method if possible.
-                 // If using a generic string-based SQL execution, ensure parameters are handled safely.
-                 // MyBatis mappers handle parameter substitution safely with #{}.
-                 // When passing raw SQL string like this, parameter substitution needs careful handling.
-                 // The GenericMapper approach is one way if it's designed to handle parameters correctly.
-                
-                // The GenericMapper defined earlier takes @Param("sql") and @Param("params").
-                // We need to ensure the SqlSession used by this mapper is tied to the targetDataSource.
-                // This is where a custom SqlSession or a routing DataSource becomes critical.
-                
-                // For simplicity in this step, let's assume GenericMapper is obtained from the correct SqlSession.
-                // This is a conceptual simplification. Real implementation needs robust DataSource routing for MyBatis.
-                GenericMapper mapper = sqlSession.getMapper(GenericMapper.class);
-                resultData = mapper.executeSelect(sqlToExecute, requestDto.getParams());
-                sqlSession.commit(); // or sqlSession.close(); if no DML
+            response = executeSingleQuery(requestDto, held, scope, timings);
+            if (response.getStatus() == ExecutionStatus.SUCCESS) {
+                timings.setStatus(QueryTimings.Status.SUCCESS);
+            }
+            return response;
+        } catch (ResourceExhaustedException e) {
+            timings.setStatus(QueryTimings.Status.REJECTED);
+            throw e;
+        } finally {
+            queryMetrics.record(timings);
+            if (response != null && held == null) {
+                // Batch results are written with their batch, only single query responses time their own write
+                response.setSerializationRecorder(queryMetrics.serializationRecorder(timings));
             }
+        }
+    }
 
-            long endTime = System.currentTimeMillis();
-            return SingleQueryResponseDto.success(effectiveSqlCode, resultData, endTime - startTime);
+    private SingleQueryResponseDto executeSingleQuery(SingleQueryRequestDto requestDto, HeldConnection held, QueryDeadline scope,
+                                                      QueryTimings timings) {
+        long startTime = System.currentTimeMillis();
+        ResolvedQuery query = resolveQuery(requestDto, startTime, timings);
+        PageRequest page = resolvePage(query, requestDto);
+        QueryDeadline deadline = scope.child(queryTimeoutMillis(query, requestDto));
+
+        QueryDeadlineWatchdog.Watch watch = deadlineWatchdog.watch(deadline, describe(query, requestDto));
+        try (ResultGuard guard = openResultGuard(query, requestDto, page); // Waits for result memory before taking a slot
+             // Each target datasource has its own SqlSessionFactory with pre-registered template statements. Batch workers
+             // use the context their connection came from, a hot-swapped one would not match the connection
+             DataSourceExecutionContext.Lease lease = held == null
+                     ? dataSourceManagementService.leaseExecutionContext(requestDto.getDatasourceId()) : null) {
+            DataSourceExecutionContext context = held != null ? held.context : lease.getContext();
+            timings.setDatasourceId(context.getDatasourceId());
+            if (held != null) {
+                return keepReservation(runQuery(context, held.dataSource, query, requestDto, page, startTime, deadline, guard), guard);
+            }
+            deadline.check();
+            context.getBulkhead().acquire(Math.min(acquireTimeoutMillis(context), deadline.remainingMillis()));
+            try {
+                ReplicaSet.Replica replica = chooseReplica(context, query);
+                if (replica == null) {
+                    return keepReservation(runQuery(context, context.getDataSource(), query, requestDto, page, startTime, deadline, guard), guard);
+                }
+                replica.begin();
+                try {
+                    return keepReservation(runQuery(context, replica.getDataSource(), query, requestDto, page, startTime, deadline, guard), guard);
+                } catch (Exception e) {
+                    recordReplicaError(replica, deadline, e);
+                    throw e;
+                } finally {
+                    replica.end();
+                }
+            } finally {
+                context.getBulkhead().release();
+            }
+        } catch (ResourceExhaustedException e) {
+            throw e; // Surfaced as 503 so clients back off (datasource queue or result memory budget full)
         } catch (Exception e) {
-            log.error("Error executing query for sqlCode 	'{}" or raw SQL on datasource 	'{}": {}", 
-                requestDto.getSqlCode(), requestDto.getDatasourceId(), e.getMessage(), e);
             long endTime = System.currentTimeMillis();
+            if (deadline.isCancelled()) {
+                timings.setStatus(QueryTimings.Status.TIMEOUT);
+                log.warn("Query for sqlCode '{}' or raw SQL on datasource '{}' stopped: {}",
+                    requestDto.getSqlCode(), requestDto.getDatasourceId(), deadline.getCancelReason());
+                return SingleQueryResponseDto.error(query.sqlCode, deadline.getCancelReason(), endTime - startTime);
+            }
+            log.error("Error executing query for sqlCode '{}' or raw SQL on datasource '{}': {}",
+                requestDto.getSqlCode(), requestDto.getDatasourceId(), e.getMessage(), e);
             // Distinguish between data access errors (FAILURE) and other processing errors (ERROR)
             // For now, mapping all to ERROR for simplicity
-            return SingleQueryResponseDto.error(effectiveSqlCode, e.getMessage(), endTime - startTime);
+            return SingleQueryResponseDto.error(query.sqlCode, e.getMessage(), endTime - startTime);
+        } finally {
+            watch.close();
+            deadline.detach();
         }
     }
 
+    private SingleQueryResponseDto runQuery(DataSourceExecutionContext context, DataSource connectionSource, ResolvedQuery query,
+                                            SingleQueryRequestDto requestDto, PageRequest page, long startTime,
+                                            QueryDeadline deadline, ResultGuard guard) throws Exception {
+        if (page != null) {
+            return runPagedQuery(context, connectionSource, query, requestDto, page, startTime, deadline, guard);
+        }
+        SingleQueryResponseDto response;
+        if (requestDto.getResultFormat() == ResultFormat.COLUMNAR) {
+            // Columnar rows are read straight from the ResultSet, so this format always runs on the JDBC engine
+            LoadedResult<TabularResult> result = cached(query, requestDto, deadline, () -> new LoadedResult<>(jdbcQueryEngine.query(connectionSource,
+                    prepareJdbcQuery(context, query, requestDto.getParams()), new TabularResultExtractor(guard),
+                    guard.getDriverMaxRows(), deadline), guard.isTruncated()),
+                    tabular -> tabular.getRows().stream().mapToLong(ResultSizeEstimator::estimateRow).sum());
+            response = SingleQueryResponseDto.successColumnar(query.sqlCode, toColumnMetadata(result.value.getColumns()),
+                    result.value.getRows(), System.currentTimeMillis() - startTime);
+            response.setTruncated(result.truncated);
+            return response;
+        }
+        LoadedResult<List<Map<String, Object>>> resultData = cached(query, requestDto, deadline,
+                () -> new LoadedResult<>(queryRowMaps(context, connectionSource, query, requestDto.getParams(), deadline, guard), guard.isTruncated()),
+                ResultSizeEstimator::estimateRows);
+
+        long endTime = System.currentTimeMillis();
+        response = SingleQueryResponseDto.success(query.sqlCode, resultData.value, endTime - startTime);
+        response.setTruncated(resultData.truncated);
+        return response;
+    }
+
+    /**
+     * Fetches one keyset page (plus one row to detect whether another page follows) on the JDBC engine.
+     * Pages are not served from the result cache. A page cut off at the size limit is returned short,
+     * with a token to continue after its last row.
+     */
+    private SingleQueryResponseDto runPagedQuery(DataSourceExecutionContext context, DataSource connectionSource, ResolvedQuery query,
+                                                 SingleQueryRequestDto requestDto, PageRequest page, long startTime,
+                                                 QueryDeadline deadline, ResultGuard guard) throws SQLException {
+        PreparedQuery pageQuery = KeysetPage.prepare(prepareJdbcQuery(context, query, requestDto.getParams()),
+                page.keyColumn, page.afterKey, page.pageSize + 1, context.getDbType());
+        TabularResult result = jdbcQueryEngine.query(connectionSource, pageQuery, new TabularResultExtractor(guard), deadline);
+        List<Object[]> rows = result.getRows();
+        boolean hasMore = guard.isTruncated();
+        if (rows.size() > page.pageSize) {
+            rows.remove(rows.size() - 1); // Only fetched to know that another page follows
+            hasMore = true;
+        }
+        String nextPageToken = null;
+        if (hasMore) {
+            if (rows.isEmpty()) {
+                throw new IllegalStateException("A single row exceeds the result size limit, the page cannot be returned");
+            }
+            Object lastKey = rows.get(rows.size() - 1)[KeysetPage.keyIndex(result.getColumns(), page.keyColumn)];
+            nextPageToken = PageToken.encode(query.sqlCode, requestDto.getParams(), lastKey);
+        }
+        long elapsed = System.currentTimeMillis() - startTime;
+        SingleQueryResponseDto response = requestDto.getResultFormat() == ResultFormat.COLUMNAR
+                ? SingleQueryResponseDto.successColumnar(query.sqlCode, toColumnMetadata(result.getColumns()), rows, elapsed)
+                : SingleQueryResponseDto.success(query.sqlCode, result.toRowMaps(), elapsed);
+        response.setNextPageToken(nextPageToken);
+        return response;
+    }
+
     @Override
-    public BatchQueryResponseDto executeBatchQuery(BatchQueryRequestDto batchRequestDto) {
+    public QueryStreamTrailerDto streamSingleQuery(SingleQueryRequestDto requestDto, ResultRowHandler rowHandler) {
+        QueryTimings timings = QueryTimings.start(); // Rows are serialized while they are streamed, the phase is recorded here
+        try {
+            QueryStreamTrailerDto trailer = streamSingleQuery(requestDto, rowHandler, timings);
+            if (trailer.getStatus() == ExecutionStatus.SUCCESS) {
+                timings.setStatus(QueryTimings.Status.SUCCESS);
+            }
+            return trailer;
+        } finally {
+            queryMetrics.record(timings);
+        }
+    }
+
+    private QueryStreamTrailerDto streamSingleQuery(SingleQueryRequestDto requestDto, ResultRowHandler rowHandler, QueryTimings timings) {
+        long startTime = System.currentTimeMillis();
+        String sqlCode = requestDto.getSqlCode();
+        CountingRowHandler countingHandler = new CountingRowHandler(rowHandler);
+        // Client disconnects surface as write failures of the handler, which stop the cursor loop
+        QueryDeadline deadline = QueryDeadline.within(shorterLimit(queryExecutionProperties.getDeadline().getStreamTimeoutMillis(),
+                requestDto.getTimeoutMillis()));
+        QueryDeadlineWatchdog.Watch watch = deadlineWatchdog.watch(deadline, "Streamed query on datasource '" + requestDto.getDatasourceId() + "'");
+        try (DataSourceExecutionContext.Lease lease = dataSourceManagementService.leaseExecutionContext(requestDto.getDatasourceId())) {
+            DataSourceExecutionContext context = lease.getContext();
+            timings.setDatasourceId(context.getDatasourceId());
+            ResolvedQuery query = resolveQuery(requestDto, startTime, timings);
+            sqlCode = query.sqlCode;
+            context.getBulkhead().acquire(Math.min(acquireTimeoutMillis(context), deadline.remainingMillis()));
+            ReplicaSet.Replica replica = chooseReplica(context, query);
+            if (replica != null) {
+                replica.begin();
+            }
+            try {
+                // Streaming always uses the JDBC engine: rows go to the handler straight from the driver cursor
+                jdbcQueryEngine.stream(replica != null ? replica.getDataSource() : context.getDataSource(),
+                        prepareJdbcQuery(context, query, requestDto.getParams()),
+                        queryExecutionProperties.getStream().getFetchSize(), countingHandler, deadline);
+            } catch (Exception e) {
+                if (replica != null) {
+                    recordReplicaError(replica, deadline, e);
+                }
+                throw e;
+            } finally {
+                if (replica != null) {
+                    replica.end();
+                }
+                context.getBulkhead().release();
+            }
+            return new QueryStreamTrailerDto(sqlCode, ExecutionStatus.SUCCESS, countingHandler.rowCount, System.currentTimeMillis() - startTime, null);
+        } catch (Exception e) {
+            timings.setStatus(deadline.isCancelled() ? QueryTimings.Status.TIMEOUT
+                    : e instanceof ResourceExhaustedException ? QueryTimings.Status.REJECTED : QueryTimings.Status.ERROR);
+            log.error("Error streaming query for sqlCode '{}' or raw SQL on datasource '{}': {}",
+                requestDto.getSqlCode(), requestDto.getDatasourceId(), e.getMessage(), e);
+            String message = deadline.isCancelled() ? deadline.getCancelReason() : e.getMessage();
+            // Rows already written stay written; the trailer tells the client the stream is incomplete
+            return new QueryStreamTrailerDto(sqlCode, ExecutionStatus.ERROR, countingHandler.rowCount, System.currentTimeMillis() - startTime, message);
+        } finally {
+            watch.close();
+        }
+    }
+
+    @Override
+    public CompletableFuture<BatchQueryResponseDto> executeBatchQuery(BatchQueryRequestDto batchRequestDto, QueryDeadline scope) {
+        long batchStartTime = System.currentTimeMillis();
+        SingleQueryResponseDto[] results = new SingleQueryResponseDto[batchRequestDto.getQueries().size()];
+
+        return runBatch(batchRequestDto, (index, result) -> results[index] = result, scope).thenApply(ignored -> {
+            long batchEndTime = System.currentTimeMillis();
+            return new BatchQueryResponseDto(Arrays.asList(results), batchEndTime - batchStartTime);
+        }).whenComplete((response, error) -> {
+            if (error != null) {
+                new BatchQueryResponseDto(Arrays.asList(results), 0).releaseResults(); // Never written
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<BatchQuerySummaryDto> streamBatchQuery(BatchQueryRequestDto batchRequestDto, BatchResultListener listener,
+                                                                    QueryDeadline scope) {
         long batchStartTime = System.currentTimeMillis();
-        List<CompletableFuture<SingleQueryResponseDto>> futures = new ArrayList<>();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        BatchResultListener countingListener = (index, result) -> {
+            (result.getStatus() == ExecutionStatus.SUCCESS ? succeeded : failed).incrementAndGet();
+            listener.onResult(index, result);
+        };
+        return runBatch(batchRequestDto, countingListener, scope).thenApply(ignored -> new BatchQuerySummaryDto(
+                batchRequestDto.getQueries().size(), succeeded.get(), failed.get(), System.currentTimeMillis() - batchStartTime));
+    }
+
+    /**
+     * Starts the batch and returns without blocking; the future completes once every result has been delivered.
+     * When the batch deadline passes (or the scope is cancelled), running statements are cancelled and queries
+     * that have not started yet are reported as errors without running.
+     */
+    private CompletableFuture<Void> runBatch(BatchQueryRequestDto batchRequestDto, BatchResultListener listener, QueryDeadline scope) {
+        List<SingleQueryRequestDto> queries = batchRequestDto.getQueries();
+        QueryDeadline batchDeadline = scope.child(shorterLimit(queryExecutionProperties.getDeadline().getDefaultBatchTimeoutMillis(),
+                batchRequestDto.getTimeoutMillis()));
+        QueryDeadlineWatchdog.Watch watch = deadlineWatchdog.watch(batchDeadline, "Batch of " + queries.size() + " queries");
+
+        // Plan: one group per datasource, each run by a few workers that hold one connection for the whole group
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            SingleQueryRequestDto singleRequest = queries.get(i);
+            if (singleRequest.getResultFormat() == null) {
+                singleRequest.setResultFormat(batchRequestDto.getResultFormat());
+            }
+            groups.computeIfAbsent(singleRequest.getDatasourceId(), id -> new ArrayList<>()).add(i);
+        }
+
+        CompletableFuture<Void> completion;
+        if (batchRequestDto.isSequentialExecution()) {
+            // One query at a time in request order: consecutive queries on the same datasource share one connection
+            completion = CompletableFuture.completedFuture(null);
+            int runStart = 0;
+            for (int i = 1; i <= queries.size(); i++) {
+                if (i == queries.size() || !Objects.equals(queries.get(i).getDatasourceId(), queries.get(runStart).getDatasourceId())) {
+                    String datasourceId = queries.get(runStart).getDatasourceId();
+                    List<Integer> run = new ArrayList<>();
+                    for (int j = runStart; j < i; j++) {
+                        run.add(j);
+                    }
+                    completion = completion.thenCompose(ignored -> runGroup(datasourceId, run, queries, listener, 1, batchDeadline));
+                    runStart = i;
+                }
+            }
+        } else {
+            List<CompletableFuture<Void>> groupFutures = new ArrayList<>();
+            groups.forEach((datasourceId, indexes) -> groupFutures.add(runGroup(datasourceId, indexes, queries, listener,
+                    queryExecutionProperties.getBatch().getMaxConnectionsPerDatasource(), batchDeadline)));
+            completion = CompletableFuture.allOf(groupFutures.toArray(CompletableFuture<?>[]::new));
+        }
+
+        return completion.whenComplete((ignored, error) -> {
+            watch.close();
+            batchDeadline.detach();
+        });
+    }
+
+    /**
+     * Runs the queries of one datasource on at most {@code maxWorkers} workers. Each worker takes one slot of the
+     * datasource's bulkhead (waiting in its queue without holding an executor thread), checks out one connection
+     * and runs work items from the group's shared queue on it until the queue is empty. The context is leased once
+     * for the group, so all of its queries run against the context their connections come from.
+     */
+    private CompletableFuture<Void> runGroup(String datasourceId, List<Integer> indexes, List<SingleQueryRequestDto> queries,
+                                             BatchResultListener listener, int maxWorkers, QueryDeadline batchDeadline) {
+        DataSourceExecutionContext.Lease lease; // Held until the group is done, so the pool is not closed under its workers
+        try {
+            lease = dataSourceManagementService.leaseExecutionContext(datasourceId);
+        } catch (Exception e) {
+            indexes.forEach(i -> listener.onResult(i, asyncError(queries.get(i), e)));
+            return CompletableFuture.completedFuture(null);
+        }
+        DataSourceExecutionContext context = lease.getContext();
+        Queue<WorkItem> pending = new ConcurrentLinkedQueue<>(planWorkItems(indexes, queries));
+        int workers = Math.max(1, Math.min(pending.size(), Math.min(maxWorkers, context.getBulkhead().getMaxConcurrent())));
+        AtomicReference<Throwable> workerFailure = new AtomicReference<>();
+        List<CompletableFuture<Void>> workerFutures = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            workerFutures.add(startWorker(context, pending, queries, listener, workerFailure, batchDeadline));
+        }
+        return CompletableFuture.allOf(workerFutures.toArray(CompletableFuture<?>[]::new)).thenRun(() -> {
+            // Only left over if no worker of this group could start
+            WorkItem item;
+            while ((item = pending.poll()) != null) {
+                for (Integer index : item.indexes) {
+                    listener.onResult(index, batchDeadline.isCancelled()
+                            ? notStarted(queries.get(index), batchDeadline)
+                            : asyncError(queries.get(index), workerFailure.get()));
+                }
+            }
+        }).whenComplete((ignored, error) -> lease.close());
+    }
+
+    /**
+     * Splits the queries of one datasource into work items. Point lookups of the same template with the same other
+     * parameters are known up front, so they become one item run as a single {@code IN (...)} query (up to the
+     * micro-batch size) instead of waiting for each other in the micro-batch window; every other query is an item
+     * of its own. Items keep the order of their first query.
+     */
+    private List<WorkItem> planWorkItems(List<Integer> indexes, List<SingleQueryRequestDto> queries) {
+        List<WorkItem> items = new ArrayList<>();
+        Map<List<Object>, WorkItem> lookups = new HashMap<>();
+        int maxBatchSize = Math.max(1, queryExecutionProperties.getMicroBatch().getMaxBatchSize());
+        for (Integer index : indexes) {
+            SingleQueryRequestDto singleRequest = queries.get(index);
+            CompiledSqlTemplate template = coalescibleLookupTemplate(singleRequest);
+            if (template == null) {
+                items.add(new WorkItem(List.of(index), null));
+                continue;
+            }
+            Map<String, Object> sharedParams = new TreeMap<>();
+            for (String name : template.getKeyLookupSql().getSharedParameterNames()) {
+                sharedParams.put(name, singleRequest.getParams().get(name));
+            }
+            List<Object> groupKey = Arrays.asList(template.getSqlCode(), template.getVersion(), sharedParams, singleRequest.getTimeoutMillis());
+            WorkItem item = lookups.get(groupKey);
+            if (item == null || item.indexes.size() >= maxBatchSize) {
+                item = new WorkItem(new ArrayList<>(), template);
+                lookups.put(groupKey, item);
+                items.add(item);
+            }
+            item.indexes.add(index);
+        }
+        return items;
+    }
+
+    /**
+     * @return The template if the query is a plain point lookup that can share an {@code IN (...)} query with others
+     * of the batch: no paging, caching, own result limits or columnar format.
+     */
+    private CompiledSqlTemplate coalescibleLookupTemplate(SingleQueryRequestDto singleRequest) {
+        if (singleRequest.getSqlCode() == null || singleRequest.getSqlCode().isBlank() || singleRequest.getPageToken() != null
+                || singleRequest.getMaxRows() != null || singleRequest.getMaxBytes() != null
+                || singleRequest.getResultFormat() == ResultFormat.COLUMNAR) {
+            return null;
+        }
+        CompiledSqlTemplate template = sqlTemplateRegistry.find(singleRequest.getSqlCode()).orElse(null);
+        if (template == null || template.isPaged() || template.isResultCacheEnabled()
+                || !keyLookupBatcher.supports(template, singleRequest.getParams())) {
+            return null;
+        }
+        return template;
+    }
+
+    private CompletableFuture<Void> startWorker(DataSourceExecutionContext context, Queue<WorkItem> pending, List<SingleQueryRequestDto> queries,
+                                                BatchResultListener listener, AtomicReference<Throwable> workerFailure,
+                                                QueryDeadline batchDeadline) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        DataSourceBulkhead bulkhead = context.getBulkhead();
+        CompletableFuture<Void> permitFuture = bulkhead.acquire();
+        batchDeadline.onCancel(() -> bulkhead.abandon(permitFuture)); // Stop waiting for a slot once the batch is over
+        permitFuture.whenComplete((permit, failure) -> {
+            if (failure != null) {
+                workerFailure.set(failure); // Datasource queue full, the group's other workers keep draining
+                done.complete(null);
+                return;
+            }
+            long submitted = System.nanoTime();
+            try {
+                batchQueryExecutor.execute(() -> {
+                    queryMetrics.batchWorkerStarted(submitted);
+                    try {
+                        drainWithHeldConnection(context, pending, queries, listener, batchDeadline);
+                    } finally {
+                        queryMetrics.batchWorkerFinished();
+                        bulkhead.release();
+                        done.complete(null);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queryMetrics.batchWorkerRejected();
+                bulkhead.release();
+                workerFailure.set(e);
+                done.complete(null);
+            }
+        });
+        return done;
+    }
 
-        for (SingleQueryRequestDto singleRequest : batchRequestDto.getQueries()) {
-            // TODO: Consider if sequential execution option is needed.
-            // For now, submitting all to executor for parallel processing.
-            CompletableFuture<SingleQueryResponseDto> future = CompletableFuture.supplyAsync(() -> {
+    private void drainWithHeldConnection(DataSourceExecutionContext context, Queue<WorkItem> pending,
+                                         List<SingleQueryRequestDto> queries, BatchResultListener listener,
+                                         QueryDeadline batchDeadline) {
+        Connection connection = null;
+        DataSource connectionSource;
+        try {
+            connection = context.getDataSource().getConnection();
+            connectionSource = new SingleConnectionDataSource(connection, true); // Statements never close the held connection
+        } catch (SQLException e) {
+            log.warn("Could not hold a connection on datasource '{}' for batch execution, using the pool per query: {}",
+                    context.getDatasourceId(), e.getMessage());
+            connectionSource = context.getDataSource();
+        }
+        HeldConnection held = new HeldConnection(context, connectionSource);
+        try {
+            WorkItem item;
+            while ((item = pending.poll()) != null) {
+                if (batchDeadline.isCancelled()) {
+                    item.indexes.forEach(index -> listener.onResult(index, notStarted(queries.get(index), batchDeadline)));
+                    continue;
+                }
+                if (item.lookupTemplate != null && item.indexes.size() > 1) {
+                    runCoalescedLookups(held, item, queries, listener, batchDeadline);
+                    continue;
+                }
+                int index = item.indexes.get(0);
+                SingleQueryRequestDto singleRequest = queries.get(index);
+                SingleQueryResponseDto result;
                 try {
-                    // Need to ensure that if a routing DataSource is used, the context for routing
-                    // (e.g., ThreadLocal) is correctly set and cleared for each async task.
-                    // This is a common challenge with async processing and routing DataSources.
-                    // One solution is to pass the datasourceId and have executeSingleQuery resolve it again,
-                    // or ensure the routing mechanism is compatible with CompletableFuture's thread pool.
-                    return executeSingleQuery(singleRequest);
+                    result = executeSingleQuery(singleRequest, held, batchDeadline);
                 } catch (Exception e) {
-                    log.error("Exception in batch execution for one query (sqlCode: {}, datasource: {}): {}", 
+                    log.error("Exception in batch execution for one query (sqlCode: {}, datasource: {}): {}",
                         singleRequest.getSqlCode(), singleRequest.getDatasourceId(), e.getMessage(), e);
-                    return SingleQueryResponseDto.error(
-                        singleRequest.getSqlCode() != null ? singleRequest.getSqlCode() : "raw_sql_async_error",
-                        "Unhandled async execution error: " + e.getMessage(), 0L);
+                    result = asyncError(singleRequest, e);
                 }
-            }, batchQueryExecutor);
-            futures.add(future);
+                listener.onResult(index, result);
+            }
+        } finally {
+            if (connection != null) {
+                JdbcUtils.closeConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Runs the point lookups of one work item as a single {@code IN (...)} query on the worker's connection and
+     * hands every query the rows of its key, admitted against its own result limits.
+     */
+    private void runCoalescedLookups(HeldConnection held, WorkItem item, List<SingleQueryRequestDto> queries,
+                                     BatchResultListener listener, QueryDeadline batchDeadline) {
+        CompiledSqlTemplate template = item.lookupTemplate;
+        KeyLookupSql lookupSql = template.getKeyLookupSql();
+        SingleQueryRequestDto first = queries.get(item.indexes.get(0));
+        ResolvedQuery query = new ResolvedQuery(template, first.getSqlCode(), false);
+        long startTime = System.currentTimeMillis();
+        QueryTimings timings = QueryTimings.start(); // One statement, timed once
+        timings.setDatasourceId(held.context.getDatasourceId());
+        timings.setSqlCode(template.getSqlCode());
+        QueryDeadline deadline = batchDeadline.child(queryTimeoutMillis(query, first)); // Same timeout for the whole item
+
+        Map<String, Object> sharedParams = new TreeMap<>();
+        lookupSql.getSharedParameterNames().forEach(name -> sharedParams.put(name, first.getParams().get(name)));
+        Map<String, Object> distinctKeys = new LinkedHashMap<>();
+        for (Integer index : item.indexes) {
+            Object key = queries.get(index).getParams().get(lookupSql.getKeyParam());
+            distinctKeys.putIfAbsent(KeyLookupBatcher.normalizeKey(key), key);
         }
 
-        // Wait for all futures to complete
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        SingleQueryResponseDto[] responses = new SingleQueryResponseDto[item.indexes.size()];
+        QueryDeadlineWatchdog.Watch watch = deadlineWatchdog.watch(deadline,
+                describe(query, first) + " (" + item.indexes.size() + " coalesced lookups)");
+        try {
+            Map<String, List<Map<String, Object>>> rowsByKey = keyLookupBatcher.lookupAll(held.dataSource, lookupSql, sharedParams,
+                    new ArrayList<>(distinctKeys.values()), deadline);
+            timings.setStatus(QueryTimings.Status.SUCCESS);
+            for (int i = 0; i < responses.length; i++) {
+                SingleQueryRequestDto singleRequest = queries.get(item.indexes.get(i));
+                List<Map<String, Object>> rows = rowsByKey.getOrDefault(
+                        KeyLookupBatcher.normalizeKey(singleRequest.getParams().get(lookupSql.getKeyParam())), Collections.emptyList());
+                responses[i] = lookupResponse(query, singleRequest, rows, startTime);
+            }
+        } catch (Exception e) {
+            String message = deadline.isCancelled() ? deadline.getCancelReason() : e.getMessage();
+            timings.setStatus(deadline.isCancelled() ? QueryTimings.Status.TIMEOUT : QueryTimings.Status.ERROR);
+            log.error("Error executing {} coalesced lookups for sqlCode '{}' on datasource '{}': {}",
+                    item.indexes.size(), query.sqlCode, held.context.getDatasourceId(), message, e);
+            Arrays.fill(responses, SingleQueryResponseDto.error(query.sqlCode, message, System.currentTimeMillis() - startTime));
+        } finally {
+            watch.close();
+            deadline.detach();
+            queryMetrics.record(timings);
+        }
+        for (int i = 0; i < responses.length; i++) {
+            listener.onResult(item.indexes.get(i), responses[i]);
+        }
+    }
 
-        List<SingleQueryResponseDto> results = futures.stream()
-                .map(future -> {
-                    try {
-                        return future.get(); // Should not block due to join() above, but handles checked exceptions
-                    } catch (Exception e) {
-                        // This catch block is for CompletableFuture.get() exceptions, 
-                        // which should ideally be handled within the supplyAsync block itself.
-                        log.error("Unexpected error retrieving future result in batch: {}", e.getMessage(), e);
-                        return SingleQueryResponseDto.error("unknown_sql_code", "Future retrieval error: " + e.getMessage(), 0L);
-                    }
-                })
-                .collect(Collectors.toList());
+    private SingleQueryResponseDto lookupResponse(ResolvedQuery query, SingleQueryRequestDto singleRequest,
+                                                  List<Map<String, Object>> rows, long startTime) {
+        try (ResultGuard guard = openResultGuard(query, singleRequest, null)) {
+            SingleQueryResponseDto response = SingleQueryResponseDto.success(query.sqlCode, admit(rows, guard),
+                    System.currentTimeMillis() - startTime);
+            response.setTruncated(guard.isTruncated());
+            return keepReservation(response, guard);
+        } catch (ResourceExhaustedException e) {
+            return SingleQueryResponseDto.error(query.sqlCode, e.getMessage(), System.currentTimeMillis() - startTime);
+        }
+    }
 
-        long batchEndTime = System.currentTimeMillis();
-        return new BatchQueryResponseDto(results, batchEndTime - batchStartTime);
+    /**
+     * The result stays on the heap until its response has been written, so its reservation is released
+     * with {@link SingleQueryResponseDto#releaseResult()} instead of when the guard is closed.
+     */
+    private static SingleQueryResponseDto keepReservation(SingleQueryResponseDto response, ResultGuard guard) {
+        response.setResultRelease(guard.handOver());
+        return response;
+    }
+
+    /**
+     * Rows of an already read result that fit the guard's limits.
+     */
+    private static List<Map<String, Object>> admit(List<Map<String, Object>> rows, ResultGuard guard) {
+        List<Map<String, Object>> admitted = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            if (!guard.admit(ResultSizeEstimator.estimateRow(row))) {
+                break;
+            }
+            admitted.add(row);
+        }
+        return admitted;
+    }
+
+    private static SingleQueryResponseDto asyncError(SingleQueryRequestDto singleRequest, Throwable e) {
+        return SingleQueryResponseDto.error(
+            singleRequest.getSqlCode() != null ? singleRequest.getSqlCode() : "raw_sql_async_error",
+            "Unhandled async execution error: " + e.getMessage(), 0L);
+    }
+
+    private static SingleQueryResponseDto notStarted(SingleQueryRequestDto singleRequest, QueryDeadline batchDeadline) {
+        return SingleQueryResponseDto.error(singleRequest.getSqlCode() != null ? singleRequest.getSqlCode() : "raw_sql_not_started",
+            "Not executed: " + batchDeadline.getCancelReason(), 0L);
+    }
+
+    /**
+     * The template's deadline (or the configured default), shortened by the request's if it asks for less.
+     */
+    private long queryTimeoutMillis(ResolvedQuery query, SingleQueryRequestDto requestDto) {
+        long configured = query.template.getQueryTimeoutMillis() != null
+                ? query.template.getQueryTimeoutMillis()
+                : queryExecutionProperties.getDeadline().getDefaultQueryTimeoutMillis();
+        return shorterLimit(configured, requestDto.getTimeoutMillis());
+    }
+
+    /**
+     * Result limits work like deadlines: the template's (or the configured default), lowered by the request's.
+     */
+    private long maxResultRows(ResolvedQuery query, SingleQueryRequestDto requestDto) {
+        long configured = query.template.getMaxResultRows() != null
+                ? query.template.getMaxResultRows()
+                : queryExecutionProperties.getResultLimits().getDefaultMaxRows();
+        return shorterLimit(configured, requestDto.getMaxRows() != null ? requestDto.getMaxRows().longValue() : null);
     }
-}
 
+    private ResultGuard openResultGuard(ResolvedQuery query, SingleQueryRequestDto requestDto, PageRequest page) {
+        long maxBytes = shorterLimit(query.template.getMaxResultBytes() != null
+                ? query.template.getMaxResultBytes()
+                : queryExecutionProperties.getResultLimits().getDefaultMaxBytes(), requestDto.getMaxBytes());
+        // Pages are bounded by their page size (already capped by the row limit) plus the look-ahead row
+        long maxRows = page != null ? page.pageSize + 1L : maxResultRows(query, requestDto);
+        return resultMemoryBudget.open(maxRows, maxBytes);
+    }
+
+    /**
+     * @param configured 0 or less for no limit.
+     * @param requested  null for no request-level limit.
+     */
+    private static long shorterLimit(long configured, Long requested) {
+        if (requested == null || requested <= 0) {
+            return configured;
+        }
+        return configured > 0 ? Math.min(configured, requested) : requested;
+    }
+
+    private static String describe(ResolvedQuery query, SingleQueryRequestDto requestDto) {
+        return "Query '" + query.sqlCode + "' on datasource '" + requestDto.getDatasourceId() + "'";
+    }
+
+    /**
+     * Read-only templates run on a replica of the datasource if one is in rotation; everything else,
+     * including raw SQL, on the primary.
+     */
+    private static ReplicaSet.Replica chooseReplica(DataSourceExecutionContext context, ResolvedQuery query) {
+        return !query.adHoc && query.template.isReadOnly() ? context.getReplicas().choose() : null;
+    }
+
+    /**
+     * Counts database errors (also when MyBatis wrapped them) towards the replica's error rate. Timeouts,
+     * client cancellations and result limits are not the replica's fault.
+     */
+    private static void recordReplicaError(ReplicaSet.Replica replica, QueryDeadline deadline, Exception e) {
+        if (deadline.isCancelled()) {
+            return;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                replica.recordError();
+                return;
+            }
+        }
+    }
+
+    private long acquireTimeoutMillis(DataSourceExecutionContext context) {
+        long configured = queryExecutionProperties.getBulkhead().getAcquireTimeoutMillis();
+        return configured > 0 ? configured : context.getDataSource().getConnectionTimeout();
+    }
+
+    /**
+     * @return The page to fetch, or null if the query is not paged.
+     * @throws InvalidInputException if the page token does not belong to this query.
+     */
+    private PageRequest resolvePage(ResolvedQuery query, SingleQueryRequestDto requestDto) {
+        if (query.adHoc || !query.template.isPaged()) {
+            if (requestDto.getPageToken() != null) {
+                throw new InvalidInputException("SQL template does not support paging: " + query.sqlCode);
+            }
+            return null;
+        }
+        QueryExecutionProperties.Paging paging = queryExecutionProperties.getPaging();
+        int pageSize = requestDto.getPageSize() != null ? requestDto.getPageSize() : paging.getDefaultPageSize();
+        if (pageSize > paging.getMaxPageSize()) {
+            throw new InvalidInputException("Page size cannot exceed " + paging.getMaxPageSize());
+        }
+        long maxRows = maxResultRows(query, requestDto);
+        if (maxRows > 0 && maxRows < pageSize) {
+            pageSize = (int) maxRows;
+        }
+        Object afterKey = requestDto.getPageToken() != null && !requestDto.getPageToken().isBlank()
+                ? PageToken.decode(requestDto.getPageToken(), query.sqlCode, requestDto.getParams())
+                : null;
+        return new PageRequest(query.template.getPageKeyColumn(), afterKey, pageSize);
+    }
+
+    private ResolvedQuery resolveQuery(SingleQueryRequestDto requestDto, long startTime, QueryTimings timings) {
+        if (requestDto.getSqlCode() != null && !requestDto.getSqlCode().isBlank()) {
+            long started = System.nanoTime();
+            CompiledSqlTemplate template = sqlTemplateRegistry.find(requestDto.getSqlCode())
+                    .orElseThrow(() -> new InvalidInputException("SQL Template not found with code: " + requestDto.getSqlCode()));
+            timings.add(QueryTimings.Phase.TEMPLATE_LOOKUP, System.nanoTime() - started);
+            timings.setSqlCode(template.getSqlCode()); // Registered codes only, unknown codes stay untagged
+            return new ResolvedQuery(template, requestDto.getSqlCode(), false);
+        } else if (requestDto.getRawSql() != null && !requestDto.getRawSql().isBlank()) {
+            timings.setSqlCode(QueryMetrics.RAW_SQL);
+            // Potentially add validation/sanitization for raw SQL if allowed
+            // For security, raw SQL execution should be highly restricted or disabled by default
+            log.warn("Executing raw SQL for datasource: {}. This should be used with extreme caution.", requestDto.getDatasourceId());
+            // Create a temporary identifier for raw SQL
+            return new ResolvedQuery(CompiledSqlTemplate.adHoc(requestDto.getRawSql()), "raw_sql_" + startTime, true);
+        } else {
+            throw new InvalidInputException("Either sqlCode or rawSql must be provided.");
+        }
+    }
+
+    private List<Map<String, Object>> queryRowMaps(DataSourceExecutionContext context, DataSource connectionSource,
+                                                   ResolvedQuery query, Map<String, Object> params, QueryDeadline deadline,
+                                                   ResultGuard guard) throws Exception {
+        // A batch worker holding a connection runs its lookups on it: the batch would need a second connection
+        // from a pool the workers may be holding entirely
+        if (!query.adHoc && !(connectionSource instanceof SingleConnectionDataSource) && keyLookupBatcher.supports(query.template, params)) {
+            // Point lookup: shares one IN (...) query and connection with concurrent lookups of the same template
+            return admit(keyLookupBatcher.lookup(context, connectionSource, query.template, params, deadline), guard);
+        }
+        if (queryExecutionProperties.getExecutionEngine() == ExecutionEngine.JDBC && query.template.isJdbcCompatible()) {
+            // Fast path: precompiled positional SQL on a plain PreparedStatement
+            return jdbcQueryEngine.query(connectionSource, query.template.getPositionalSql().prepare(params),
+                    new RowMapListExtractor(guard), guard.getDriverMaxRows(), deadline);
+        }
+        return context.selectList(resolveStatement(context, query), params, connectionSource, deadline, guard);
+    }
+
+    /**
+     * Runs the loader through the result cache when the template has caching enabled. Requests that lower
+     * the result limits bypass the cache, whose entries were truncated (if at all) at the template's limits.
+     */
+    private <T> LoadedResult<T> cached(ResolvedQuery query, SingleQueryRequestDto requestDto, QueryDeadline deadline,
+                                       QueryResultCache.Loader<LoadedResult<T>> loader,
+                                       ToLongFunction<T> weigher) throws Exception {
+        if (query.adHoc || requestDto.getMaxRows() != null || requestDto.getMaxBytes() != null) {
+            return loader.load();
+        }
+        return queryResultCache.get(query.template, requestDto.getDatasourceId(), requestDto.getParams(),
+                requestDto.getResultFormat(), deadline, loader, result -> weigher.applyAsLong(result.value));
+    }
+
+    private MappedStatement resolveStatement(DataSourceExecutionContext context, ResolvedQuery query) {
+        return query.adHoc
+                ? context.resolveAdHocStatement(query.template.getSqlContent())
+                : context.resolveTemplateStatement(query.template);
+    }
+
+    /**
+     * Positional SQL for the plain JDBC engine. Dynamic templates are rendered by MyBatis first.
+     */
+    private PreparedQuery prepareJdbcQuery(DataSourceExecutionContext context, ResolvedQuery query, Map<String, Object> params) {
+        if (query.template.isJdbcCompatible()) {
+            return query.template.getPositionalSql().prepare(params);
+        }
+        return context.render(resolveStatement(context, query), params);
+    }
+
+    private List<ColumnMetadataDto> toColumnMetadata(ResultColumns columns) {
+        List<ColumnMetadataDto> metadata = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            metadata.add(new ColumnMetadataDto(columns.getLabels()[i], jdbcTypeName(columns.getJdbcTypes()[i]), columns.getTypeNames()[i]));
+        }
+        return metadata;
+    }
+
+    private static String jdbcTypeName(int jdbcType) {
+        try {
+            return JDBCType.valueOf(jdbcType).getName();
+        } catch (IllegalArgumentException e) {
+            return JDBCType.OTHER.getName(); // Vendor-specific type code
+        }
+    }
+
+    /**
+     * A batch worker's connection (as a data source) and the context leased for its group.
+     */
+    private static final class HeldConnection {
+        private final DataSourceExecutionContext context;
+        private final DataSource dataSource;
+
+        private HeldConnection(DataSourceExecutionContext context, DataSource dataSource) {
+            this.context = context;
+            this.dataSource = dataSource;
+        }
+    }
+
+    /**
+     * Queries of a batch group run together by one worker: a single query, or point lookups coalesced into one statement.
+     */
+    private static final class WorkItem {
+        private final List<Integer> indexes;
+        private final CompiledSqlTemplate lookupTemplate; // Set for coalesced point lookups
+
+        private WorkItem(List<Integer> indexes, CompiledSqlTemplate lookupTemplate) {
+            this.indexes = indexes;
+            this.lookupTemplate = lookupTemplate;
+        }
+    }
+
+    private static final class ResolvedQuery {
+        private final CompiledSqlTemplate template;
+        private final String sqlCode; // Echoed back in responses
+        private final boolean adHoc;
+
+        private ResolvedQuery(CompiledSqlTemplate template, String sqlCode, boolean adHoc) {
+            this.template = template;
+            this.sqlCode = sqlCode;
+            this.adHoc = adHoc;
+        }
+    }
+
+    private static final class LoadedResult<T> {
+        private final T value;
+        private final boolean truncated; // Cut off at the result limits, cached along with the rows
+
+        private LoadedResult(T value, boolean truncated) {
+            this.value = value;
+            this.truncated = truncated;
+        }
+    }
+
+    private static final class PageRequest {
+        private final String keyColumn;
+        private final Object afterKey; // null for the first page
+        private final int pageSize;
+
+        private PageRequest(String keyColumn, Object afterKey, int pageSize) {
+            this.keyColumn = keyColumn;
+            this.afterKey = afterKey;
+            this.pageSize = pageSize;
+        }
+    }
+
+    private static final class CountingRowHandler implements ResultRowHandler {
+        private final ResultRowHandler delegate;
+        private long rowCount;
+
+        private CountingRowHandler(ResultRowHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void start(ResultColumns columns) throws IOException {
+            delegate.start(columns);
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException, IOException {
+            delegate.row(rs);
+            rowCount++;
+        }
+    }
+}
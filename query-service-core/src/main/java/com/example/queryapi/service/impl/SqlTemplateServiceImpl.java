@@ -5,9 +5,12 @@ import com.example.queryapi.dao.jpa.entity.SqlTemplateEntity;
 import com.example.queryapi.dao.jpa.repository.SqlTemplateRepository;
 import com.example.queryapi.dto.SqlTemplateDto;
 import com.example.queryapi.service.SqlTemplateService;
+import com.example.queryapi.service.event.SqlTemplateChangedEvent;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
@@ -28,11 +31,13 @@ import java.util.stream.Collectors;
 public class SqlTemplateServiceImpl implements SqlTemplateService {
 
     private final SqlTemplateRepository sqlTemplateRepository;
+    private final ApplicationEventPublisher eventPublisher; // Notifies the template registry and other in-memory views
     private static final String SQL_TEMPLATES_PATH = "classpath*:sql-templates/**/*.sql";
 
     @Autowired
-    public SqlTemplateServiceImpl(SqlTemplateRepository sqlTemplateRepository) {
+    public SqlTemplateServiceImpl(SqlTemplateRepository sqlTemplateRepository, ApplicationEventPublisher eventPublisher) {
         this.sqlTemplateRepository = sqlTemplateRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -46,6 +51,7 @@ public class SqlTemplateServiceImpl implements SqlTemplateService {
         entity.setCreatedBy("system"); // Placeholder
         entity.setLastModifiedBy("system"); // Placeholder
         SqlTemplateEntity savedEntity = sqlTemplateRepository.save(entity);
+        eventPublisher.publishEvent(SqlTemplateChangedEvent.upserted(CompiledSqlTemplate.from(savedEntity)));
         return convertToDto(savedEntity);
     }
 
@@ -74,10 +80,19 @@ public class SqlTemplateServiceImpl implements SqlTemplateService {
         existingEntity.setSqlContent(sqlTemplateDto.getSqlContent());
         existingEntity.setDescription(sqlTemplateDto.getDescription());
         existingEntity.setDataSourceTypeHint(sqlTemplateDto.getDataSourceTypeHint());
+        existingEntity.setResultCacheTtlSeconds(sqlTemplateDto.getResultCacheTtlSeconds());
+        existingEntity.setResultCacheMaxBytes(sqlTemplateDto.getResultCacheMaxBytes());
+        existingEntity.setBatchKeyParam(sqlTemplateDto.getBatchKeyParam());
+        existingEntity.setBatchKeyColumn(sqlTemplateDto.getBatchKeyColumn());
+        existingEntity.setQueryTimeoutMillis(sqlTemplateDto.getQueryTimeoutMillis());
+        existingEntity.setPageKeyColumn(sqlTemplateDto.getPageKeyColumn());
+        existingEntity.setMaxResultRows(sqlTemplateDto.getMaxResultRows());
+        existingEntity.setMaxResultBytes(sqlTemplateDto.getMaxResultBytes());
+        existingEntity.setReadOnly(sqlTemplateDto.getReadOnly());
         existingEntity.setLastModifiedBy("system"); // Placeholder - should be from security context
-        // Version will be incremented by JPA if @Version is used correctly
-
-        SqlTemplateEntity updatedEntity = sqlTemplateRepository.save(existingEntity);
+        // Flush so that JPA increments the @Version column before the registry sees the new template
+        SqlTemplateEntity updatedEntity = sqlTemplateRepository.saveAndFlush(existingEntity);
+        eventPublisher.publishEvent(SqlTemplateChangedEvent.upserted(CompiledSqlTemplate.from(updatedEntity)));
         return convertToDto(updatedEntity);
     }
 
@@ -88,6 +103,7 @@ public class SqlTemplateServiceImpl implements SqlTemplateService {
             throw new ResourceNotFoundException("SQL Template not found with code: " + sqlCode);
         }
         sqlTemplateRepository.deleteBySqlCode(sqlCode);
+        eventPublisher.publishEvent(SqlTemplateChangedEvent.deleted(sqlCode));
         log.info("SQL Template with code {} deleted.", sqlCode);
     }
 
@@ -131,7 +147,8 @@ public class SqlTemplateServiceImpl implements SqlTemplateService {
                     templateEntity.setUpdatedAt(LocalDateTime.now());
                     // Version will be initialized by JPA
 
-                    sqlTemplateRepository.save(templateEntity);
+                    SqlTemplateEntity savedEntity = sqlTemplateRepository.save(templateEntity);
+                    eventPublisher.publishEvent(SqlTemplateChangedEvent.upserted(CompiledSqlTemplate.from(savedEntity)));
                     log.info("Successfully loaded SQL Template with code '{}' from file: {}", sqlCode, resource.getFilename());
                 } catch (IOException e) {
                     log.error("Failed to read SQL template file: {}", resource.getFilename(), e);
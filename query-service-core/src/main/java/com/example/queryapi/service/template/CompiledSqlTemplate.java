@@ -0,0 +1,204 @@
+package com.example.queryapi.service.template;
+
+import com.example.queryapi.dao.jpa.entity.SqlTemplateEntity;
+import com.example.queryapi.service.execution.KeysetPage;
+import lombok.Getter;
+
+import java.sql.JDBCType;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, pre-parsed view of an SQL template, ready to be handed to the execution layer.
+ * Instances are built once per template version and shared by all requests.
+ */
+@Getter
+public final class CompiledSqlTemplate {
+
+    // Matches MyBatis parameter placeholders such as #{userId} or #{userId,jdbcType=BIGINT}
+    private static final Pattern PARAMETER_PATTERN = Pattern.compile("#\\{([^}]+)}");
+    // Templates using string substitution or dynamic SQL tags must be rendered by MyBatis per call
+    private static final Pattern DYNAMIC_PATTERN = Pattern.compile("\\$\\{|<\\s*(if|where|foreach|choose|when|otherwise|trim|set|bind)\\b");
+
+    private final String sqlCode;
+    private final Integer version;
+    private final String sqlContent;
+    private final String dataSourceTypeHint;
+    private final List<String> parameterNames; // In order of appearance, may contain duplicates
+    private final boolean dynamic;
+    private final PositionalSql positionalSql; // Plain JDBC form, null for dynamic templates
+    private final int resultCacheTtlSeconds; // 0 when result caching is disabled
+    private final Long resultCacheMaxBytes; // null to use the configured default
+    private final KeyLookupSql keyLookupSql; // Set-based form for micro-batched point lookups, null if not batchable
+    private final Integer queryTimeoutMillis; // null to use the configured default deadline
+    private final String pageKeyColumn; // Keyset pagination key, null if results are not paged
+    private final Integer maxResultRows; // null to use the configured default limit
+    private final Long maxResultBytes; // null to use the configured default limit
+    private final boolean readOnly; // May run on a read replica
+
+    private CompiledSqlTemplate(String sqlCode, Integer version, String sqlContent, String dataSourceTypeHint,
+                                Integer resultCacheTtlSeconds, Long resultCacheMaxBytes, String batchKeyParam, String batchKeyColumn,
+                                Integer queryTimeoutMillis, String pageKeyColumn, Integer maxResultRows, Long maxResultBytes,
+                                Boolean readOnly) {
+        this.sqlCode = sqlCode;
+        this.version = version;
+        this.sqlContent = sqlContent;
+        this.dataSourceTypeHint = dataSourceTypeHint;
+        this.resultCacheTtlSeconds = resultCacheTtlSeconds != null ? Math.max(resultCacheTtlSeconds, 0) : 0;
+        this.resultCacheMaxBytes = resultCacheMaxBytes;
+        this.queryTimeoutMillis = queryTimeoutMillis != null && queryTimeoutMillis > 0 ? queryTimeoutMillis : null;
+        this.pageKeyColumn = KeysetPage.isValidKeyColumn(pageKeyColumn) ? pageKeyColumn : null;
+        this.maxResultRows = maxResultRows != null && maxResultRows > 0 ? maxResultRows : null;
+        this.maxResultBytes = maxResultBytes != null && maxResultBytes > 0 ? maxResultBytes : null;
+        this.readOnly = Boolean.TRUE.equals(readOnly);
+        this.parameterNames = Collections.unmodifiableList(parseParameterNames(sqlContent));
+        this.dynamic = DYNAMIC_PATTERN.matcher(sqlContent).find();
+        this.positionalSql = dynamic ? null : compilePositionalSql(sqlContent);
+        this.keyLookupSql = dynamic ? null : KeyLookupSql.compile(sqlContent, batchKeyParam, batchKeyColumn);
+    }
+
+    public static CompiledSqlTemplate from(SqlTemplateEntity entity) {
+        return new CompiledSqlTemplate(entity.getSqlCode(), entity.getVersion(), entity.getSqlContent(), entity.getDataSourceTypeHint(),
+                entity.getResultCacheTtlSeconds(), entity.getResultCacheMaxBytes(), entity.getBatchKeyParam(), entity.getBatchKeyColumn(),
+                entity.getQueryTimeoutMillis(), entity.getPageKeyColumn(), entity.getMaxResultRows(), entity.getMaxResultBytes(),
+                entity.getReadOnly());
+    }
+
+    /**
+     * Compiles a raw, unregistered SQL string. Used for ad-hoc queries, which are not cached.
+     */
+    public static CompiledSqlTemplate adHoc(String sql) {
+        return new CompiledSqlTemplate(null, null, sql, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * @return true if this template can run as a plain JDBC prepared statement without MyBatis rendering.
+     */
+    public boolean isJdbcCompatible() {
+        return positionalSql != null;
+    }
+
+    /**
+     * @return true if concurrent lookups of this template can be coalesced into one set-based query.
+     */
+    public boolean isKeyLookupBatchable() {
+        return keyLookupSql != null;
+    }
+
+    /**
+     * @return true if results of this template are returned in keyset pages.
+     */
+    public boolean isPaged() {
+        return pageKeyColumn != null;
+    }
+
+    /**
+     * @return true if results of this template may be served from the result cache.
+     */
+    public boolean isResultCacheEnabled() {
+        return sqlCode != null && resultCacheTtlSeconds > 0;
+    }
+
+    /**
+     * @return true if this template is a strictly newer version than the given one.
+     */
+    public boolean isNewerThan(CompiledSqlTemplate other) {
+        return other == null || versionOrDefault(this.version) > versionOrDefault(other.version);
+    }
+
+    private static int versionOrDefault(Integer version) {
+        return version != null ? version : -1;
+    }
+
+    /**
+     * @return The plain JDBC form, or null if the template needs MyBatis to bind it: placeholders with a
+     * property path ({@code #{user.id}}, {@code #{ids[0]}}) are navigated by MyBatis only, and MyBatis also
+     * replaces placeholders inside quoted literals and comments, where the driver would not bind them.
+     */
+    static PositionalSql compilePositionalSql(String sql) {
+        List<ParameterBinding> bindings = new ArrayList<>();
+        StringBuilder positional = new StringBuilder(sql.length());
+        BitSet quotedOrComment = quotedOrCommentRegions(sql);
+        Matcher matcher = PARAMETER_PATTERN.matcher(sql);
+        while (matcher.find()) {
+            String[] parts = matcher.group(1).split(",");
+            String name = parts[0].trim();
+            if (quotedOrComment.get(matcher.start()) || name.indexOf('.') >= 0 || name.indexOf('[') >= 0) {
+                return null;
+            }
+            JDBCType jdbcType = null;
+            for (int i = 1; i < parts.length; i++) {
+                String option = parts[i].trim();
+                if (option.startsWith("jdbcType=")) {
+                    jdbcType = ParameterBinding.parseJdbcType(option.substring("jdbcType=".length()));
+                }
+            }
+            bindings.add(new ParameterBinding(name, jdbcType));
+            matcher.appendReplacement(positional, "?");
+        }
+        matcher.appendTail(positional);
+        // Trailing statement terminators are rejected by some drivers and break query wrapping
+        String executable = positional.toString().trim();
+        while (executable.endsWith(";")) {
+            executable = executable.substring(0, executable.length() - 1).trim();
+        }
+        return new PositionalSql(executable, bindings);
+    }
+
+    /**
+     * Marks the characters inside quoted literals and identifiers ({@code '...'}, {@code "..."},
+     * {@code `...`}) and comments (line comments starting with {@code --} or {@code #}, block comments).
+     */
+    static BitSet quotedOrCommentRegions(String sql) {
+        BitSet regions = new BitSet(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int end;
+            if (c == '\'' || c == '"' || c == '`') {
+                end = i + 1;
+                while (end < length) {
+                    char d = sql.charAt(end);
+                    if (d == '\\' && c != '`') {
+                        end += 2; // MySQL backslash escape
+                    } else if (d == c && end + 1 < length && sql.charAt(end + 1) == c) {
+                        end += 2; // Doubled quote
+                    } else if (d == c) {
+                        break;
+                    } else {
+                        end++;
+                    }
+                }
+                end = Math.min(end + 1, length);
+            } else if ((c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') || (c == '#' && (i + 1 == length || sql.charAt(i + 1) != '{'))) {
+                end = sql.indexOf('\n', i);
+                end = end < 0 ? length : end;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+            } else {
+                i++;
+                continue;
+            }
+            regions.set(i, end);
+            i = end;
+        }
+        return regions;
+    }
+
+    private static List<String> parseParameterNames(String sql) {
+        List<String> names = new ArrayList<>();
+        Matcher matcher = PARAMETER_PATTERN.matcher(sql);
+        while (matcher.find()) {
+            String expression = matcher.group(1);
+            int optionsStart = expression.indexOf(',');
+            names.add((optionsStart >= 0 ? expression.substring(0, optionsStart) : expression).trim());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.queryapi.service.template;
+
+import com.example.queryapi.service.execution.PreparedQuery;
+import lombok.Getter;
+
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Set-based form of a point-lookup template: the single {@code = #{key}} predicate is rewritten
+ * into {@code IN (?, ?, ...)} so that the lookups of many concurrent callers run as one statement.
+ * All other parameters are shared by the callers of one batch.
+ * <p>
+ * Only plain row lookups qualify: a statement that limits, groups, deduplicates or aggregates rows
+ * (or combines the predicate with {@code OR}) returns something else for a set of keys than the union
+ * of its results per key, so it is not rewritten.
+ */
+@Getter
+public final class KeyLookupSql {
+
+    // Statement shapes whose result for IN (...) is not the union of the per-key results
+    private static final Pattern NOT_ROW_WISE = Pattern.compile(
+            "\\b(LIMIT|FETCH|OFFSET|TOP|ROWNUM|GROUP\\s+BY|HAVING|DISTINCT|UNION|INTERSECT|EXCEPT|OR)\\b"
+                    + "|\\b(COUNT|SUM|AVG|MIN|MAX|GROUP_CONCAT|STRING_AGG|LISTAGG)\\s*\\(|\\bOVER\\s*\\(",
+            Pattern.CASE_INSENSITIVE);
+
+    private final String keyParam;
+    private final String keyColumn; // Result column holding the key, used to split rows back to callers
+    private final PositionalSql head; // SQL up to the rewritten predicate, e.g. "SELECT ... WHERE u.id"
+    private final ParameterBinding keyBinding;
+    private final PositionalSql tail; // SQL after the predicate
+    private final List<String> sharedParameterNames;
+
+    private KeyLookupSql(String keyParam, String keyColumn, PositionalSql head, ParameterBinding keyBinding, PositionalSql tail) {
+        this.keyParam = keyParam;
+        this.keyColumn = keyColumn;
+        this.head = head;
+        this.keyBinding = keyBinding;
+        this.tail = tail;
+        List<String> shared = new ArrayList<>();
+        head.getBindings().forEach(binding -> shared.add(binding.getName()));
+        tail.getBindings().forEach(binding -> shared.add(binding.getName()));
+        this.sharedParameterNames = Collections.unmodifiableList(shared);
+    }
+
+    /**
+     * @return The set-based form, or null if the template does not contain exactly one
+     * {@code = #{keyParam}} predicate (a bare {@code =}, not part of {@code >=}, {@code <=}, {@code !=} ...),
+     * uses the key parameter elsewhere, or is not a plain row lookup.
+     */
+    static KeyLookupSql compile(String sqlContent, String keyParam, String keyColumn) {
+        if (keyParam == null || keyParam.isBlank() || keyColumn == null || keyColumn.isBlank()) {
+            return null;
+        }
+        BitSet quotedOrComment = CompiledSqlTemplate.quotedOrCommentRegions(sqlContent);
+        if (NOT_ROW_WISE.matcher(codeOnly(sqlContent, quotedOrComment)).find()) {
+            return null;
+        }
+        Pattern predicate = Pattern.compile("(?<![<>!=:^|&+\\-*/%~])=\\s*#\\{\\s*" + Pattern.quote(keyParam.trim()) + "\\s*(,([^}]*))?}");
+        Matcher matcher = predicate.matcher(sqlContent);
+        if (!matcher.find() || quotedOrComment.get(matcher.start())) {
+            return null;
+        }
+        PositionalSql head = CompiledSqlTemplate.compilePositionalSql(sqlContent.substring(0, matcher.start()));
+        PositionalSql tail = CompiledSqlTemplate.compilePositionalSql(sqlContent.substring(matcher.end()));
+        if (head == null || tail == null) {
+            return null; // Needs MyBatis binding
+        }
+        KeyLookupSql lookup = new KeyLookupSql(keyParam.trim(), keyColumn.trim(), head,
+                new ParameterBinding(keyParam.trim(), parseKeyJdbcType(matcher.group(2))), tail);
+        return lookup.sharedParameterNames.contains(lookup.keyParam) ? null : lookup;
+    }
+
+    /**
+     * Binds the shared parameters and one {@code ?} per key.
+     */
+    public PreparedQuery prepare(Map<String, Object> sharedParams, List<Object> keys) {
+        Map<String, Object> values = sharedParams != null ? sharedParams : Collections.emptyMap();
+        StringBuilder sql = new StringBuilder(head.getSql().length() + tail.getSql().length() + keys.size() * 2 + 8);
+        sql.append(head.getSql()).append(" IN (");
+        for (int i = 0; i < keys.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") ").append(tail.getSql());
+        String executable = sql.toString();
+        return new PreparedQuery() {
+            @Override
+            public String getSql() {
+                return executable;
+            }
+
+            @Override
+            public int getParameterCount() {
+                return head.getBindings().size() + keys.size() + tail.getBindings().size();
+            }
+
+            @Override
+            public void bind(PreparedStatement ps) throws SQLException {
+                int index = 1;
+                for (ParameterBinding binding : head.getBindings()) {
+                    binding.bind(ps, index++, values.get(binding.getName()));
+                }
+                for (Object key : keys) {
+                    keyBinding.bind(ps, index++, key);
+                }
+                for (ParameterBinding binding : tail.getBindings()) {
+                    binding.bind(ps, index++, values.get(binding.getName()));
+                }
+            }
+        };
+    }
+
+    /**
+     * The SQL with literals and comments blanked out, so keywords inside them are not matched.
+     */
+    private static String codeOnly(String sql, BitSet quotedOrComment) {
+        StringBuilder code = new StringBuilder(sql);
+        for (int i = quotedOrComment.nextSetBit(0); i >= 0; i = quotedOrComment.nextSetBit(i + 1)) {
+            code.setCharAt(i, ' ');
+        }
+        return code.toString();
+    }
+
+    private static JDBCType parseKeyJdbcType(String options) {
+        if (options != null) {
+            for (String option : options.split(",")) {
+                String trimmed = option.trim();
+                if (trimmed.startsWith("jdbcType=")) {
+                    return ParameterBinding.parseJdbcType(trimmed.substring("jdbcType=".length()));
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.queryapi.service.template;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One positional parameter slot of a compiled template. The value coercion for the declared
+ * {@code jdbcType} is selected once at compile time, so binding a request parameter is a single
+ * conversion from the JSON-decoded value to the JDBC setter.
+ */
+@Getter
+public final class ParameterBinding {
+
+    private final String name;
+    private final JDBCType jdbcType; // Null when the template does not declare one
+    private final ValueBinder binder;
+
+    ParameterBinding(String name, JDBCType jdbcType) {
+        this.name = name;
+        this.jdbcType = jdbcType;
+        this.binder = binderFor(jdbcType);
+    }
+
+    public void bind(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, jdbcType != null ? jdbcType.getVendorTypeNumber() : Types.NULL);
+        } else {
+            binder.bind(ps, index, value);
+        }
+    }
+
+    static JDBCType parseJdbcType(String typeName) {
+        try {
+            return JDBCType.valueOf(typeName.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null; // MyBatis-only types (e.g. UNDEFINED) fall back to driver inference
+        }
+    }
+
+    private static ValueBinder binderFor(JDBCType jdbcType) {
+        if (jdbcType == null) {
+            return PreparedStatement::setObject;
+        }
+        switch (jdbcType) {
+            case BIGINT:
+                return (ps, i, v) -> ps.setLong(i, v instanceof Number ? ((Number) v).longValue() : Long.parseLong(v.toString().trim()));
+            case INTEGER:
+            case SMALLINT:
+            case TINYINT:
+                return (ps, i, v) -> ps.setInt(i, v instanceof Number ? ((Number) v).intValue() : Integer.parseInt(v.toString().trim()));
+            case DECIMAL:
+            case NUMERIC:
+                return (ps, i, v) -> ps.setBigDecimal(i, v instanceof BigDecimal ? (BigDecimal) v : new BigDecimal(v.toString().trim()));
+            case DOUBLE:
+            case FLOAT:
+            case REAL:
+                return (ps, i, v) -> ps.setDouble(i, v instanceof Number ? ((Number) v).doubleValue() : Double.parseDouble(v.toString().trim()));
+            case BOOLEAN:
+            case BIT:
+                return (ps, i, v) -> ps.setBoolean(i, v instanceof Boolean ? (Boolean) v : Boolean.parseBoolean(v.toString().trim()));
+            case CHAR:
+            case VARCHAR:
+            case LONGVARCHAR:
+            case NCHAR:
+            case NVARCHAR:
+            case LONGNVARCHAR:
+            case CLOB:
+                return (ps, i, v) -> ps.setString(i, v.toString());
+            case DATE:
+                return (ps, i, v) -> ps.setDate(i, v instanceof Date ? (Date) v : Date.valueOf(LocalDate.parse(v.toString().trim())));
+            case TIMESTAMP:
+                return (ps, i, v) -> ps.setTimestamp(i, v instanceof Timestamp ? (Timestamp) v : Timestamp.valueOf(LocalDateTime.parse(v.toString().trim())));
+            default:
+                return (ps, i, v) -> ps.setObject(i, v, jdbcType.getVendorTypeNumber());
+        }
+    }
+
+    @FunctionalInterface
+    interface ValueBinder {
+        void bind(PreparedStatement ps, int index, Object value) throws SQLException;
+    }
+}
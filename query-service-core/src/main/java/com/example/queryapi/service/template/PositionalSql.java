@@ -0,0 +1,52 @@
+package com.example.queryapi.service.template;
+
+import com.example.queryapi.service.execution.PreparedQuery;
+import lombok.Getter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template rewritten from named MyBatis placeholders ({@code #{name}}) into positional JDBC SQL,
+ * together with the ordered binding plan for its {@code ?} markers.
+ */
+@Getter
+public final class PositionalSql {
+
+    private final String sql;
+    private final List<ParameterBinding> bindings;
+
+    PositionalSql(String sql, List<ParameterBinding> bindings) {
+        this.sql = sql;
+        this.bindings = Collections.unmodifiableList(bindings);
+    }
+
+    /**
+     * Binds request parameters to this SQL. Missing parameters are bound as SQL NULL.
+     */
+    public PreparedQuery prepare(Map<String, Object> params) {
+        Map<String, Object> values = params != null ? params : Collections.emptyMap();
+        return new PreparedQuery() {
+            @Override
+            public String getSql() {
+                return sql;
+            }
+
+            @Override
+            public int getParameterCount() {
+                return bindings.size();
+            }
+
+            @Override
+            public void bind(PreparedStatement ps) throws SQLException {
+                for (int i = 0; i < bindings.size(); i++) {
+                    ParameterBinding binding = bindings.get(i);
+                    binding.bind(ps, i + 1, values.get(binding.getName()));
+                }
+            }
+        };
+    }
+}
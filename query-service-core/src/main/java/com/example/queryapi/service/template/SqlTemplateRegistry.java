@@ -0,0 +1,96 @@
+package com.example.queryapi.service.template;
+
+import com.example.queryapi.common.enums.MetadataChangeType;
+import com.example.queryapi.dao.jpa.repository.SqlTemplateRepository;
+import com.example.queryapi.service.event.MetadataResyncEvent;
+import com.example.queryapi.service.event.SqlTemplateChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory registry of compiled SQL templates keyed by sqlCode.
+ * <p>
+ * The registry is populated from the metadata DB at startup and kept current through
+ * {@link SqlTemplateChangedEvent}s published after each template write commits, so the
+ * query execution path resolves templates without any metadata DB round trip.
+ * Updates are version-aware: an older template version never replaces a newer one.
+ */
+@Component
+@Slf4j
+public class SqlTemplateRegistry {
+
+    private final SqlTemplateRepository sqlTemplateRepository;
+    private final Map<String, CompiledSqlTemplate> templates = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SqlTemplateRegistry(SqlTemplateRepository sqlTemplateRepository) {
+        this.sqlTemplateRepository = sqlTemplateRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        reloadAll();
+    }
+
+    /**
+     * Looks up a compiled template. Never touches the metadata DB.
+     */
+    public Optional<CompiledSqlTemplate> find(String sqlCode) {
+        return Optional.ofNullable(templates.get(sqlCode));
+    }
+
+    /**
+     * Replaces the registry content with all templates currently stored in the metadata DB.
+     */
+    public void reloadAll() {
+        Map<String, CompiledSqlTemplate> loaded = sqlTemplateRepository.findAll().stream()
+                .map(CompiledSqlTemplate::from)
+                .collect(Collectors.toMap(CompiledSqlTemplate::getSqlCode, t -> t));
+        templates.keySet().retainAll(loaded.keySet());
+        loaded.values().forEach(this::register);
+        log.info("SQL template registry loaded with {} templates.", templates.size());
+    }
+
+    /**
+     * Reloads a single template from the metadata DB, evicting it if it no longer exists.
+     */
+    public void reload(String sqlCode) {
+        sqlTemplateRepository.findBySqlCode(sqlCode)
+                .map(CompiledSqlTemplate::from)
+                .ifPresentOrElse(this::register, () -> evict(sqlCode));
+    }
+
+    public void register(CompiledSqlTemplate template) {
+        templates.merge(template.getSqlCode(), template,
+                (existing, candidate) -> existing.isNewerThan(candidate) ? existing : candidate);
+    }
+
+    public void evict(String sqlCode) {
+        templates.remove(sqlCode);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSqlTemplateChanged(SqlTemplateChangedEvent event) {
+        if (event.getChangeType() == MetadataChangeType.DELETE) {
+            evict(event.getSqlCode());
+        } else if (event.getTemplate() != null) {
+            register(event.getTemplate());
+        } else {
+            reload(event.getSqlCode());
+        }
+        log.debug("SQL template registry updated for sqlCode '{}' ({}).", event.getSqlCode(), event.getChangeType());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMetadataResync(MetadataResyncEvent event) {
+        reloadAll();
+    }
+}
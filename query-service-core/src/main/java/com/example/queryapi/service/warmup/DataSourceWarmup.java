@@ -0,0 +1,209 @@
+package com.example.queryapi.service.warmup;
+
+import com.example.queryapi.common.enums.MetadataChangeType;
+import com.example.queryapi.dao.jpa.entity.DataSourceConfigEntity;
+import com.example.queryapi.dao.jpa.repository.DataSourceConfigRepository;
+import com.example.queryapi.service.DataSourceManagementService;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.event.DataSourceChangedEvent;
+import com.example.queryapi.service.execution.DataSourceExecutionContext;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import com.example.queryapi.service.template.SqlTemplateRegistry;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Builds datasource pools before the first query needs them. Pools are otherwise created lazily, so
+ * the first request of each datasource pays for pool start-up, TLS and authentication.
+ * <p>
+ * Once the application is ready all configured datasources are warmed in parallel: the pool is built,
+ * filled to its minimumIdle connections, optionally validated, and the configured hot templates are
+ * registered and prepared. Datasources saved later are warmed after their write commits.
+ * {@link DataSourceWarmupHealthIndicator} keeps the instance out of service until the startup warm-up is done.
+ */
+@Component
+@Slf4j
+public class DataSourceWarmup {
+
+    static final String WARM = "WARM";
+    static final String FAILED = "FAILED: ";
+    private static final long POLL_MILLIS = 50;
+
+    private final DataSourceConfigRepository dataSourceConfigRepository;
+    private final DataSourceManagementService dataSourceManagementService;
+    private final SqlTemplateRegistry sqlTemplateRegistry;
+    private final QueryExecutionProperties.Warmup properties;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, String> states = new ConcurrentSkipListMap<>(); // datasourceId -> WARM or failure
+    private volatile int startupTotal;
+    private volatile boolean startupComplete;
+
+    @Autowired
+    public DataSourceWarmup(DataSourceConfigRepository dataSourceConfigRepository, DataSourceManagementService dataSourceManagementService,
+                            SqlTemplateRegistry sqlTemplateRegistry, QueryExecutionProperties queryExecutionProperties) {
+        this.dataSourceConfigRepository = dataSourceConfigRepository;
+        this.dataSourceManagementService = dataSourceManagementService;
+        this.sqlTemplateRegistry = sqlTemplateRegistry;
+        this.properties = queryExecutionProperties.getWarmup();
+        int parallelism = Math.max(properties.getParallelism(), 1);
+        AtomicInteger threadSequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "datasource-warmup-" + threadSequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true); // Warm-ups are rare, don't keep idle threads
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!properties.isEnabled()) {
+            startupComplete = true;
+            return;
+        }
+        List<String> datasourceIds = dataSourceConfigRepository.findAll().stream()
+                .map(DataSourceConfigEntity::getDatasourceId)
+                .collect(Collectors.toList());
+        startupTotal = datasourceIds.size();
+        log.info("Warming up {} datasources with parallelism {}", datasourceIds.size(), executor.getMaximumPoolSize());
+        long started = System.nanoTime();
+        CompletableFuture.allOf(datasourceIds.stream()
+                        .map(id -> CompletableFuture.runAsync(() -> warm(id), executor))
+                        .toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, e) -> {
+                    startupComplete = true;
+                    long failed = states.values().stream().filter(state -> !WARM.equals(state)).count();
+                    log.info("Datasource warm-up finished in {} ms, {} of {} datasources failed",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), failed, datasourceIds.size());
+                });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDataSourceChanged(DataSourceChangedEvent event) {
+        if (event.getChangeType() == MetadataChangeType.DELETE) {
+            states.remove(event.getDatasourceId());
+        } else if (properties.isEnabled()) {
+            executor.execute(() -> warm(event.getDatasourceId()));
+        }
+    }
+
+    public boolean isStartupComplete() {
+        return startupComplete;
+    }
+
+    /**
+     * Datasources the startup warm-up covers, 0 before it has started.
+     */
+    public int getStartupTotal() {
+        return startupTotal;
+    }
+
+    /**
+     * Warm-up outcome per datasource: {@code WARM}, or the failure.
+     */
+    public Map<String, String> getStates() {
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * Warms one datasource. Failures are recorded and logged, the pool is then built on its first query as before.
+     */
+    void warm(String datasourceId) {
+        long started = System.nanoTime();
+        try (DataSourceExecutionContext.Lease lease = dataSourceManagementService.leaseExecutionContext(datasourceId)) {
+            DataSourceExecutionContext context = lease.getContext();
+            HikariDataSource dataSource = context.getDataSource();
+            awaitMinimumIdle(dataSource);
+            try (Connection connection = dataSource.getConnection()) {
+                if (properties.isValidate() && !connection.isValid(validationTimeoutSeconds())) {
+                    throw new SQLException("Connection validation failed");
+                }
+                prepareHotTemplates(context, connection);
+            }
+            states.put(datasourceId, WARM);
+            log.info("Warmed datasource {} ({} connections) in {} ms", datasourceId, dataSource.getHikariPoolMXBean().getTotalConnections(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            states.put(datasourceId, FAILED + "interrupted");
+        } catch (Exception e) {
+            states.put(datasourceId, FAILED + e.getMessage());
+            log.warn("Warm-up of datasource {} failed: {}", datasourceId, e.getMessage());
+        }
+    }
+
+    /**
+     * Hikari adds the minimumIdle connections in the background after the pool starts; waits until they are there.
+     */
+    private void awaitMinimumIdle(HikariDataSource dataSource) throws SQLTimeoutException, InterruptedException {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        int target = Math.min(dataSource.getMinimumIdle(), dataSource.getMaximumPoolSize());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMillis());
+        while (pool.getTotalConnections() < target) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new SQLTimeoutException("Pool opened " + pool.getTotalConnections() + " of " + target
+                        + " connections within " + properties.getTimeoutMillis() + " ms");
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    /**
+     * Registers the MyBatis statements of the hot templates and prepares their JDBC form once, which
+     * has the server parse them where the driver prepares server-side and fills the driver's statement cache.
+     */
+    private void prepareHotTemplates(DataSourceExecutionContext context, Connection connection) {
+        for (String sqlCode : properties.getHotTemplates()) {
+            Optional<CompiledSqlTemplate> found = sqlTemplateRegistry.find(sqlCode);
+            if (found.isEmpty()) {
+                log.warn("Hot template {} not found, skipped on datasource {}", sqlCode, context.getDatasourceId());
+                continue;
+            }
+            CompiledSqlTemplate template = found.get();
+            if (template.getDataSourceTypeHint() != null && !template.getDataSourceTypeHint().equalsIgnoreCase(context.getDbType())) {
+                continue; // Written for another database type
+            }
+            try {
+                context.resolveTemplateStatement(template);
+                if (template.isJdbcCompatible()) {
+                    // Preparing is the warm-up, the statement is closed without being executed
+                    JdbcUtils.closeStatement(connection.prepareStatement(template.getPositionalSql().getSql()));
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Hot template {} could not be prepared on datasource {}: {}", sqlCode, context.getDatasourceId(), e.getMessage());
+            }
+        }
+    }
+
+    private int validationTimeoutSeconds() {
+        return (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(properties.getTimeoutMillis()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
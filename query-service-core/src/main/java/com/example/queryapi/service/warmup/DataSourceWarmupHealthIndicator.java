@@ -0,0 +1,45 @@
+package com.example.queryapi.service.warmup;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Reports OUT_OF_SERVICE while the startup warm-up of datasource pools runs, UP afterwards. Datasources
+ * that failed to warm are listed but do not keep the instance out of service, their pools are built
+ * on first use as without warm-up. Part of the readiness health group.
+ */
+@Component
+public class DataSourceWarmupHealthIndicator implements HealthIndicator {
+
+    private final DataSourceWarmup dataSourceWarmup;
+    private final QueryExecutionProperties queryExecutionProperties;
+
+    @Autowired
+    public DataSourceWarmupHealthIndicator(DataSourceWarmup dataSourceWarmup, QueryExecutionProperties queryExecutionProperties) {
+        this.dataSourceWarmup = dataSourceWarmup;
+        this.queryExecutionProperties = queryExecutionProperties;
+    }
+
+    @Override
+    public Health health() {
+        if (!queryExecutionProperties.getWarmup().isEnabled()) {
+            return Health.up().withDetail("enabled", false).build();
+        }
+        Map<String, String> states = dataSourceWarmup.getStates();
+        long warm = states.values().stream().filter(DataSourceWarmup.WARM::equals).count();
+        Health.Builder builder = dataSourceWarmup.isStartupComplete() ? Health.up() : Health.outOfService();
+        if (!dataSourceWarmup.isStartupComplete()) {
+            builder.withDetail("total", dataSourceWarmup.getStartupTotal());
+        }
+        return builder
+                .withDetail("warm", warm)
+                .withDetail("failed", states.size() - warm)
+                .withDetail("datasources", states)
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.common.exception.ResourceExhaustedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Permits are never lost or duplicated, whichever way waiters give up and the limit changes.
+ */
+class DataSourceBulkheadTest {
+
+    @Test
+    void abandonedWaiterDoesNotKeepAPermitWhenResized() {
+        DataSourceBulkhead bulkhead = new DataSourceBulkhead("ds1", 1, 5);
+        assertThat(bulkhead.acquire()).isDone();
+        CompletableFuture<Void> abandoned = bulkhead.acquire();
+        assertThat(bulkhead.abandon(abandoned)).isTrue();
+
+        bulkhead.resize(2);
+
+        assertThat(bulkhead.acquire()).isDone(); // The added permit goes to a new query, not to the abandoned waiter
+        assertThat(bulkhead.getActiveCount()).isEqualTo(2);
+        bulkhead.release();
+        bulkhead.release();
+        assertThat(bulkhead.getActiveCount()).isZero();
+    }
+
+    @Test
+    void resizeSkipsWaitersCancelledWhileQueued() {
+        DataSourceBulkhead bulkhead = new DataSourceBulkhead("ds1", 1, 5);
+        assertThat(bulkhead.acquire()).isDone();
+        CompletableFuture<Void> cancelled = bulkhead.acquire();
+        CompletableFuture<Void> waiting = bulkhead.acquire();
+        cancelled.cancel(false); // Gave up but still queued, as when abandoning races with the resize
+
+        bulkhead.resize(2);
+
+        assertThat(waiting).isCompleted();
+        assertThat(bulkhead.getQueueDepth()).isZero();
+        assertThat(bulkhead.getActiveCount()).isEqualTo(2);
+        bulkhead.release();
+        bulkhead.release();
+        assertThat(bulkhead.getActiveCount()).isZero();
+    }
+
+    @Test
+    void releaseSkipsWaitersCancelledWhileQueued() {
+        DataSourceBulkhead bulkhead = new DataSourceBulkhead("ds1", 1, 5);
+        assertThat(bulkhead.acquire()).isDone();
+        bulkhead.acquire().cancel(false);
+
+        bulkhead.release();
+
+        assertThat(bulkhead.getQueueDepth()).isZero();
+        assertThat(bulkhead.getActiveCount()).isZero();
+        assertThat(bulkhead.acquire()).isDone();
+    }
+
+    @Test
+    void shrinkingLetsRunningQueriesFinishWithoutHandingOnTheirPermits() {
+        DataSourceBulkhead bulkhead = new DataSourceBulkhead("ds1", 2, 5);
+        bulkhead.acquire();
+        bulkhead.acquire();
+        CompletableFuture<Void> waiting = bulkhead.acquire();
+
+        bulkhead.resize(1);
+        bulkhead.release();
+
+        assertThat(waiting).isNotDone(); // Still one running, which is the new limit
+        bulkhead.release();
+        assertThat(waiting).isCompleted();
+        bulkhead.release();
+        assertThat(bulkhead.getActiveCount()).isZero();
+    }
+
+    @Test
+    void timedOutAcquiresAndResizesUnderContentionLeaveNoPermitBehind() throws Exception {
+        DataSourceBulkhead bulkhead = new DataSourceBulkhead("ds1", 2, 4);
+        ExecutorService threads = Executors.newFixedThreadPool(9);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                workers.add(threads.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        try {
+                            bulkhead.acquire(1); // Times out and abandons often
+                        } catch (ResourceExhaustedException e) {
+                            continue;
+                        }
+                        bulkhead.release();
+                    }
+                }));
+            }
+            Future<?> resizer = threads.submit(() -> {
+                while (running.get()) {
+                    bulkhead.resize(ThreadLocalRandom.current().nextInt(1, 5));
+                    Thread.onSpinWait();
+                }
+            });
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            resizer.get(5, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+            threads.shutdownNow();
+        }
+
+        assertThat(bulkhead.getQueueDepth()).isZero();
+        assertThat(bulkhead.getActiveCount()).isZero();
+        bulkhead.resize(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(bulkhead.acquire()).isDone();
+        }
+        assertThat(bulkhead.acquire()).isNotDone();
+    }
+}
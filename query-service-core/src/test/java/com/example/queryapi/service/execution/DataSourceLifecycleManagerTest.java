@@ -0,0 +1,81 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A pool replaced by a configuration change keeps serving its running queries and is closed after the last one.
+ */
+class DataSourceLifecycleManagerTest {
+
+    private final DataSourceLifecycleManager manager = new DataSourceLifecycleManager(DataSourceLifecycleManagerTest::context,
+            new SimpleMeterRegistry(), datasourceId -> true, pool());
+
+    @AfterEach
+    void closeManager() {
+        manager.close();
+    }
+
+    @Test
+    void swappedPoolClosesAfterItsLastLease() throws Exception {
+        DataSourceExecutionContext.Lease first = manager.lease("ds1");
+        DataSourceExecutionContext.Lease second = manager.lease("ds1");
+        DataSourceExecutionContext old = first.getContext();
+
+        manager.swap("ds1");
+
+        DataSourceExecutionContext current = manager.get("ds1");
+        assertThat(current).isNotSameAs(old);
+        assertThat(old.isRetired()).isTrue();
+        assertThat(old.tryLease()).isNull(); // New queries go to the new pool
+        first.close();
+        first.close(); // Closing a lease twice releases it once
+        Thread.sleep(200);
+        assertThat(old.getDataSource().isClosed()).isFalse(); // The second lease is still running
+
+        second.close();
+        awaitClosed(old.getDataSource());
+        assertThat(current.getDataSource().isClosed()).isFalse();
+        assertThat(manager.lease("ds1").getContext()).isSameAs(current);
+    }
+
+    @Test
+    void removedPoolWithoutLeasesClosesRightAway() throws Exception {
+        DataSourceExecutionContext context = manager.get("ds1");
+
+        manager.remove("ds1");
+
+        awaitClosed(context.getDataSource());
+        assertThat(manager.getActiveContexts()).isEmpty();
+    }
+
+    private static DataSourceExecutionContext context(String datasourceId) {
+        HikariDataSource dataSource = new HikariDataSource(); // Not started, no connection is ever opened
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + datasourceId);
+        return new DataSourceExecutionContext(datasourceId, "H2", dataSource, new DataSourceBulkhead(datasourceId, 2, 2), null,
+                new ReplicaSet(List.of()));
+    }
+
+    private static QueryExecutionProperties.Pool pool() {
+        QueryExecutionProperties.Pool pool = new QueryExecutionProperties.Pool();
+        pool.setIdleEvictionMillis(0);
+        pool.setDrainTimeoutMillis(TimeUnit.MINUTES.toMillis(1));
+        return pool;
+    }
+
+    private static void awaitClosed(HikariDataSource dataSource) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!dataSource.isClosed() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(dataSource.isClosed()).isTrue();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.dao.jpa.entity.SqlTemplateEntity;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import com.example.queryapi.service.template.CompiledSqlTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import javax.sql.DataSource;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A batch belongs to all of its callers: one caller giving up must not fail the others.
+ */
+class KeyLookupBatcherTest {
+
+    private final QueryDeadlineWatchdog watchdog = new QueryDeadlineWatchdog();
+    private final ExecutorService callers = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutDown() {
+        callers.shutdownNow();
+        watchdog.shutdown();
+    }
+
+    @Test
+    void callerTimingOutDoesNotFailTheOtherCallers() throws Exception {
+        BlockingEngine engine = new BlockingEngine();
+        QueryExecutionProperties properties = new QueryExecutionProperties();
+        properties.getMicroBatch().setWindowMicros(TimeUnit.SECONDS.toMicros(5));
+        properties.getMicroBatch().setMaxBatchSize(2); // Runs as soon as the second caller joins
+        KeyLookupBatcher batcher = new KeyLookupBatcher(engine, properties, watchdog);
+        DataSourceExecutionContext context = mock(DataSourceExecutionContext.class);
+        when(context.getDatasourceId()).thenReturn("ds1");
+        CompiledSqlTemplate template = template();
+
+        // Leads the batch and waits without a deadline
+        Future<List<Map<String, Object>>> patient = callers.submit(() ->
+                batcher.lookup(context, mock(DataSource.class), template, Map.of("id", 1), QueryDeadline.unbounded()));
+        Thread.sleep(200); // Let it open the batch
+
+        QueryDeadline impatientDeadline = QueryDeadline.within(100);
+        assertThatThrownBy(() -> batcher.lookup(context, mock(DataSource.class), template, Map.of("id", 2), impatientDeadline))
+                .isInstanceOf(SQLTimeoutException.class);
+        assertThat(engine.started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(engine.keys).isEqualTo(2);
+        assertThat(engine.deadline.isCancelled()).isFalse(); // Still running for the remaining caller
+
+        engine.release.countDown();
+        assertThat(patient.get(5, TimeUnit.SECONDS)).containsExactly(Map.of("id", 1L, "name", "one"));
+    }
+
+    private static CompiledSqlTemplate template() {
+        SqlTemplateEntity entity = new SqlTemplateEntity();
+        entity.setSqlCode("userById");
+        entity.setVersion(1);
+        entity.setSqlContent("SELECT id, name FROM users WHERE id = #{id}");
+        entity.setBatchKeyParam("id");
+        entity.setBatchKeyColumn("id");
+        return CompiledSqlTemplate.from(entity);
+    }
+
+    /**
+     * Holds the batched query until released, then returns one row per key 1 and 2.
+     */
+    private static final class BlockingEngine extends JdbcQueryEngine {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile int keys;
+        private volatile QueryDeadline deadline;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T query(DataSource dataSource, PreparedQuery query, ResultSetExtractor<T> extractor, QueryDeadline deadline) {
+            this.keys = query.getParameterCount();
+            this.deadline = deadline;
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return (T) List.of(Map.of("id", 1L, "name", "one"), Map.of("id", 2L, "name", "two"));
+        }
+    }
+}
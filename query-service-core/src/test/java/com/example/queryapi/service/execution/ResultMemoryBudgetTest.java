@@ -0,0 +1,91 @@
+package com.example.queryapi.service.execution;
+
+import com.example.queryapi.common.exception.ResourceExhaustedException;
+import com.example.queryapi.service.config.QueryExecutionProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Every reservation is returned exactly once: by the guard, or by whoever the guard handed it over to.
+ */
+class ResultMemoryBudgetTest {
+
+    private static final long KB = 1024;
+
+    private final ResultMemoryBudget budget = budget(1024 * KB);
+
+    @Test
+    void handedOverReservationIsReleasedByTheResponseOnce() {
+        Runnable release;
+        long reserved;
+        try (ResultGuard guard = budget.open(0, 0)) {
+            assertThat(guard.admit(300 * KB)).isTrue();
+            reserved = budget.getReservedBytes();
+            release = guard.handOver();
+        }
+        assertThat(budget.getReservedBytes()).isEqualTo(reserved).isPositive(); // Closing the guard left it to the response
+
+        release.run();
+        release.run();
+
+        assertThat(budget.getReservedBytes()).isZero();
+    }
+
+    @Test
+    void failedQueryReleasesItsReservation() {
+        assertThatThrownBy(() -> {
+            try (ResultGuard guard = budget.open(0, 0)) {
+                guard.admit(500 * KB);
+                throw new IllegalStateException("Connection reset");
+            }
+        }).isInstanceOf(IllegalStateException.class);
+
+        assertThat(budget.getReservedBytes()).isZero();
+    }
+
+    @Test
+    void reservationThatTimesOutReleasesWhatWasReserved() {
+        ResultGuard first = budget.open(0, 0);
+        assertThat(first.admit(900 * KB)).isTrue();
+
+        assertThatThrownBy(() -> budget.open(0, 0)).isInstanceOf(ResourceExhaustedException.class);
+        assertThatThrownBy(() -> first.admit(200 * KB)).isInstanceOf(ResourceExhaustedException.class);
+        assertThat(budget.getReservedBytes()).isEqualTo(900 * KB);
+
+        first.close();
+        assertThat(budget.getReservedBytes()).isZero();
+    }
+
+    @Test
+    void waitingQueryGetsTheBudgetReleasedByAnother() throws Exception {
+        ResultGuard first = budget.open(0, 0);
+        first.admit(900 * KB);
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            first.handOver().run();
+        });
+
+        releaser.start();
+        try (ResultGuard second = budget.open(0, 0)) { // Waits up to the budget wait for the release
+            assertThat(second.admit(100 * KB)).isTrue();
+        }
+        releaser.join();
+        first.close();
+
+        assertThat(budget.getReservedBytes()).isZero();
+    }
+
+    private static ResultMemoryBudget budget(long maxBytes) {
+        QueryExecutionProperties properties = new QueryExecutionProperties();
+        properties.getResultLimits().setMemoryBudgetBytes(maxBytes);
+        properties.getResultLimits().setBudgetWaitMillis(500);
+        return new ResultMemoryBudget(properties, new SimpleMeterRegistry());
+    }
+}
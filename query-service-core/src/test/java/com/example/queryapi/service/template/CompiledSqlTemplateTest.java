@@ -0,0 +1,116 @@
+package com.example.queryapi.service.template;
+
+import com.example.queryapi.dao.jpa.entity.SqlTemplateEntity;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The plain JDBC fast path must produce the statement and bind the values MyBatis would.
+ */
+class CompiledSqlTemplateTest {
+
+    private final Configuration configuration = new Configuration();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT id, name FROM users WHERE id = #{id}",
+            "SELECT * FROM orders WHERE user_id = #{userId,jdbcType=BIGINT} AND status = #{status}",
+            "SELECT * FROM users WHERE name = #{status} OR nickname = #{status}",
+            "SELECT * FROM users WHERE name = 'it''s #' AND id = #{id}",
+            "SELECT * FROM users -- lookup by id\nWHERE id = #{id} /* primary key */",
+            "SELECT * FROM users WHERE id = #{missing}"
+    })
+    void fastPathMatchesMyBatisBinding(String sql) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", 7);
+        params.put("userId", 42L);
+        params.put("status", "OPEN");
+
+        CompiledSqlTemplate template = template(sql);
+        assertThat(template.isJdbcCompatible()).isTrue();
+
+        BoundSql boundSql = myBatisBind(sql, params);
+        MetaObject metaParams = configuration.newMetaObject(params);
+        List<String> expectedValues = new ArrayList<>();
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            expectedValues.add(String.valueOf(metaParams.getValue(mapping.getProperty())));
+        }
+
+        assertThat(normalize(template.getPositionalSql().getSql())).isEqualTo(normalize(boundSql.getSql()));
+        assertThat(fastPathBind(template.getPositionalSql(), params)).isEqualTo(expectedValues);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT * FROM users WHERE id = #{user.id}",
+            "SELECT * FROM users WHERE id = #{ids[0]}",
+            "SELECT * FROM users WHERE name = '#{name}' AND id = #{id}",
+            "SELECT * FROM users WHERE id = #{id} -- was #{oldId}",
+            "SELECT * FROM users WHERE id = #{id} /* #{oldId} */",
+            "SELECT * FROM users WHERE id = #{id} # #{oldId}"
+    })
+    void templatesNeedingMyBatisBindingLeaveTheFastPath(String sql) {
+        assertThat(template(sql).isJdbcCompatible()).isFalse();
+    }
+
+    @Test
+    void myBatisNavigatesPropertyPaths() {
+        Map<String, Object> params = Map.of("user", Map.of("id", 7), "ids", List.of(3, 4));
+        BoundSql boundSql = myBatisBind("SELECT * FROM users WHERE id = #{user.id} OR id = #{ids[0]}", params);
+        MetaObject metaParams = configuration.newMetaObject(params);
+
+        assertThat(boundSql.getParameterMappings()).extracting(mapping -> metaParams.getValue(mapping.getProperty()))
+                .containsExactly(7, 3);
+    }
+
+    private static CompiledSqlTemplate template(String sql) {
+        SqlTemplateEntity entity = new SqlTemplateEntity();
+        entity.setSqlCode("test");
+        entity.setVersion(1);
+        entity.setSqlContent(sql);
+        return CompiledSqlTemplate.from(entity);
+    }
+
+    private BoundSql myBatisBind(String sql, Map<String, Object> params) {
+        return new XMLLanguageDriver().createSqlSource(configuration, "<script>" + sql + "</script>", Map.class).getBoundSql(params);
+    }
+
+    private static List<String> fastPathBind(PositionalSql positionalSql, Map<String, Object> params) {
+        Map<Integer, Object> bound = new TreeMap<>();
+        PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(CompiledSqlTemplateTest.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("set")) {
+                        bound.put((Integer) args[0], method.getName().equals("setNull") ? null : args[1]);
+                    }
+                    return null;
+                });
+        try {
+            positionalSql.prepare(params).bind(ps);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        List<String> values = new ArrayList<>();
+        bound.values().forEach(value -> values.add(String.valueOf(value)));
+        return values;
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.queryapi.service.template;
+
+import com.example.queryapi.service.execution.PreparedQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Only templates whose result for {@code IN (...)} is the union of the per-key results may be batched.
+ */
+class KeyLookupSqlTest {
+
+    @Test
+    void keyPredicateBecomesInList() {
+        KeyLookupSql lookup = KeyLookupSql.compile("SELECT id, name FROM users WHERE id = #{id}", "id", "id");
+
+        assertThat(lookup).isNotNull();
+        assertThat(lookup.getSharedParameterNames()).isEmpty();
+        PreparedQuery query = lookup.prepare(Map.of(), List.of(1, 2, 3));
+        assertThat(normalize(query.getSql())).isEqualTo("SELECT id, name FROM users WHERE id IN (?, ?, ?)");
+        assertThat(query.getParameterCount()).isEqualTo(3);
+    }
+
+    @Test
+    void otherParametersAreSharedByTheBatch() {
+        KeyLookupSql lookup = KeyLookupSql.compile(
+                "SELECT * FROM orders WHERE tenant = #{tenant} AND user_id = #{userId,jdbcType=BIGINT} AND status = #{status}",
+                "userId", "user_id");
+
+        assertThat(lookup).isNotNull();
+        assertThat(lookup.getSharedParameterNames()).containsExactly("tenant", "status");
+        PreparedQuery query = lookup.prepare(Map.of("tenant", "t1", "status", "OPEN"), List.of(7L, 8L));
+        assertThat(normalize(query.getSql())).isEqualTo("SELECT * FROM orders WHERE tenant = ? AND user_id IN (?, ?) AND status = ?");
+        assertThat(query.getParameterCount()).isEqualTo(4);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT * FROM users WHERE name <> 'or limit 1' AND id = #{id}",
+            "SELECT * FROM users WHERE id = #{id} -- LIMIT 1",
+            "SELECT * FROM users WHERE id = #{id} /* count(*) */",
+            "SELECT `distinct`, \"order\" FROM users WHERE id = #{id}",
+            "SELECT id, orderly, limited FROM users WHERE id = #{id}"
+    })
+    void keywordsInLiteralsCommentsAndIdentifiersDoNotPreventBatching(String sql) {
+        assertThat(KeyLookupSql.compile(sql, "id", "id")).isNotNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT * FROM users WHERE id >= #{id}",
+            "SELECT * FROM users WHERE id <= #{id}",
+            "SELECT * FROM users WHERE id != #{id}",
+            "SELECT * FROM users WHERE id <=> #{id}",
+            "SELECT * FROM users WHERE id = #{id} LIMIT 1",
+            "SELECT * FROM users WHERE id = #{id} FETCH FIRST 1 ROWS ONLY",
+            "SELECT COUNT(*) FROM orders WHERE user_id = #{id}",
+            "SELECT max (amount) FROM orders WHERE user_id = #{id}",
+            "SELECT DISTINCT status FROM orders WHERE user_id = #{id}",
+            "SELECT status FROM orders WHERE user_id = #{id} GROUP BY status",
+            "SELECT * FROM users WHERE id = #{id} OR vip = 1",
+            "SELECT * FROM users WHERE id = #{id} UNION SELECT * FROM admins WHERE id = 1",
+            "SELECT id, ROW_NUMBER() OVER (ORDER BY id) FROM users WHERE id = #{id}",
+            "SELECT * FROM users WHERE id = #{id} AND parent_id = #{id}",
+            "SELECT * FROM users WHERE note = '= #{id}'",
+            "SELECT * FROM users WHERE name = #{name}"
+    })
+    void notRowWiseOrAmbiguousTemplatesAreNotBatched(String sql) {
+        assertThat(KeyLookupSql.compile(sql, "id", "id")).isNull();
+    }
+
+    @Test
+    void keyParamAndColumnAreRequired() {
+        assertThat(KeyLookupSql.compile("SELECT * FROM users WHERE id = #{id}", null, "id")).isNull();
+        assertThat(KeyLookupSql.compile("SELECT * FROM users WHERE id = #{id}", "id", " ")).isNull();
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+}